@@ -25,9 +25,11 @@
 
 package com.nannoq.tools.repository.dynamodb;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClientBuilder;
 import com.amazonaws.services.dynamodbv2.datamodeling.*;
@@ -49,6 +51,8 @@ import com.nannoq.tools.repository.repository.etag.ETagManager;
 import com.nannoq.tools.repository.repository.etag.InMemoryETagManagerImpl;
 import com.nannoq.tools.repository.repository.etag.RedisETagManagerImpl;
 import com.nannoq.tools.repository.repository.redis.RedisUtils;
+import com.nannoq.tools.repository.repository.results.CreateResult;
+import com.nannoq.tools.repository.repository.results.DeleteResult;
 import com.nannoq.tools.repository.repository.results.ItemListResult;
 import com.nannoq.tools.repository.repository.results.ItemResult;
 import com.nannoq.tools.repository.repository.results.UpdateResult;
@@ -60,6 +64,7 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.redis.RedisClient;
 import io.vertx.serviceproxy.ServiceException;
 import org.apache.commons.lang3.ArrayUtils;
@@ -74,6 +79,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
@@ -99,6 +105,7 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
     private boolean isVersioned = false;
 
     private final Class<E> TYPE;
+    private final String COLLECTION;
     private String HASH_IDENTIFIER;
     private String IDENTIFIER;
     private String PAGINATION_IDENTIFIER;
@@ -107,6 +114,7 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
 
     @SuppressWarnings("WeakerAccess")
     protected DynamoDBMapper DYNAMO_DB_MAPPER;
+    private AmazonDynamoDBAsync DYNAMO_DB_CLIENT;
 
     private RedisClient REDIS_CLIENT;
     private String S3BucketName;
@@ -118,6 +126,14 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
     private final DynamoDBReader<E> reader;
     private final DynamoDBUpdater<E> updater;
     private final DynamoDBDeleter<E> deleter;
+    private final DynamoDBAsyncExecutor<E> asyncExecutor;
+    private final DynamoDBWorkerExecutor workerExecutor;
+    private final DynamoDBRateLimiter rateLimiter;
+    private final DynamoDBCapacityRegistry capacityRegistry;
+    private final DynamoDBWriteBehindBuffer<E> writeBehindBuffer;
+    private final DynamoDBScanSnapshots<E> scanSnapshots;
+    private final DynamoDBMaterializedAggregates<E> materializedAggregates;
+    private final DynamoDBHedgedReads hedgedReads;
 
     @SuppressWarnings("WeakerAccess")
     protected CacheManager<E> cacheManager;
@@ -125,8 +141,21 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
     @SuppressWarnings("WeakerAccess")
     protected ETagManager<E> etagManager;
 
+    private final boolean batchWritesEnabled;
+    private final int batchWriteParallelism;
+    private final boolean asyncExecutionEnabled;
+    private final int writeParallelism;
+    private final int scanSegments;
+    private final int scanPageSize;
+    private final double scanReadCapacity;
+    private final boolean prefetchEnabled;
+    private final int prefetchConcurrency;
+    private final boolean unpaginatedCacheEnabled;
+    private final AtomicLong writeGeneration = new AtomicLong();
+
     private Map<String, Field> fieldMap = new ConcurrentHashMap<>();
     private Map<String, Type> typeMap = new ConcurrentHashMap<>();
+    private Map<String, String> attributeNameMap = new ConcurrentHashMap<>();
 
     public DynamoDBRepository(Class<E> type, JsonObject appConfig) {
         this(Vertx.currentContext().owner(), type, appConfig, null, null);
@@ -171,16 +200,62 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
 
         S3BucketName = appConfig.getString("content_bucket");
 
+        JsonObject modelConfig = getModelConfig(appConfig, type);
+        capacityRegistry = !modelConfig.getBoolean("dynamo_capacity_accounting", false) ? null :
+                new DynamoDBCapacityRegistry(vertx,
+                        modelConfig.getLong("dynamo_capacity_snapshot_interval", 60000L),
+                        modelConfig.getInteger("dynamo_capacity_snapshots", 60));
+        rateLimiter = !modelConfig.getBoolean("dynamo_rate_limit", false) ? null :
+                new DynamoDBRateLimiter(vertx,
+                        modelConfig.getDouble("dynamo_rate_limit_initial", 100.0),
+                        modelConfig.getDouble("dynamo_rate_limit_min", 1.0),
+                        modelConfig.getDouble("dynamo_rate_limit_max", 10000.0),
+                        modelConfig.getLong("dynamo_rate_limit_max_wait", 2000L));
+
         setMapper(appConfig);
 
+        batchWritesEnabled = modelConfig.getBoolean("dynamo_batch_writes", false);
+        batchWriteParallelism = modelConfig.getInteger("dynamo_batch_write_parallelism", 4);
+        asyncExecutionEnabled = modelConfig.getBoolean("dynamo_async_execution", false);
+        writeParallelism = modelConfig.getInteger("dynamo_write_parallelism", 1);
+        scanSegments = modelConfig.getInteger("dynamo_scan_segments",
+                Runtime.getRuntime().availableProcessors() * 2);
+        scanPageSize = modelConfig.getInteger("dynamo_scan_page_size", 0);
+        scanReadCapacity = modelConfig.getDouble("dynamo_scan_read_capacity", 0.0);
+        prefetchEnabled = modelConfig.getBoolean("dynamo_prefetch", false);
+        prefetchConcurrency = modelConfig.getInteger("dynamo_prefetch_concurrency", 2);
+        unpaginatedCacheEnabled = modelConfig.getBoolean("dynamo_cache_unpaginated", false);
+        hedgedReads = !modelConfig.getBoolean("dynamo_hedged_reads", false) ? null :
+                new DynamoDBHedgedReads(vertx,
+                        modelConfig.getDouble("dynamo_hedge_percentile", 0.95),
+                        modelConfig.getDouble("dynamo_hedge_budget", 0.05),
+                        modelConfig.getLong("dynamo_hedge_min_delay", 5L),
+                        modelConfig.getLong("dynamo_hedge_window", 60000L));
+        scanSnapshots = new DynamoDBScanSnapshots<>(
+                modelConfig.getLong("dynamo_scan_snapshot_ttl", 30000L),
+                modelConfig.getInteger("dynamo_scan_snapshots", 100),
+                modelConfig.getInteger("dynamo_scan_snapshot_max_items", 10000));
+        materializedAggregates = new DynamoDBMaterializedAggregates<>(this,
+                modelConfig.getLong("dynamo_materialized_aggregate_ttl", 60000L),
+                modelConfig.getInteger("dynamo_materialized_aggregate_partitions", 100),
+                modelConfig.getInteger("dynamo_materialized_aggregate_max_items", 10000));
+        writeBehindBuffer = !modelConfig.getBoolean("dynamo_write_behind", false) ? null :
+                new DynamoDBWriteBehindBuffer<>(vertx,
+                        modelConfig.getLong("dynamo_write_behind_window", 100L),
+                        modelConfig.getInteger("dynamo_write_behind_max_pending", 100),
+                        (record, updateLogic) -> {
+                            Future<UpdateResult<E>> updateFuture = Future.future();
+                            Repository.super.update(record, updateLogic, updateFuture.completer());
+
+                            return updateFuture;
+                        });
+
         Optional<String> tableName = Arrays.stream(TYPE.getDeclaredAnnotations())
                 .filter(a -> a instanceof DynamoDBTable)
                 .map(a -> (DynamoDBTable) a)
                 .map(table -> table.tableName())
                 .findFirst();
 
-        String COLLECTION;
-
         if (tableName.isPresent() || Arrays.stream(TYPE.getDeclaredAnnotations())
                 .anyMatch(a -> a instanceof DynamoDBDocument)) {
             COLLECTION = tableName.orElseGet(() ->
@@ -227,13 +302,18 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         Map<String, JsonObject> GSI_KEY_MAP = setGsiKeys(type);
         this.cacheManager.initializeCache(res -> isCached = res.succeeded());
 
+        this.workerExecutor = new DynamoDBWorkerExecutor(vertx, "dynamodb-" + TYPE.getSimpleName(),
+                modelConfig.getInteger("dynamo_worker_pool_size", 0),
+                modelConfig.getInteger("dynamo_worker_queue_size", 0),
+                COLLECTION, rateLimiter);
+        this.asyncExecutor = new DynamoDBAsyncExecutor<>(TYPE, vertx, this, HASH_IDENTIFIER, IDENTIFIER);
         this.parameters = new DynamoDBParameters<>(TYPE, this, HASH_IDENTIFIER, IDENTIFIER, PAGINATION_IDENTIFIER);
         this.aggregates = new DynamoDBAggregates<>(TYPE, this, HASH_IDENTIFIER, IDENTIFIER, this.cacheManager, etagManager);
 
         this.creator = new DynamoDBCreator<>(TYPE, vertx, this, HASH_IDENTIFIER, IDENTIFIER, this.cacheManager, etagManager);
         this.reader = new DynamoDBReader<>(TYPE, vertx, this, COLLECTION, HASH_IDENTIFIER, IDENTIFIER,
                 PAGINATION_IDENTIFIER, GSI_KEY_MAP, parameters, this.cacheManager, this.etagManager);
-        this.updater = new DynamoDBUpdater<>(this);
+        this.updater = new DynamoDBUpdater<>(TYPE, vertx, this, HASH_IDENTIFIER, IDENTIFIER, this.cacheManager, etagManager);
         this.deleter = new DynamoDBDeleter<>(TYPE, vertx, this, HASH_IDENTIFIER, IDENTIFIER, this.cacheManager, etagManager);
     }
 
@@ -257,24 +337,46 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         return S3BucketName;
     }
 
+    private static JsonObject getModelConfig(JsonObject appConfig, Class type) {
+        JsonObject modelConfigs = appConfig.getJsonObject("dynamo_model_config");
+        JsonObject modelConfig = modelConfigs == null ? null : modelConfigs.getJsonObject(type.getSimpleName());
+
+        return modelConfig == null ? appConfig : appConfig.copy().mergeIn(modelConfig);
+    }
+
     private void setMapper(JsonObject appConfig) {
         String dynamoDBId = appConfig.getString("dynamo_db_iam_id");
         String dynamoDBKey = appConfig.getString("dynamo_db_iam_key");
         String endPoint = fetchEndPoint(appConfig);
         String region = fetchRegion(appConfig);
 
+        AmazonDynamoDBAsyncClientBuilder clientBuilder = AmazonDynamoDBAsyncClientBuilder.standard()
+                .withEndpointConfiguration(new EndpointConfiguration(endPoint, region));
+
+        List<RequestHandler2> requestHandlers = new ArrayList<>();
+        if (capacityRegistry != null) requestHandlers.add(capacityRegistry.getRequestHandler());
+        if (rateLimiter != null) requestHandlers.add(rateLimiter.getRequestHandler());
+
+        if (!requestHandlers.isEmpty()) {
+            clientBuilder.withRequestHandlers(requestHandlers.toArray(new RequestHandler2[requestHandlers.size()]));
+        }
+
+        if (rateLimiter != null) {
+            clientBuilder.withClientConfiguration(new ClientConfiguration()
+                    .withRetryPolicy(rateLimiter.getRetryPolicy()));
+        }
+
         if (dynamoDBId != null && dynamoDBKey != null) {
             BasicAWSCredentials creds = new BasicAWSCredentials(dynamoDBId, dynamoDBKey);
             AWSStaticCredentialsProvider statCreds = new AWSStaticCredentialsProvider(creds);
 
-            DYNAMO_DB_MAPPER = new DynamoDBMapper(AmazonDynamoDBAsyncClientBuilder.standard()
+            DYNAMO_DB_CLIENT = clientBuilder
                     .withCredentials(statCreds)
-                    .withEndpointConfiguration(new EndpointConfiguration(endPoint, region))
-                    .build(), DynamoDBMapperConfig.DEFAULT, statCreds);
+                    .build();
+            DYNAMO_DB_MAPPER = new DynamoDBMapper(DYNAMO_DB_CLIENT, DynamoDBMapperConfig.DEFAULT, statCreds);
         } else {
-            DYNAMO_DB_MAPPER = new DynamoDBMapper(AmazonDynamoDBAsyncClientBuilder.standard()
-                    .withEndpointConfiguration(new EndpointConfiguration(endPoint, region))
-                    .build(), DynamoDBMapperConfig.DEFAULT);
+            DYNAMO_DB_CLIENT = clientBuilder.build();
+            DYNAMO_DB_MAPPER = new DynamoDBMapper(DYNAMO_DB_CLIENT, DynamoDBMapperConfig.DEFAULT);
         }
     }
 
@@ -438,6 +540,32 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         }
     }
 
+    /**
+     * Resolves the DynamoDB attribute name of a field, from a @DynamoDBAttribute on its getter or on the field, or the
+     * field name if it is not renamed.
+     *
+     * @param fieldName the field name
+     * @return the attribute name
+     */
+    public String getAttributeName(String fieldName) {
+        return attributeNameMap.computeIfAbsent(fieldName, name -> {
+            Optional<String> getterName = Arrays.stream(getAllMethodsOnType(TYPE))
+                    .filter(method -> method.getName().startsWith("get") && method.getParameterCount() == 0 &&
+                            stripGet(method.getName()).equals(name))
+                    .map(method -> method.getAnnotation(DynamoDBAttribute.class))
+                    .filter(annotation -> annotation != null && !annotation.attributeName().isEmpty())
+                    .map(DynamoDBAttribute::attributeName)
+                    .findFirst();
+
+            if (getterName.isPresent()) return getterName.get();
+
+            DynamoDBAttribute fieldAnnotation = getField(name).getAnnotation(DynamoDBAttribute.class);
+
+            return fieldAnnotation == null || fieldAnnotation.attributeName().isEmpty() ?
+                    name : fieldAnnotation.attributeName();
+        });
+    }
+
     @SuppressWarnings("ConstantConditions")
     public Field getField(String fieldName, Class klazz) throws IllegalArgumentException {
         try {
@@ -879,7 +1007,8 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
                 logger.debug("Loading newest with range!");
             }
 
-            return DYNAMO_DB_MAPPER.load(TYPE, hash, range);
+            return DYNAMO_DB_MAPPER.load(TYPE, hash, range,
+                    new DynamoDBMapperConfig(DynamoDBMapperConfig.ConsistentReads.CONSISTENT));
         } else {
             try {
                 if (logger.isDebugEnabled()) {
@@ -940,6 +1069,127 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         };
     }
 
+    public void atomicIncrementField(E record, String fieldName,
+                                     Handler<AsyncResult<UpdateResult<E>>> asyncResultHandler) {
+        updater.atomicIncrementField(record, fieldName, res -> {
+            if (res.failed()) {
+                asyncResultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                asyncResultHandler.handle(Future.succeededFuture(new UpdateResult<>(res.result())));
+            }
+        });
+    }
+
+    public Future<UpdateResult<E>> atomicIncrementField(E record, String fieldName) {
+        Future<UpdateResult<E>> updateFuture = Future.future();
+
+        atomicIncrementField(record, fieldName, updateFuture.completer());
+
+        return updateFuture;
+    }
+
+    public void atomicDecrementField(E record, String fieldName,
+                                     Handler<AsyncResult<UpdateResult<E>>> asyncResultHandler) {
+        updater.atomicDecrementField(record, fieldName, res -> {
+            if (res.failed()) {
+                asyncResultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                asyncResultHandler.handle(Future.succeededFuture(new UpdateResult<>(res.result())));
+            }
+        });
+    }
+
+    public Future<UpdateResult<E>> atomicDecrementField(E record, String fieldName) {
+        Future<UpdateResult<E>> updateFuture = Future.future();
+
+        atomicDecrementField(record, fieldName, updateFuture.completer());
+
+        return updateFuture;
+    }
+
+    @Override
+    public void update(E record, Function<E, E> updateLogic, Handler<AsyncResult<UpdateResult<E>>> resultHandler) {
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.submit(record, updateLogic, resultHandler);
+        } else {
+            Repository.super.update(record, updateLogic, resultHandler);
+        }
+    }
+
+    /**
+     * Writes all updates held by the write-behind buffer, if enabled.
+     */
+    public void flushWriteBehind() {
+        if (writeBehindBuffer != null) writeBehindBuffer.flush();
+    }
+
+    /**
+     * Flushes the write-behind buffer, closes the worker pool of the repository and stops the capacity snapshots. The
+     * repository should not be used after it is closed.
+     */
+    public void close() {
+        flushWriteBehind();
+        workerExecutor.close();
+
+        if (capacityRegistry != null) capacityRegistry.close();
+    }
+
+    /**
+     * Creates the records, through BatchWriteItem if batch writes are enabled. Batch creates are unconditional, so an
+     * existing item with the same key is replaced instead of failing the create, last writer wins. Batch creates report
+     * the outcome per record, a record sharing a key with an earlier record of the batch, or in a chunk that could not
+     * be written, gets a failed result. Updates always use the conditional path.
+     */
+    @Override
+    public void batchCreate(List<E> records, Handler<AsyncResult<List<CreateResult<E>>>> resultHandler) {
+        if (useBatchWrites(records.size())) {
+            creator.doBatchCreate(records, batchWriteParallelism, resultHandler);
+
+            return;
+        }
+
+        Handler<AsyncResult<List<E>>> writeHandler = res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(res.result().stream()
+                        .map(CreateResult::new)
+                        .collect(toList())));
+            }
+        };
+
+        Map<E, Function<E, E>> writeMap = new LinkedHashMap<>();
+        records.forEach(record -> writeMap.put(record, r -> r));
+
+        doWrite(true, writeMap, writeHandler);
+    }
+
+    /**
+     * Deletes the records, through BatchWriteItem if batch writes are enabled. Versioned models always use the
+     * per-item path, where each delete is conditional on the version of the record.
+     */
+    @Override
+    public void batchDelete(List<JsonObject> identifiers,
+                            Handler<AsyncResult<List<DeleteResult<E>>>> resultHandler) {
+        if (useBatchWrites(identifiers.size())) {
+            deleter.doBatchDelete(identifiers, batchWriteParallelism, res -> {
+                if (res.failed()) {
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(res.result().stream()
+                            .map(DeleteResult::new)
+                            .collect(toList())));
+                }
+            });
+        } else {
+            Repository.super.batchDelete(identifiers, resultHandler);
+        }
+    }
+
+    private boolean useBatchWrites(int size) {
+        return batchWritesEnabled && !isVersioned && size > 1;
+    }
+
     @Override
     public void update(E record, Handler<AsyncResult<UpdateResult<E>>> asyncResultHandler) {
         if (isVersioned) {
@@ -969,6 +1219,62 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         reader.read(identifiers, true, projections, asyncResultHandler);
     }
 
+    /**
+     * Reads the items of the identifiers, through BatchGetItem when every identifier is a full key. An identifier that
+     * does not exist gives a result with a null item on either path, any other failure fails the batch.
+     */
+    @Override
+    public void batchRead(List<JsonObject> identifiers, String[] projections,
+                          Handler<AsyncResult<List<ItemResult<E>>>> resultHandler) {
+        if (identifiers.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+        } else if (hasRangeKey && identifiers.stream().anyMatch(id -> id.getString("range") == null)) {
+            readEach(identifiers, projections, resultHandler);
+        } else {
+            reader.batchRead(identifiers, projections, resultHandler);
+        }
+    }
+
+    private void readEach(List<JsonObject> identifiers, String[] projections,
+                          Handler<AsyncResult<List<ItemResult<E>>>> resultHandler) {
+        List<Future> futureList = new ArrayList<>();
+
+        identifiers.forEach(identifier -> {
+            Future<ItemResult<E>> readFuture = Future.future();
+            Future<ItemResult<E>> future = Future.future();
+
+            readFuture.setHandler(readRes -> {
+                if (readRes.failed() && readRes.cause() instanceof ServiceException &&
+                        ((ServiceException) readRes.cause()).failureCode() == 404) {
+                    future.complete(new ItemResult<>(null, false));
+                } else {
+                    future.handle(readRes);
+                }
+            });
+
+            futureList.add(future);
+
+            if (projections != null) {
+                read(identifier, projections, readFuture.completer());
+            } else {
+                read(identifier, readFuture.completer());
+            }
+        });
+
+        CompositeFuture.all(futureList).setHandler(res -> {
+            if (res.failed()) {
+                resultHandler.handle(ServiceException.fail(500, "Unable to performed batchread!",
+                        new JsonObject().put("ids", identifiers)));
+            } else {
+                List<ItemResult<E>> results = IntStream.range(0, futureList.size())
+                        .mapToObj(i -> res.result().<ItemResult<E>>resultAt(i))
+                        .collect(toList());
+
+                resultHandler.handle(Future.succeededFuture(results));
+            }
+        });
+    }
+
     @Override
     public void read(JsonObject identifiers, boolean consistent, String[] projections, Handler<AsyncResult<ItemResult<E>>> asyncResultHandler) {
         reader.read(identifiers, consistent, projections, asyncResultHandler);
@@ -1015,6 +1321,19 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         aggregates.aggregation(identifiers, queryPack, projections, GSI, resultHandler);
     }
 
+    /**
+     * Registers a COUNT or SUM aggregate to be kept as running totals per hash key. Aggregations of a single hash key
+     * without filters matching the aggregate are answered from the totals, which every write to the hash key updates.
+     * The totals keep a contribution per item, bounded by the dynamo_materialized_aggregate_partitions and
+     * dynamo_materialized_aggregate_max_items config values.
+     *
+     * @param aggregateFunction the aggregate, a COUNT or SUM with up to three grouping levels
+     * @throws IllegalArgumentException if the aggregate cannot be materialized
+     */
+    public void registerMaterializedAggregate(AggregateFunction aggregateFunction) throws IllegalArgumentException {
+        materializedAggregates.register(aggregateFunction);
+    }
+
     @Override
     public JsonObject buildParameters(Map<String, List<String>> queryMap,
                                       Field[] fields, Method[] methods, JsonObject errors,
@@ -1052,6 +1371,79 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         reader.readAllWithoutPagination(queryPack, projections, GSI, asyncResultHandler);
     }
 
+    /**
+     * Streams every item, fetching pages lazily as the stream is drained. The stream honours pause and resume, so
+     * memory use is bounded by a single page regardless of the size of the collection.
+     *
+     * @return a stream of all items
+     */
+    public ReadStream<E> readAllAsStream() {
+        return reader.readAllAsStream();
+    }
+
+    public ReadStream<E> readAllWithoutPaginationAsStream(String identifier) {
+        return reader.readAllWithoutPaginationAsStream(identifier);
+    }
+
+    public ReadStream<E> readAllWithoutPaginationAsStream(String identifier, QueryPack queryPack,
+                                                          String[] projections) {
+        return readAllWithoutPaginationAsStream(identifier, queryPack, projections, null);
+    }
+
+    public ReadStream<E> readAllWithoutPaginationAsStream(String identifier, QueryPack queryPack,
+                                                          String[] projections, String GSI) {
+        return reader.readAllWithoutPaginationAsStream(identifier, queryPack, projections, GSI);
+    }
+
+    public ReadStream<E> readAllWithoutPaginationAsStream(QueryPack queryPack, String[] projections) {
+        return readAllWithoutPaginationAsStream(queryPack, projections, null);
+    }
+
+    public ReadStream<E> readAllWithoutPaginationAsStream(QueryPack queryPack, String[] projections, String GSI) {
+        return reader.readAllWithoutPaginationAsStream(queryPack, projections, GSI);
+    }
+
+    /**
+     * Creates a segmented scan with the segments, page size and read capacity budget of the model config.
+     *
+     * @return a new segmented scan
+     */
+    public DynamoDBSegmentedScan<E> segmentedScan() {
+        return segmentedScan(scanSegments, scanPageSize, scanReadCapacity);
+    }
+
+    /**
+     * @param totalSegments the number of segments to split the table into
+     * @param pageSize the max number of items per page, or 0 for DynamoDB's 1 MB pages
+     * @param readCapacity the read capacity units per second for the whole scan, or 0 for no limit
+     * @return a new segmented scan
+     */
+    public DynamoDBSegmentedScan<E> segmentedScan(int totalSegments, int pageSize, double readCapacity) {
+        return new DynamoDBSegmentedScan<>(vertx, this, totalSegments, pageSize, readCapacity);
+    }
+
+    /**
+     * Counts the items matching the query pack with Select.COUNT, without reading them.
+     *
+     * @param identifier the hash key, or null to count across the table
+     * @param queryPack the query pack with the filter parameters, may be null
+     * @param GSI the index to count on, may be null
+     * @param resultHandler the handler for the count
+     */
+    public void count(String identifier, QueryPack queryPack, String GSI, Handler<AsyncResult<Long>> resultHandler) {
+        reader.count(identifier, queryPack, GSI, resultHandler);
+    }
+
+    /**
+     * Creates a batch read across repositories, which serves cache hits locally and fetches the misses of all added
+     * repositories with shared cross-table BatchGetItem requests.
+     *
+     * @return a new multi get
+     */
+    public static DynamoDBMultiGet multiGet() {
+        return new DynamoDBMultiGet();
+    }
+
     public void readAllPaginated(Handler<AsyncResult<PaginatedParallelScanList<E>>> resultHandler) {
         reader.readAllPaginated(resultHandler);
     }
@@ -1399,6 +1791,102 @@ public class DynamoDBRepository<E extends DynamoDBModel & Model & ETagable & Cac
         return DYNAMO_DB_MAPPER;
     }
 
+    public AmazonDynamoDBAsync getDynamoDbClient() {
+        return DYNAMO_DB_CLIENT;
+    }
+
+    public DynamoDBReader<E> getReader() {
+        return reader;
+    }
+
+    public DynamoDBAsyncExecutor<E> getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public int getWriteParallelism() {
+        return writeParallelism;
+    }
+
+    public int getScanSegments() {
+        return scanSegments;
+    }
+
+    public int getScanPageSize() {
+        return scanPageSize;
+    }
+
+    public boolean isPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
+    public int getPrefetchConcurrency() {
+        return prefetchConcurrency;
+    }
+
+    public boolean isUnpaginatedCacheEnabled() {
+        return unpaginatedCacheEnabled;
+    }
+
+    public DynamoDBScanSnapshots<E> getScanSnapshots() {
+        return scanSnapshots;
+    }
+
+    /**
+     * @return the write generation, which changes on every write to the model
+     */
+    public long getWriteGeneration() {
+        return writeGeneration.get();
+    }
+
+    /**
+     * Drops the scan snapshots and moves to a new write generation, so unpaginated reads that were loaded before the
+     * write are never served from the item list cache. Called on every write, before the caches are purged.
+     */
+    public void invalidateReadCaches() {
+        writeGeneration.incrementAndGet();
+        scanSnapshots.invalidate();
+    }
+
+    public DynamoDBMaterializedAggregates<E> getMaterializedAggregates() {
+        return materializedAggregates;
+    }
+
+    public DynamoDBWorkerExecutor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    public JsonObject getWorkerMetrics() {
+        return workerExecutor.getMetrics();
+    }
+
+    public DynamoDBCapacityRegistry getCapacityRegistry() {
+        return capacityRegistry;
+    }
+
+    public JsonObject getRateLimitMetrics() {
+        return rateLimiter == null ? new JsonObject() : rateLimiter.getMetrics();
+    }
+
+    public DynamoDBHedgedReads getHedgedReads() {
+        return hedgedReads;
+    }
+
+    public JsonObject getHedgeMetrics() {
+        return hedgedReads == null ? new JsonObject() : hedgedReads.getMetrics();
+    }
+
+    public boolean isAsyncExecutionEnabled() {
+        return asyncExecutionEnabled;
+    }
+
+    public boolean isVersioned() {
+        return isVersioned;
+    }
+
+    public String getCollection() {
+        return COLLECTION;
+    }
+
     public RedisClient getRedisClient() {
         return REDIS_CLIENT;
     }
@@ -0,0 +1,300 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.utils.AggregateFunctions;
+import com.nannoq.tools.repository.utils.HyperLogLog;
+import com.nannoq.tools.repository.utils.QuantileSketch;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * This class defines the running state of a SUM, AVG, MIN, MAX, APPROX_DISTINCT or APPROX_PERCENTILE aggregation, fed
+ * one item at a time as pages arrive. Sums and averages keep a sum and a count for the whole result and for every group
+ * of up to three grouping levels, and the approximate functions keep a HyperLogLog or a quantile sketch in the same
+ * places. Minimums and maximums keep the extreme value and the items that share it. Memory is bound by the number of
+ * groups and ties, not by the number of items, and accumulators of the same aggregation merge.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBAggregateAccumulator<E> {
+    private final AggregateFunctions function;
+    private final Function<E, ?> valueExtractor;
+    private final List<Function<E, String>> groupingKeys;
+    private final boolean highest;
+    private final double percentile;
+
+    private final State<E> total = new State<>();
+    private final Map<String, Object> groups = new HashMap<>();
+    private long itemCount;
+
+    /**
+     * @param function the aggregate function, SUM, AVG, MIN, MAX or APPROX_DISTINCT
+     * @param valueExtractor extracts the aggregated value of an item, a number unless APPROX_DISTINCT, null values are
+     *                       skipped
+     * @param groupingKeys the grouping key of every grouping level, empty if ungrouped
+     * @param highest whether ties are kept for the highest value instead of the lowest, used by MIN and MAX
+     */
+    public DynamoDBAggregateAccumulator(AggregateFunctions function, Function<E, ?> valueExtractor,
+                                        List<Function<E, String>> groupingKeys, boolean highest) {
+        this(function, valueExtractor, groupingKeys, highest, 50.0);
+    }
+
+    /**
+     * @param function the aggregate function
+     * @param valueExtractor extracts the aggregated value of an item, a number unless APPROX_DISTINCT, null values are
+     *                       skipped
+     * @param groupingKeys the grouping key of every grouping level, empty if ungrouped
+     * @param highest whether ties are kept for the highest value instead of the lowest, used by MIN and MAX
+     * @param percentile the percentile returned by APPROX_PERCENTILE, between inclusive 0 and inclusive 100
+     */
+    public DynamoDBAggregateAccumulator(AggregateFunctions function, Function<E, ?> valueExtractor,
+                                        List<Function<E, String>> groupingKeys, boolean highest, double percentile) {
+        if (groupingKeys.size() > 3) throw new IllegalArgumentException("GroupBy size of three is max!");
+
+        this.function = function;
+        this.valueExtractor = valueExtractor;
+        this.groupingKeys = groupingKeys;
+        this.highest = highest;
+        this.percentile = percentile;
+    }
+
+    /**
+     * Adds an item to the running state.
+     *
+     * @param item the item
+     */
+    @SuppressWarnings("unchecked")
+    public void accept(E item) {
+        Object value = valueExtractor.apply(item);
+
+        if (value == null) return;
+
+        itemCount++;
+
+        if (function == AggregateFunctions.MIN || function == AggregateFunctions.MAX) {
+            total.addExtreme(item, ((Number) value).doubleValue(), highest);
+
+            return;
+        }
+
+        total.add(function, value);
+
+        if (groupingKeys.isEmpty()) return;
+
+        Map<String, Object> level = groups;
+
+        for (int i = 0; i < groupingKeys.size(); i++) {
+            String key = groupingKeys.get(i).apply(item);
+
+            if (i == groupingKeys.size() - 1) {
+                ((State<E>) level.computeIfAbsent(key, k -> new State<>())).add(function, value);
+            } else {
+                level = (Map<String, Object>) level.computeIfAbsent(key, k -> new HashMap<String, Object>());
+            }
+        }
+    }
+
+    /**
+     * Merges the state of another accumulator of the same aggregation into this accumulator, such as the accumulator
+     * of another segment. The other accumulator must not be used after the merge.
+     *
+     * @param other the accumulator to merge
+     * @return this accumulator
+     */
+    public DynamoDBAggregateAccumulator<E> merge(DynamoDBAggregateAccumulator<E> other) {
+        if (other.function != function || other.groupingKeys.size() != groupingKeys.size()) {
+            throw new IllegalArgumentException("Cannot merge accumulators of different aggregations!");
+        }
+
+        itemCount += other.itemCount;
+        total.merge(other.total, highest);
+        merge(groups, other.groups);
+
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void merge(Map<String, Object> level, Map<String, Object> otherLevel) {
+        otherLevel.forEach((key, otherValue) -> {
+            Object value = level.get(key);
+
+            if (value == null) {
+                level.put(key, otherValue);
+            } else if (value instanceof State) {
+                ((State<E>) value).merge((State<E>) otherValue, highest);
+            } else {
+                merge((Map<String, Object>) value, (Map<String, Object>) otherValue);
+            }
+        });
+    }
+
+    /**
+     * @return the number of items that contributed a value, items with a null value are not counted
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public double getSum() {
+        return total.sum;
+    }
+
+    public double getAvg() {
+        return total.avg();
+    }
+
+    /**
+     * @return the approximate number of distinct values of an APPROX_DISTINCT
+     */
+    public long getDistinct() {
+        return total.distinct();
+    }
+
+    /**
+     * @return the approximate value at the percentile of an APPROX_PERCENTILE, or null if there are no values
+     */
+    public Double getPercentile() {
+        return total.percentile(percentile);
+    }
+
+    /**
+     * @return the items sharing the lowest or highest value
+     */
+    public List<E> getTies() {
+        return total.ties;
+    }
+
+    /**
+     * @return the result of every group, as nested maps with one level per grouping level
+     */
+    public Map<String, Object> getGroupedValues() {
+        return values(groups);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> values(Map<String, Object> level) {
+        Map<String, Object> values = new HashMap<>();
+
+        level.forEach((key, value) -> values.put(key, value instanceof State ?
+                value((State<E>) value) : values((Map<String, Object>) value)));
+
+        return values;
+    }
+
+    private Object value(State<E> state) {
+        switch (function) {
+            case AVG:
+                return state.avg();
+            case APPROX_DISTINCT:
+                return state.distinct();
+            case APPROX_PERCENTILE:
+                return state.percentile(percentile);
+            default:
+                return state.sum;
+        }
+    }
+
+    private static final class State<E> {
+        private double sum;
+        private long count;
+        private Double extreme;
+        private final List<E> ties = new ArrayList<>();
+        private HyperLogLog distinctValues;
+        private QuantileSketch quantiles;
+
+        private void add(AggregateFunctions function, Object value) {
+            switch (function) {
+                case APPROX_DISTINCT:
+                    if (distinctValues == null) distinctValues = new HyperLogLog();
+                    distinctValues.add(value);
+
+                    break;
+                case APPROX_PERCENTILE:
+                    if (quantiles == null) quantiles = new QuantileSketch();
+                    quantiles.add(((Number) value).doubleValue());
+
+                    break;
+                default:
+                    sum += ((Number) value).doubleValue();
+                    count++;
+            }
+        }
+
+        private void merge(State<E> other, boolean highest) {
+            sum += other.sum;
+            count += other.count;
+
+            if (other.extreme != null) {
+                int comparison = extreme == null ? 1 : Double.compare(other.extreme, extreme) * (highest ? 1 : -1);
+
+                if (comparison > 0) {
+                    extreme = other.extreme;
+                    ties.clear();
+                    ties.addAll(other.ties);
+                } else if (comparison == 0) {
+                    ties.addAll(other.ties);
+                }
+            }
+
+            if (other.distinctValues != null) {
+                if (distinctValues == null) distinctValues = new HyperLogLog();
+                distinctValues.merge(other.distinctValues);
+            }
+
+            if (other.quantiles != null) {
+                if (quantiles == null) quantiles = new QuantileSketch();
+                quantiles.merge(other.quantiles);
+            }
+        }
+
+        private long distinct() {
+            return distinctValues == null ? 0L : distinctValues.estimate();
+        }
+
+        private Double percentile(double percentile) {
+            return quantiles == null ? null : quantiles.percentile(percentile);
+        }
+
+        private double avg() {
+            return count == 0 ? 0.0 : sum / count;
+        }
+
+        private void addExtreme(E item, double value, boolean highest) {
+            int comparison = extreme == null ? 1 : Double.compare(value, extreme) * (highest ? 1 : -1);
+
+            if (comparison > 0) {
+                extreme = value;
+                ties.clear();
+                ties.add(item);
+            } else if (comparison == 0) {
+                ties.add(item);
+            }
+        }
+    }
+}
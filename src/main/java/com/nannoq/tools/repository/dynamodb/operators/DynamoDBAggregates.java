@@ -30,6 +30,7 @@ import com.nannoq.tools.repository.models.*;
 import com.nannoq.tools.repository.repository.cache.CacheManager;
 import com.nannoq.tools.repository.repository.etag.ETagManager;
 import com.nannoq.tools.repository.utils.AggregateFunction;
+import com.nannoq.tools.repository.utils.AggregateFunctions;
 import com.nannoq.tools.repository.utils.GroupingConfiguration;
 import com.nannoq.tools.repository.utils.QueryPack;
 import io.vertx.core.AsyncResult;
@@ -41,10 +42,11 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 
-import java.time.Duration;
+import java.lang.reflect.Field;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -68,6 +70,7 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
     private final CacheManager<E> cacheManager;
     private final ETagManager<E> eTagManager;
+    private final DynamoDBGroupingKeys<E> groupingKeys;
 
     public DynamoDBAggregates(Class<E> TYPE, DynamoDBRepository<E> db,
                               String HASH_IDENTIFIER, String IDENTIFIER,
@@ -78,6 +81,7 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
         this.IDENTIFIER = IDENTIFIER;
         this.cacheManager = cacheManager;
         this.eTagManager = eTagManager;
+        this.groupingKeys = new DynamoDBGroupingKeys<>(db);
     }
     
     public void aggregation(JsonObject identifiers, QueryPack queryPack, String[] projections,
@@ -85,6 +89,15 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
         if (logger.isDebugEnabled()) { logger.debug("QueryPack is: " + Json.encodePrettily(queryPack) + ", projections: " +
                 Arrays.toString(projections) + ", ids: " + identifiers.encodePrettily()); }
 
+        if (db.getMaterializedAggregates().isMaterialized(identifiers, queryPack, GSI)) {
+            materializedAggregation(identifiers, queryPack, projections, GSI, resultHandler);
+        } else {
+            performAggregation(identifiers, queryPack, projections, GSI, resultHandler);
+        }
+    }
+
+    private void performAggregation(JsonObject identifiers, QueryPack queryPack, String[] projections,
+                                    String GSI, Handler<AsyncResult<String>> resultHandler) {
         switch (queryPack.getAggregateFunction().getFunction()) {
             case MIN:
                 findItemsWithMinOfField(identifiers, queryPack, projections, GSI, resultHandler);
@@ -105,38 +118,159 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
             case COUNT:
                 countItems(identifiers, queryPack, GSI, resultHandler);
 
+                break;
+            case APPROX_DISTINCT:
+            case APPROX_PERCENTILE:
+                approximateField(identifiers, queryPack, GSI, resultHandler);
+
                 break;
         }
     }
 
+    /**
+     * Answers a registered COUNT or SUM from its running totals, falling back to the regular aggregation if the totals
+     * cannot be built.
+     */
+    private void materializedAggregation(JsonObject identifiers, QueryPack queryPack, String[] projections,
+                                         String GSI, Handler<AsyncResult<String>> resultHandler) {
+        final AggregateFunction aggregateFunction = queryPack.getAggregateFunction();
+        final boolean count = aggregateFunction.getFunction() == AggregateFunctions.COUNT;
+        final String etagKey = queryPack.getBaseEtagKey() +
+                (count ? "_COUNT" : "_" + aggregateFunction.getField() + "_SUM") +
+                aggregateFunction.getGroupBy().hashCode();
+        final String[] fields = Stream.concat(
+                aggregateFunction.getGroupBy().stream().map(GroupingConfiguration::getGroupBy),
+                count ? Stream.<String>empty() : Stream.of(aggregateFunction.getField()))
+                .distinct()
+                .toArray(String[]::new);
+
+        db.getMaterializedAggregates().aggregate(identifiers.getString("hash"), queryPack, addIdentifiers(fields),
+                aggregateResult -> {
+            if (aggregateResult.failed()) {
+                logger.error("Materialized aggregate failed, running aggregation!", aggregateResult.cause());
+
+                performAggregation(identifiers, queryPack, projections, GSI, resultHandler);
+            } else {
+                final DynamoDBMaterializedAggregates.Aggregate aggregate = aggregateResult.result();
+                final JsonObject content;
+
+                if (!count && aggregate.getItemCount() == 0) {
+                    content = new JsonObject().put("error", "Empty table!");
+                } else if (aggregateFunction.hasGrouping()) {
+                    content = sortAndFormatGroups(aggregate.getGroupedValues(), aggregateFunction);
+                } else if (count) {
+                    content = new JsonObject().put("count", aggregate.getItemCount());
+                } else {
+                    content = new JsonObject().put("sum", aggregate.getSum());
+                }
+
+                setEtagAndReturnContent(etagKey, identifiers.encode().hashCode(), content.encode(), resultHandler);
+            }
+        });
+    }
+
     private void findItemsWithMinOfField(JsonObject identifiers, QueryPack queryPack,
                                          String[] projections, String GSI, Handler<AsyncResult<String>> resultHandler) {
-        performMinOrMaxAggregation(identifiers, queryPack, "MIN",
-                (r, f) -> getAllItemsWithLowestValue(r, f), projections, GSI, resultHandler);
+        performMinOrMaxAggregation(identifiers, queryPack, "MIN", projections, GSI, resultHandler);
     }
 
-    @SuppressWarnings("unchecked")
     private void findItemsWithMaxOfField(JsonObject identifiers, QueryPack queryPack,
                                          String[] projections, String GSI, Handler<AsyncResult<String>> resultHandler) {
-        performMinOrMaxAggregation(identifiers, queryPack, "MAX",
-                (r, f) -> getAllItemsWithHighestValue(r, f), projections, GSI, resultHandler);
+        performMinOrMaxAggregation(identifiers, queryPack, "MAX", projections, GSI, resultHandler);
     }
 
-    private void doIdentifierBasedQuery(JsonObject identifiers, QueryPack queryPack, String GSI,
-                                        Handler<AsyncResult<List<E>>> res, String[][] projs) {
-        if (identifiers.isEmpty()) {
-            if (GSI != null) {
-                db.readAllWithoutPagination(queryPack, addIdentifiers(projs[0]), GSI, res);
-            } else {
-                db.readAllWithoutPagination(queryPack, addIdentifiers(projs[0]), res);
-            }
-        } else {
-            if (GSI != null) {
-                db.readAllWithoutPagination(identifiers.getString("hash"), queryPack, addIdentifiers(projs[0]), GSI, res);
-            } else {
-                db.readAllWithoutPagination(identifiers.getString("hash"), queryPack, addIdentifiers(projs[0]), res);
+    /**
+     * Streams the items of the aggregation page by page into an accumulator, fetching the next page while the current
+     * one is accumulated. Aggregations without an identifier scan the table in parallel segments instead, with an
+     * accumulator per segment that are merged when the scan is done.
+     */
+    private void streamAggregation(JsonObject identifiers, QueryPack queryPack, String GSI, String[] projections,
+                                   boolean grouped,
+                                   Handler<AsyncResult<DynamoDBAggregateAccumulator<E>>> resultHandler) {
+        final DynamoDBSegmentedScan<E> scan = identifiers.isEmpty() ? db.segmentedScan() : null;
+        final List<DynamoDBAggregateAccumulator<E>> accumulators = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < (scan == null ? 1 : scan.getTotalSegments()); i++) {
+                accumulators.add(createAccumulator(queryPack.getAggregateFunction(), grouped));
             }
+        } catch (IllegalArgumentException | UnknownError e) {
+            resultHandler.handle(Future.failedFuture(e));
+
+            return;
+        }
+
+        final Future<DynamoDBAggregateAccumulator<E>> done = Future.future();
+        done.setHandler(resultHandler);
+
+        if (scan != null) {
+            scanAggregation(scan, queryPack, GSI, projections, accumulators, done);
+
+            return;
         }
+
+        final DynamoDBAggregateAccumulator<E> accumulator = accumulators.get(0);
+        final DynamoDBReadStream<E> stream = db.getReader().readAllWithoutPaginationAsStream(
+                identifiers.getString("hash"), queryPack, projections, GSI);
+
+        stream.readAhead(true)
+                .exceptionHandler(done::tryFail)
+                .endHandler(v -> done.tryComplete(accumulator))
+                .handler(item -> {
+                    try {
+                        accumulator.accept(item);
+                    } catch (RuntimeException | Error e) {
+                        stream.pause();
+                        done.tryFail(e);
+                    }
+                });
+    }
+
+    private void scanAggregation(DynamoDBSegmentedScan<E> scan, QueryPack queryPack, String GSI, String[] projections,
+                                 List<DynamoDBAggregateAccumulator<E>> accumulators,
+                                 Future<DynamoDBAggregateAccumulator<E>> done) {
+        scan.withExpression(db.getReader().rootScanExpression(queryPack, projections, GSI))
+                .scanSegments(segment -> items -> {
+                    try {
+                        items.forEach(accumulators.get(segment)::accept);
+                    } catch (RuntimeException | Error e) {
+                        scan.stop();
+                        done.tryFail(e);
+                    }
+                }, scanResult -> {
+                    if (scanResult.failed()) {
+                        done.tryFail(scanResult.cause());
+                    } else {
+                        DynamoDBAggregateAccumulator<E> merged = accumulators.get(0);
+
+                        for (int i = 1; i < accumulators.size(); i++) {
+                            merged = merged.merge(accumulators.get(i));
+                        }
+
+                        done.tryComplete(merged);
+                    }
+                });
+    }
+
+    private DynamoDBAggregateAccumulator<E> createAccumulator(AggregateFunction aggregateFunction, boolean grouped) {
+        final String fieldName = aggregateFunction.getField();
+        final Field field = aggregateFunction.isApproxDistinct() ?
+                db.getField(fieldName) : db.checkAndGetField(fieldName);
+        final List<Function<E, String>> keys = !grouped || !aggregateFunction.hasGrouping() ?
+                Collections.emptyList() : aggregateFunction.getGroupBy().stream()
+                .map(groupingKeys::extractor)
+                .collect(toList());
+        final Function<E, ?> valueExtractor = aggregateFunction.isApproxDistinct() ?
+                item -> db.getFieldAsObject(fieldName, item) :
+                item -> db.extractValueAsDouble(field, item);
+
+        return new DynamoDBAggregateAccumulator<>(aggregateFunction.getFunction(), valueExtractor, keys,
+                aggregateFunction.getFunction() == AggregateFunctions.MAX,
+                aggregateFunction.getPercentile() == null ? 50.0 : aggregateFunction.getPercentile());
+    }
+
+    private JsonObject groupedValues(DynamoDBAggregateAccumulator<E> accumulator, AggregateFunction aggregateFunction) {
+        return sortAndFormatGroups(accumulator.getGroupedValues(), aggregateFunction);
     }
 
     private void calculateGroupingPageToken(List<GroupingConfiguration> groupingParam, String[][] projs, String[] finalProjections) {
@@ -158,49 +292,32 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
             GroupingConfiguration levelOne = groupingConfigurations.get(0);
             GroupingConfiguration levelTwo = groupingConfigurations.size() > 1 ? groupingConfigurations.get(1) : null;
             GroupingConfiguration levelThree = groupingConfigurations.size() > 2 ? groupingConfigurations.get(2) : null;
+            Function<E, String> keyOne = groupingKeys.extractor(levelOne);
+            Function<E, String> keyTwo = levelTwo == null ? null : groupingKeys.extractor(levelTwo);
+            Function<E, String> keyThree = levelThree == null ? null : groupingKeys.extractor(levelThree);
 
             if (levelOne != null && levelTwo == null) {
                 return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne)));
+                        .collect(groupingBy(keyOne));
             } else if (levelOne != null && levelThree == null) {
                 return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo))));
+                        .collect(groupingBy(keyOne,
+                                groupingBy(keyTwo)));
             } else if (levelThree != null) {
                 //noinspection ConstantConditions
                 return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
-                                        groupingBy(item -> calculateGroupingKey(item, levelThree)))));
+                        .collect(groupingBy(keyOne,
+                                groupingBy(keyTwo,
+                                        groupingBy(keyThree))));
             }
 
             throw new IllegalArgumentException();
         });
     }
 
-    private List<E> getAllItemsWithLowestValue(List<E> records, String field) {
-        final List<E> result = new ArrayList<>();
-        final List<E> min = new ArrayList<>();
-        min.add(null);
-
-        records.forEach(r -> {
-            if (min.get(0) == null || db.extractValueAsDouble(db.checkAndGetField(field), r)
-                    .compareTo(db.extractValueAsDouble(db.checkAndGetField(field), min.get(0))) < 0) {
-                min.set(0, r);
-                result.clear();
-                result.add(r);
-            } else if (min.get(0) != null && db.extractValueAsDouble(db.checkAndGetField(field), r)
-                    .compareTo(db.extractValueAsDouble(db.checkAndGetField(field), min.get(0))) == 0) {
-                result.add(r);
-            }
-        });
-
-        return result;
-    }
-
     private void performMinOrMaxAggregation(JsonObject identifiers, QueryPack queryPack, String command,
-                                            BiFunction<List<E>, String, List<E>> valueExtractor, String[] projections,
-                                            String GSI, Handler<AsyncResult<String>> resultHandler) {
+                                            String[] projections, String GSI,
+                                            Handler<AsyncResult<String>> resultHandler) {
         int hashCode = queryPack.getAggregateFunction().getGroupBy() == null ?
                 0 : queryPack.getAggregateFunction().getGroupBy().hashCode();
         AggregateFunction aggregateFunction = queryPack.getAggregateFunction();
@@ -212,24 +329,23 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
         cacheManager.checkAggregationCache(cacheKey, cacheRes -> {
             if (cacheRes.failed()) {
-                final Handler<AsyncResult<List<E>>> res = allResult -> {
+                final Handler<AsyncResult<DynamoDBAggregateAccumulator<E>>> res = allResult -> {
                     if (allResult.failed()) {
                         resultHandler.handle(Future.failedFuture("Could not remoteRead all records..."));
                     } else {
-                        List<E> records = allResult.result();
+                        DynamoDBAggregateAccumulator<E> accumulator = allResult.result();
 
-                        if (records.size() == 0) {
+                        if (accumulator.getItemCount() == 0) {
                             setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey,
                                     new JsonObject().put("error", "Empty table!").encode(), resultHandler);
                         } else {
                             if (queryPack.getAggregateFunction().hasGrouping()) {
-                                List<E> maxItems = getAllItemsWithHighestValue(allResult.result(), field);
-                                JsonObject aggregatedItems = calculateGroupings(aggregateFunction, maxItems);
+                                JsonObject aggregatedItems = calculateGroupings(aggregateFunction, accumulator.getTies());
 
                                 setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey, aggregatedItems.encode(), resultHandler);
                             } else {
                                 JsonArray items = new JsonArray();
-                                valueExtractor.apply(records, field).stream()
+                                accumulator.getTies().stream()
                                         .map(o -> o.toJsonFormat())
                                         .forEach(items::add);
 
@@ -257,7 +373,7 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
                 if (logger.isDebugEnabled()) { logger.debug("Projections: " + Arrays.toString(projs[0])); }
 
-                doIdentifierBasedQuery(identifiers, queryPack, GSI, res, projs);
+                streamAggregation(identifiers, queryPack, GSI, addIdentifiers(projs[0]), false, res);
             } else {
                 resultHandler.handle(Future.succeededFuture(cacheRes.result()));
             }
@@ -294,26 +410,6 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
         }
     }
 
-    private List<E> getAllItemsWithHighestValue(List<E> records, String field) {
-        final List<E> result = new ArrayList<>();
-        final List<E> max = new ArrayList<>();
-        max.add(null);
-
-        records.forEach(r -> {
-            if (max.get(0) == null || db.extractValueAsDouble(db.checkAndGetField(field), r)
-                    .compareTo(db.extractValueAsDouble(db.checkAndGetField(field), max.get(0))) > 0) {
-                max.set(0, r);
-                result.clear();
-                result.add(r);
-            } else if (max.get(0) != null && db.extractValueAsDouble(db.checkAndGetField(field), r)
-                    .compareTo(db.extractValueAsDouble(db.checkAndGetField(field), max.get(0))) == 0) {
-                result.add(r);
-            }
-        });
-
-        return result;
-    }
-
     private void avgField(JsonObject identifiers, QueryPack queryPack, String GSI,
                           Handler<AsyncResult<String>> resultHandler) {
         int hashCode = queryPack.getAggregateFunction().getGroupBy() == null ?
@@ -327,32 +423,19 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
         cacheManager.checkAggregationCache(cacheKey, cacheRes -> {
             if (cacheRes.failed()) {
-                final Handler<AsyncResult<List<E>>> res = allResult -> {
+                final Handler<AsyncResult<DynamoDBAggregateAccumulator<E>>> res = allResult -> {
                     if (allResult.failed()) {
                         resultHandler.handle(Future.failedFuture("Could not remoteRead all records..."));
                     } else {
-                        List<E> records = allResult.result();
+                        DynamoDBAggregateAccumulator<E> accumulator = allResult.result();
 
-                        if (records.size() == 0) {
+                        if (accumulator.getItemCount() == 0) {
                             setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey,
                                     new JsonObject().put("error", "Empty table!").encode(), resultHandler);
                         } else {
-                            JsonObject avg;
-
-                            if (queryPack.getAggregateFunction().hasGrouping()) {
-                                avg = avgGrouping(allResult.result(), aggregateFunction, field);
-                            } else {
-                                avg = new JsonObject();
-
-                                records.stream()
-                                        .mapToDouble(r -> db.extractValueAsDouble(db.checkAndGetField(field), r))
-                                        .filter(Objects::nonNull)
-                                        .average().ifPresent(value -> avg.put("avg", value));
-
-                                if (avg.size() == 0) {
-                                    avg.put("avg", 0.0);
-                                }
-                            }
+                            JsonObject avg = queryPack.getAggregateFunction().hasGrouping() ?
+                                    groupedValues(accumulator, aggregateFunction) :
+                                    new JsonObject().put("avg", accumulator.getAvg());
 
                             setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey, avg.encode(), resultHandler);
                         }
@@ -364,42 +447,13 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
                 calculateGroupingPageToken(groupingParam, projections, finalProjections);
 
-                doIdentifierBasedQueryNoIdentifierAddition(identifiers, queryPack, GSI, res, projections);
+                streamAggregation(identifiers, queryPack, GSI, projections[0], true, res);
             } else {
                 resultHandler.handle(Future.succeededFuture(cacheRes.result()));
             }
         });
     }
 
-    private JsonObject avgGrouping(List<E> result, AggregateFunction aggregateFunction, String field) {
-        return performGroupingAndSorting(result, aggregateFunction, (items, groupingConfigurations) -> {
-            if (groupingConfigurations.size() > 3) throw new IllegalArgumentException("GroupBy size of three is max!");
-            GroupingConfiguration levelOne = groupingConfigurations.get(0);
-            GroupingConfiguration levelTwo = groupingConfigurations.size() > 1 ? groupingConfigurations.get(1) : null;
-            GroupingConfiguration levelThree = groupingConfigurations.size() > 2 ? groupingConfigurations.get(2) : null;
-
-            if (levelOne != null && levelTwo == null) {
-                return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                averagingDouble(item -> db.extractValueAsDouble(db.checkAndGetField(field), item))));
-            } else if (levelOne != null && levelThree == null) {
-                return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
-                                        averagingDouble(item -> db.extractValueAsDouble(db.checkAndGetField(field), item)))));
-            } else if (levelThree != null) {
-                //noinspection ConstantConditions
-                return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
-                                        groupingBy(item -> calculateGroupingKey(item, levelThree),
-                                                summingDouble(item -> db.extractValueAsDouble(db.checkAndGetField(field), item))))));
-            }
-
-            throw new IllegalArgumentException();
-        });
-    }
-
     private void doIdentifierBasedQueryNoIdentifierAddition(JsonObject identifiers, QueryPack queryPack, String GSI,
                                                             Handler<AsyncResult<List<E>>> res, String[] projections) {
         String[][] temp = new String[1][1];
@@ -438,24 +492,21 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
         cacheManager.checkAggregationCache(cacheKey, cacheRes -> {
             if (cacheRes.failed()) {
-                final Handler<AsyncResult<List<E>>> res = allResult -> {
+                final Handler<AsyncResult<DynamoDBAggregateAccumulator<E>>> res = allResult -> {
                     if (allResult.failed()) {
                         logger.error("Read all failed!", allResult.cause());
 
                         resultHandler.handle(Future.failedFuture("Could not remoteRead all records..."));
                     } else {
-                        List<E> records = allResult.result();
+                        DynamoDBAggregateAccumulator<E> accumulator = allResult.result();
 
-                        if (records.size() == 0) {
+                        if (accumulator.getItemCount() == 0) {
                             setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey,
                                     new JsonObject().put("error", "Empty table!").encode(), resultHandler);
                         } else {
                             JsonObject sum = aggregateFunction.hasGrouping() ?
-                                    sumGrouping(allResult.result(), aggregateFunction, field) :
-                                    new JsonObject().put("sum", records.stream()
-                                            .mapToDouble(r -> db.extractValueAsDouble(db.checkAndGetField(field), r))
-                                            .filter(Objects::nonNull)
-                                            .sum());
+                                    groupedValues(accumulator, aggregateFunction) :
+                                    new JsonObject().put("sum", accumulator.getSum());
 
                             setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey, sum.encode(), resultHandler);
                         }
@@ -467,39 +518,62 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
 
                 calculateGroupingPageToken(groupingParam, projections, finalProjections);
 
-                doIdentifierBasedQueryNoIdentifierAddition(identifiers, queryPack, GSI, res, projections);
+                streamAggregation(identifiers, queryPack, GSI, projections[0], true, res);
             } else {
                 resultHandler.handle(Future.succeededFuture(cacheRes.result()));
             }
         });
     }
 
-    private JsonObject sumGrouping(List<E> result, AggregateFunction aggregateFunction, String field) {
-        return performGroupingAndSorting(result, aggregateFunction, (items, groupingConfigurations) -> {
-            if (groupingConfigurations.size() > 3) throw new IllegalArgumentException("GroupBy size of three is max!");
-            GroupingConfiguration levelOne = groupingConfigurations.get(0);
-            GroupingConfiguration levelTwo = groupingConfigurations.size() > 1 ? groupingConfigurations.get(1) : null;
-            GroupingConfiguration levelThree = groupingConfigurations.size() > 2 ? groupingConfigurations.get(2) : null;
+    /**
+     * Streams the items into a HyperLogLog or a quantile sketch per group, so distinct counts and percentiles need
+     * memory per group rather than per item.
+     */
+    private void approximateField(JsonObject identifiers, QueryPack queryPack, String GSI,
+                                  Handler<AsyncResult<String>> resultHandler) {
+        AggregateFunction aggregateFunction = queryPack.getAggregateFunction();
+        String field = aggregateFunction.getField();
+        String newEtagKeyPostfix = "_" + field + "_" + aggregateFunction.getFunction().name() +
+                (aggregateFunction.isApproxPercentile() ? "_" + aggregateFunction.getPercentile() : "");
+        String etagKey = queryPack.getBaseEtagKey() + newEtagKeyPostfix + aggregateFunction.getGroupBy().hashCode();
+        String cacheKey = queryPack.getBaseEtagKey() + newEtagKeyPostfix + aggregateFunction.getGroupBy().hashCode();
+        final List<GroupingConfiguration> groupingParam = aggregateFunction.getGroupBy();
 
-            if (levelOne != null && levelTwo == null) {
-                return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                summingDouble(item -> db.extractValueAsDouble(db.checkAndGetField(field), item))));
-            } else if (levelOne != null && levelThree == null) {
-                return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
-                                        summingDouble(item -> db.extractValueAsDouble(db.checkAndGetField(field), item)))));
-            } else if (levelThree != null) {
-                //noinspection ConstantConditions
-                return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
-                                        groupingBy(item -> calculateGroupingKey(item, levelThree),
-                                                summingDouble(item -> db.extractValueAsDouble(db.checkAndGetField(field), item))))));
-            }
+        cacheManager.checkAggregationCache(cacheKey, cacheRes -> {
+            if (cacheRes.failed()) {
+                final Handler<AsyncResult<DynamoDBAggregateAccumulator<E>>> res = allResult -> {
+                    if (allResult.failed()) {
+                        logger.error("Read all failed!", allResult.cause());
 
-            throw new IllegalArgumentException();
+                        resultHandler.handle(Future.failedFuture("Could not remoteRead all records..."));
+                    } else {
+                        DynamoDBAggregateAccumulator<E> accumulator = allResult.result();
+                        String funcName = aggregateFunction.getFunction().name().toLowerCase();
+
+                        if (accumulator.getItemCount() == 0) {
+                            setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey,
+                                    new JsonObject().put("error", "Empty table!").encode(), resultHandler);
+                        } else {
+                            JsonObject approximation = aggregateFunction.hasGrouping() ?
+                                    groupedValues(accumulator, aggregateFunction) :
+                                    new JsonObject().put(funcName, aggregateFunction.isApproxDistinct() ?
+                                            (Object) accumulator.getDistinct() : accumulator.getPercentile());
+
+                            setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey,
+                                    approximation.encode(), resultHandler);
+                        }
+                    }
+                };
+
+                final String[][] projections = {new String[]{field}};
+                String[] finalProjections = projections[0];
+
+                calculateGroupingPageToken(groupingParam, projections, finalProjections);
+
+                streamAggregation(identifiers, queryPack, GSI, projections[0], true, res);
+            } else {
+                resultHandler.handle(Future.succeededFuture(cacheRes.result()));
+            }
         });
     }
 
@@ -515,20 +589,35 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
             if (cacheRes.failed()) {
                 final AggregateFunction aggregateFunction = queryPack.getAggregateFunction();
 
+                if (!aggregateFunction.hasGrouping()) {
+                    final Handler<AsyncResult<Long>> countHandler = countResult -> {
+                        if (countResult.failed()) {
+                            resultHandler.handle(Future.failedFuture("Could not count records..."));
+                        } else {
+                            JsonObject count = new JsonObject().put("count", countResult.result());
+
+                            setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey,
+                                    count.encode(), resultHandler);
+                        }
+                    };
+
+                    db.count(identifiers.isEmpty() ? null : identifiers.getString("hash"), queryPack, GSI,
+                            countHandler);
+
+                    return;
+                }
+
                 final Handler<AsyncResult<List<E>>> res = allResult -> {
                     if (allResult.failed()) {
                         resultHandler.handle(Future.failedFuture("Could not remoteRead all records..."));
                     } else {
-                        JsonObject count = aggregateFunction.hasGrouping() ?
-                                countGrouping(allResult.result(), aggregateFunction) :
-                                new JsonObject().put("count", allResult.result().size());
+                        JsonObject count = countGrouping(allResult.result(), aggregateFunction);
 
                         setEtagAndCacheAndReturnContent(etagKey, identifiers.encode().hashCode(), cacheKey, count.encode(), resultHandler);
                     }
                 };
 
-                String[] projections = !aggregateFunction.hasGrouping() ?
-                        new String[]{"etag"} : aggregateFunction.getGroupBy().stream()
+                String[] projections = aggregateFunction.getGroupBy().stream()
                         .map(GroupingConfiguration::getGroupBy)
                         .distinct()
                         .toArray(String[]::new);
@@ -546,22 +635,25 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
             GroupingConfiguration levelOne = groupingConfigurations.get(0);
             GroupingConfiguration levelTwo = groupingConfigurations.size() > 1 ? groupingConfigurations.get(1) : null;
             GroupingConfiguration levelThree = groupingConfigurations.size() > 2 ? groupingConfigurations.get(2) : null;
+            Function<E, String> keyOne = groupingKeys.extractor(levelOne);
+            Function<E, String> keyTwo = levelTwo == null ? null : groupingKeys.extractor(levelTwo);
+            Function<E, String> keyThree = levelThree == null ? null : groupingKeys.extractor(levelThree);
 
             if (levelOne != null && levelTwo == null) {
                 return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
+                        .collect(groupingBy(keyOne,
                                 counting()));
             } else if (levelOne != null && levelThree == null) {
                 return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
+                        .collect(groupingBy(keyOne,
+                                groupingBy(keyTwo,
                                         counting())));
             } else if (levelThree != null) {
                 //noinspection ConstantConditions
                 return items.parallelStream()
-                        .collect(groupingBy(item -> calculateGroupingKey(item, levelOne),
-                                groupingBy(item -> calculateGroupingKey(item, levelTwo),
-                                        groupingBy(item -> calculateGroupingKey(item, levelThree),
+                        .collect(groupingBy(keyOne,
+                                groupingBy(keyTwo,
+                                        groupingBy(keyThree,
                                                 counting()))));
             }
 
@@ -569,15 +661,28 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
         });
     }
 
-    @SuppressWarnings("unchecked")
     private JsonObject performGroupingAndSorting(List<E> items, AggregateFunction aggregateFunction,
                                                  BiFunction<List<E>, List<GroupingConfiguration>, Map> mappingFunction) {
         List<GroupingConfiguration> groupingConfigurations = aggregateFunction.getGroupBy();
         if (groupingConfigurations.size() > 3) throw new IllegalArgumentException("GroupBy size of three is max!");
+
+        return sortAndFormatGroups(mappingFunction.apply(items, groupingConfigurations), aggregateFunction);
+    }
+
+    /**
+     * Sorts, limits and formats the values of an aggregation that are already grouped by every level of the group by.
+     *
+     * @param collect the values by group key, nested per grouping level
+     * @param aggregateFunction the aggregation
+     * @return the formatted groups
+     */
+    @SuppressWarnings("unchecked")
+    private JsonObject sortAndFormatGroups(Map collect, AggregateFunction aggregateFunction) {
+        List<GroupingConfiguration> groupingConfigurations = aggregateFunction.getGroupBy();
+        if (groupingConfigurations.size() > 3) throw new IllegalArgumentException("GroupBy size of three is max!");
         GroupingConfiguration levelOne = groupingConfigurations.get(0);
         GroupingConfiguration levelTwo = groupingConfigurations.size() > 1 ? groupingConfigurations.get(1) : null;
         GroupingConfiguration levelThree = groupingConfigurations.size() > 2 ? groupingConfigurations.get(2) : null;
-        Map collect = mappingFunction.apply(items, groupingConfigurations);
 
         String funcName = aggregateFunction.getFunction().name().toLowerCase();
 
@@ -766,95 +871,32 @@ public class DynamoDBAggregates<E extends DynamoDBModel & Model & ETagable & Cac
         }
     }
 
-    private <T> String calculateGroupingKey(T item, GroupingConfiguration groupingConfiguration) {
-        String groupingKey;
-
-        try {
-            groupingKey = db.getFieldAsString(groupingConfiguration.getGroupBy(), item);
-            if (groupingKey == null) throw new UnknownError("Cannot find field!");
-        } catch (NullPointerException e) {
-            throw new UnknownError("Field is null!");
-        }
-
-        if (groupingConfiguration.hasGroupRanging()) {
-            String groupByRangeUnit = groupingConfiguration.getGroupByUnit();
-            Object groupByRangeRange = groupingConfiguration.getGroupByRange();
-            Long groupingValue = null;
-            Double rangingValue = null;
-
-            if (groupByRangeUnit.equalsIgnoreCase("INTEGER")) {
-                groupingValue = Long.parseLong(groupByRangeRange.toString());
-                long value;
-
-                try {
-                    value = Long.parseLong(groupingKey);
-                } catch (NumberFormatException nfe) {
-                    value = (long) Double.parseDouble(groupingKey);
-                }
-
-                rangingValue = Math.ceil(value / groupingValue);
-            } else if (groupByRangeUnit.equalsIgnoreCase("DATE")) {
-                Date date = db.getFieldAsObject(groupingConfiguration.getGroupBy(), item);
-                groupingValue = getTimeRangeFromDateUnit(groupByRangeRange.toString());
-
-                rangingValue = Math.ceil(date.getTime() / groupingValue);
-            }
-
-            if (rangingValue != null) {
-                return new JsonObject()
-                        .put("floor", ((long) Math.floor(rangingValue)) * groupingValue)
-                        .put("base", groupingValue)
-                        .put("ratio", rangingValue)
-                        .put("ceil", (((long) Math.ceil(rangingValue)) + 1L) * groupingValue)
-                        .encode();
-            } else {
-                throw new UnknownError("Cannot find field!");
-            }
-        } else {
-            return groupingKey;
-        }
-    }
-
-    private long getTimeRangeFromDateUnit(String groupByRangeRange) {
-        switch (AggregateFunction.TIMEUNIT_DATE.valueOf(groupByRangeRange.toUpperCase())) {
-            case HOUR:
-                return Duration.ofHours(1).toMillis();
-            case TWELVE_HOUR:
-                return Duration.ofHours(12).toMillis();
-            case DAY:
-                return Duration.ofDays(1).toMillis();
-            case WEEK:
-                return Duration.ofDays(7).toMillis();
-            case MONTH:
-                return Duration.ofDays(30).toMillis();
-            case YEAR:
-                return Duration.ofDays(365).toMillis();
-            default:
-                throw new Error("Invalid TIME UNIT for Date!");
-        }
-    }
-
     private void setEtagAndCacheAndReturnContent(String etagKey, int hash, String cacheKey, String content,
                                                  Handler<AsyncResult<String>> resultHandler) {
-        String etagItemListHashKey = TYPE.getSimpleName() + "_" + hash + "_" + "itemListEtags";
-        String newEtag = ModelUtils.returnNewEtag(content.hashCode());
-
         cacheManager.replaceAggregationCache(content, () -> cacheKey, cacheRes -> {
             if (cacheRes.failed()) {
                 logger.error("Cache failed on agg!");
             }
 
-            if (eTagManager != null) {
-                eTagManager.replaceAggregationEtag(etagItemListHashKey, etagKey, newEtag, etagRes -> {
-                    if (etagRes.failed()) {
-                        resultHandler.handle(Future.failedFuture(etagRes.cause()));
-                    } else {
-                        resultHandler.handle(Future.succeededFuture(content));
-                    }
-                });
-            } else {
-                resultHandler.handle(Future.succeededFuture(content));
-            }
+            setEtagAndReturnContent(etagKey, hash, content, resultHandler);
         });
     }
+
+    private void setEtagAndReturnContent(String etagKey, int hash, String content,
+                                         Handler<AsyncResult<String>> resultHandler) {
+        String etagItemListHashKey = TYPE.getSimpleName() + "_" + hash + "_" + "itemListEtags";
+        String newEtag = ModelUtils.returnNewEtag(content.hashCode());
+
+        if (eTagManager != null) {
+            eTagManager.replaceAggregationEtag(etagItemListHashKey, etagKey, newEtag, etagRes -> {
+                if (etagRes.failed()) {
+                    resultHandler.handle(Future.failedFuture(etagRes.cause()));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(content));
+                }
+            });
+        } else {
+            resultHandler.handle(Future.succeededFuture(content));
+        }
+    }
 }
@@ -0,0 +1,367 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.*;
+import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import io.vertx.core.*;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class defines the non-blocking execution engine for the DynamoDBRepository. Requests are sent through the *Async
+ * methods of the AmazonDynamoDBAsync client, and results are completed on the Vert.x context of the caller, so no
+ * worker thread is held for the duration of a request.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBAsyncExecutor<E extends DynamoDBModel & Model & ETagable & Cacheable> {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBAsyncExecutor.class.getSimpleName());
+
+    private final Class<E> TYPE;
+    private final Vertx vertx;
+    private final DynamoDBRepository<E> db;
+
+    private final String HASH_IDENTIFIER;
+    private final String IDENTIFIER;
+
+    public DynamoDBAsyncExecutor(Class<E> type, Vertx vertx, DynamoDBRepository<E> db,
+                                 String HASH_IDENTIFIER, String IDENTIFIER) {
+        TYPE = type;
+        this.vertx = vertx;
+        this.db = db;
+        this.HASH_IDENTIFIER = HASH_IDENTIFIER;
+        this.IDENTIFIER = IDENTIFIER;
+    }
+
+    public void getItem(GetItemRequest request, Handler<AsyncResult<GetItemResult>> resultHandler) {
+        send(null, request, client()::getItemAsync, resultHandler);
+    }
+
+    public void query(QueryRequest request, Handler<AsyncResult<QueryResult>> resultHandler) {
+        send(request.getIndexName(), request, client()::queryAsync, resultHandler);
+    }
+
+    public void scan(ScanRequest request, Handler<AsyncResult<ScanResult>> resultHandler) {
+        send(request.getIndexName(), request, client()::scanAsync, resultHandler);
+    }
+
+    public void putItem(PutItemRequest request, Handler<AsyncResult<PutItemResult>> resultHandler) {
+        send(null, request, client()::putItemAsync, resultHandler);
+    }
+
+    public void updateItem(UpdateItemRequest request, Handler<AsyncResult<UpdateItemResult>> resultHandler) {
+        send(null, request, client()::updateItemAsync, resultHandler);
+    }
+
+    public void deleteItem(DeleteItemRequest request, Handler<AsyncResult<DeleteItemResult>> resultHandler) {
+        send(null, request, client()::deleteItemAsync, resultHandler);
+    }
+
+    public void batchWriteItem(BatchWriteItemRequest request,
+                               Handler<AsyncResult<BatchWriteItemResult>> resultHandler) {
+        send(null, request, client()::batchWriteItemAsync, resultHandler);
+    }
+
+    public void batchGetItem(BatchGetItemRequest request, Handler<AsyncResult<BatchGetItemResult>> resultHandler) {
+        send(null, request, client()::batchGetItemAsync, resultHandler);
+    }
+
+    /**
+     * Loads a single item, by GetItem when the full key is known, or by a single item query on the hash otherwise.
+     *
+     * @param hash the hash key
+     * @param range the range key, can be null
+     * @param consistent whether to use a strongly consistent read
+     * @param resultHandler the handler for the item, or null if it does not exist
+     */
+    public void load(String hash, String range, boolean consistent, Handler<AsyncResult<E>> resultHandler) {
+        load(hash, range, consistent, null, resultHandler);
+    }
+
+    /**
+     * Loads a single item with only the projected attributes, and the key attributes, read from DynamoDB. The
+     * returned item is partially populated.
+     *
+     * @param hash the hash key
+     * @param range the range key, can be null
+     * @param consistent whether to use a strongly consistent read
+     * @param projections the attributes to read, all attributes are read if null or empty
+     * @param resultHandler the handler for the item, or null if it does not exist
+     */
+    public void load(String hash, String range, boolean consistent, String[] projections,
+                     Handler<AsyncResult<E>> resultHandler) {
+        if (!db.hasRangeKey() || range != null) {
+            getItem(getItemRequest(hash, range, consistent, projections), res -> {
+                if (res.failed()) {
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else {
+                    Map<String, AttributeValue> item = res.result().getItem();
+
+                    resultHandler.handle(Future.succeededFuture(item == null ? null : unconvert(item)));
+                }
+            });
+        } else {
+            query(hashQueryRequest(hash, consistent, projections).withLimit(1), res -> {
+                if (res.failed()) {
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else {
+                    List<Map<String, AttributeValue>> items = res.result().getItems();
+
+                    resultHandler.handle(Future.succeededFuture(items == null || items.isEmpty() ?
+                            null : unconvert(items.get(0))));
+                }
+            });
+        }
+    }
+
+    public GetItemRequest getItemRequest(String hash, String range, boolean consistent, String[] projections) {
+        GetItemRequest request = new GetItemRequest()
+                .withTableName(db.getCollection())
+                .withKey(key(hash, range))
+                .withConsistentRead(consistent);
+
+        if (projections != null && projections.length > 0) {
+            Map<String, String> names = new HashMap<>();
+
+            request.withProjectionExpression(projectionExpression(projections, names))
+                    .withExpressionAttributeNames(names);
+        }
+
+        return request;
+    }
+
+    public QueryRequest hashQueryRequest(String hash, boolean consistent, String[] projections) {
+        QueryRequest request = hashQuery(hash, consistent);
+
+        if (projections != null && projections.length > 0) {
+            Map<String, String> names = new HashMap<>(request.getExpressionAttributeNames());
+
+            request.withProjectionExpression(projectionExpression(projections, names))
+                    .withExpressionAttributeNames(names);
+        }
+
+        return request;
+    }
+
+    /**
+     * Builds a projection expression with every path element aliased, so reserved words can be projected. The key
+     * attributes are always included so the partially populated item can be identified.
+     */
+    public String projectionExpression(String[] projections, Map<String, String> names) {
+        Set<String> paths = new LinkedHashSet<>(Arrays.asList(projections));
+        paths.add(HASH_IDENTIFIER);
+        if (db.hasRangeKey()) paths.add(IDENTIFIER);
+
+        StringJoiner expression = new StringJoiner(", ");
+
+        paths.forEach(path -> {
+            StringJoiner aliasedPath = new StringJoiner(".");
+
+            for (String element : path.split("\\.")) {
+                int index = element.indexOf('[');
+                String name = index < 0 ? element : element.substring(0, index);
+                String alias = "#p" + names.size();
+
+                names.put(alias, name);
+                aliasedPath.add(index < 0 ? alias : alias + element.substring(index));
+            }
+
+            expression.add(aliasedPath.toString());
+        });
+
+        return expression.toString();
+    }
+
+    /**
+     * Queries all items on a hash key, following LastEvaluatedKey until the result set is exhausted.
+     *
+     * @param hash the hash key
+     * @param consistent whether to use strongly consistent reads
+     * @param resultHandler the handler for the items
+     */
+    public void queryAll(String hash, boolean consistent, Handler<AsyncResult<List<E>>> resultHandler) {
+        queryPages(hashQuery(hash, consistent), new ArrayList<>(), resultHandler);
+    }
+
+    private void queryPages(QueryRequest request, List<E> items, Handler<AsyncResult<List<E>>> resultHandler) {
+        query(request, res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                res.result().getItems().forEach(item -> items.add(unconvert(item)));
+                Map<String, AttributeValue> lastKey = res.result().getLastEvaluatedKey();
+
+                if (lastKey == null || lastKey.isEmpty()) {
+                    resultHandler.handle(Future.succeededFuture(items));
+                } else {
+                    queryPages(request.withExclusiveStartKey(lastKey), items, resultHandler);
+                }
+            }
+        });
+    }
+
+    /**
+     * Scans the full table as a parallel scan with the given number of segments.
+     *
+     * @param segments the number of segments to scan concurrently
+     * @param resultHandler the handler for the items
+     */
+    public void scanAll(int segments, Handler<AsyncResult<List<E>>> resultHandler) {
+        List<Future> segmentFutures = new ArrayList<>();
+
+        IntStream.range(0, segments).forEach(segment -> {
+            Future<List<E>> segmentFuture = Future.future();
+            scanPages(new ScanRequest()
+                    .withTableName(db.getCollection())
+                    .withSegment(segment)
+                    .withTotalSegments(segments)
+                    .withLimit(db.getScanPageSize() > 0 ? db.getScanPageSize() : null),
+                    new ArrayList<>(), segmentFuture.completer());
+            segmentFutures.add(segmentFuture);
+        });
+
+        CompositeFuture.all(segmentFutures).setHandler(res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                List<E> items = new ArrayList<>();
+                //noinspection unchecked
+                segmentFutures.forEach(segmentFuture -> items.addAll((List<E>) segmentFuture.result()));
+
+                resultHandler.handle(Future.succeededFuture(items));
+            }
+        });
+    }
+
+    private void scanPages(ScanRequest request, List<E> items, Handler<AsyncResult<List<E>>> resultHandler) {
+        scan(request, res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                res.result().getItems().forEach(item -> items.add(unconvert(item)));
+                Map<String, AttributeValue> lastKey = res.result().getLastEvaluatedKey();
+
+                if (lastKey == null || lastKey.isEmpty()) {
+                    resultHandler.handle(Future.succeededFuture(items));
+                } else {
+                    scanPages(request.withExclusiveStartKey(lastKey), items, resultHandler);
+                }
+            }
+        });
+    }
+
+    public Map<String, AttributeValue> key(String hash, String range) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(HASH_IDENTIFIER, new AttributeValue().withS(hash));
+        if (db.hasRangeKey() && range != null) key.put(IDENTIFIER, new AttributeValue().withS(range));
+
+        return key;
+    }
+
+    public Map<String, AttributeValue> convert(E record) {
+        return tableModel().convert(record);
+    }
+
+    public E unconvert(Map<String, AttributeValue> item) {
+        return tableModel().unconvert(item);
+    }
+
+    private QueryRequest hashQuery(String hash, boolean consistent) {
+        return new QueryRequest()
+                .withTableName(db.getCollection())
+                .withKeyConditionExpression("#hash = :hash")
+                .withExpressionAttributeNames(Collections.singletonMap("#hash", HASH_IDENTIFIER))
+                .withExpressionAttributeValues(Collections.singletonMap(":hash", new AttributeValue().withS(hash)))
+                .withConsistentRead(consistent);
+    }
+
+    private DynamoDBMapperTableModel<E> tableModel() {
+        return db.getDynamoDbMapper().getTableModel(TYPE);
+    }
+
+    private AmazonDynamoDBAsync client() {
+        return db.getDynamoDbClient();
+    }
+
+    /**
+     * Sends a request through the rate limiter of the repository, if enabled, completing on the context of the caller.
+     */
+    private <Q extends AmazonWebServiceRequest, R> void send(String index, Q request,
+                                                             BiConsumer<Q, AsyncHandler<Q, R>> call,
+                                                             Handler<AsyncResult<R>> resultHandler) {
+        Context context = vertx.getOrCreateContext();
+        DynamoDBWorkerExecutor executor = db.getWorkerExecutor();
+        DynamoDBRateLimiter rateLimiter = executor.getRateLimiter();
+
+        if (rateLimiter == null) {
+            dispatch(context, request, call, resultHandler);
+        } else {
+            rateLimiter.<R>execute(executor.rateLimitKey(index), operation ->
+                    dispatch(context, request, call, operation.completer()), resultHandler);
+        }
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> void dispatch(Context context, Q request,
+                                                                 BiConsumer<Q, AsyncHandler<Q, R>> call,
+                                                                 Handler<AsyncResult<R>> resultHandler) {
+        try {
+            call.accept(request, onContext(context, resultHandler));
+        } catch (Exception e) {
+            resultHandler.handle(Future.failedFuture(e));
+        }
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> AsyncHandler<Q, R> onContext(Context context,
+                                                                               Handler<AsyncResult<R>> resultHandler) {
+        return new AsyncHandler<Q, R>() {
+            @Override
+            public void onError(Exception exception) {
+                if (logger.isDebugEnabled()) { logger.debug("Async DynamoDB request failed: " + exception); }
+
+                context.runOnContext(v -> resultHandler.handle(Future.failedFuture(exception)));
+            }
+
+            @Override
+            public void onSuccess(Q request, R result) {
+                context.runOnContext(v -> resultHandler.handle(Future.succeededFuture(result)));
+            }
+        };
+    }
+}
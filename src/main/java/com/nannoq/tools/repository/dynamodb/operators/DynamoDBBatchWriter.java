@@ -0,0 +1,256 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import io.vertx.core.*;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class defines the BatchWriteItem pipeline for the DynamoDBRepository. Write requests are split into chunks of
+ * 25, the chunks are run concurrently, and unprocessed items are retried with jittered exponential backoff. A failed
+ * chunk does not stop the others, every chunk is attempted before the outcome is reported.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBBatchWriter {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBBatchWriter.class.getSimpleName());
+
+    public static final int MAX_BATCH_SIZE = 25;
+
+    private static final int MAX_RETRIES = 10;
+    private static final long BASE_BACKOFF = 50L;
+    private static final long MAX_BACKOFF = 5000L;
+
+    private final Vertx vertx;
+    private final DynamoDBWorkerExecutor executor;
+    private final AmazonDynamoDB DYNAMO_DB_CLIENT;
+    private final String COLLECTION;
+    private final DynamoDBAsyncExecutor<?> asyncExecutor;
+
+    public DynamoDBBatchWriter(Vertx vertx, DynamoDBWorkerExecutor executor, AmazonDynamoDB client,
+                               String COLLECTION) {
+        this(vertx, executor, client, COLLECTION, null);
+    }
+
+    public DynamoDBBatchWriter(Vertx vertx, DynamoDBWorkerExecutor executor, AmazonDynamoDB client,
+                               String COLLECTION, DynamoDBAsyncExecutor<?> asyncExecutor) {
+        this.vertx = vertx;
+        this.executor = executor;
+        this.DYNAMO_DB_CLIENT = client;
+        this.COLLECTION = COLLECTION;
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Writes the requests, failing if any chunk failed once every chunk has been attempted.
+     *
+     * @param writeRequests the write requests
+     * @param parallelism the number of chunks to run at once
+     * @param resultHandler the handler for the write
+     */
+    public void write(List<WriteRequest> writeRequests, int parallelism, Handler<AsyncResult<Void>> resultHandler) {
+        writeEach(writeRequests, parallelism, res -> {
+            Throwable cause = res.result().stream()
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(null);
+
+            resultHandler.handle(cause == null ? Future.succeededFuture() : Future.failedFuture(cause));
+        });
+    }
+
+    /**
+     * Writes the requests, carrying on past failed chunks, and reports the outcome of every request once every chunk
+     * has been attempted. A chunk that still has unprocessed items after the retries is reported as failed as a whole,
+     * although some of its items may have been written.
+     *
+     * @param writeRequests the write requests
+     * @param parallelism the number of chunks to run at once
+     * @param resultHandler the handler for the outcome of every request in order, null if it was written, or else the
+     *                      cause of the failure of its chunk
+     */
+    public void writeEach(List<WriteRequest> writeRequests, int parallelism,
+                          Handler<AsyncResult<List<Throwable>>> resultHandler) {
+        final Throwable[] causes = new Throwable[writeRequests.size()];
+
+        if (writeRequests.isEmpty()) {
+            resultHandler.handle(Future.succeededFuture(Collections.emptyList()));
+
+            return;
+        }
+
+        List<List<WriteRequest>> chunks = new ArrayList<>();
+
+        for (int i = 0; i < writeRequests.size(); i += MAX_BATCH_SIZE) {
+            chunks.add(new ArrayList<>(writeRequests.subList(i, Math.min(i + MAX_BATCH_SIZE, writeRequests.size()))));
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Writing " + writeRequests.size() + " items in " + chunks.size() + " chunks to " + COLLECTION);
+        }
+
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<Future> lanes = new ArrayList<>();
+
+        IntStream.range(0, Math.max(1, Math.min(parallelism, chunks.size()))).forEach(i -> {
+            Future<Void> laneFuture = Future.future();
+            runLane(chunks, nextChunk, causes, laneFuture);
+            lanes.add(laneFuture);
+        });
+
+        CompositeFuture.join(lanes).setHandler(res -> {
+            synchronized (causes) {
+                resultHandler.handle(Future.succeededFuture(Arrays.asList(causes)));
+            }
+        });
+    }
+
+    private void runLane(List<List<WriteRequest>> chunks, AtomicInteger nextChunk, Throwable[] causes,
+                         Future<Void> laneFuture) {
+        int index = nextChunk.getAndIncrement();
+
+        if (index >= chunks.size()) {
+            laneFuture.complete();
+
+            return;
+        }
+
+        Future<Void> chunkFuture = Future.future();
+        chunkFuture.setHandler(res -> {
+            if (res.failed()) {
+                logger.error("Chunk " + index + " of " + COLLECTION + " failed!", res.cause());
+
+                synchronized (causes) {
+                    int from = index * MAX_BATCH_SIZE;
+
+                    Arrays.fill(causes, from, Math.min(from + MAX_BATCH_SIZE, causes.length), res.cause());
+                }
+            }
+
+            runLane(chunks, nextChunk, causes, laneFuture);
+        });
+
+        writeChunk(Collections.singletonMap(COLLECTION, chunks.get(index)), 0, chunkFuture);
+    }
+
+    private void writeChunk(Map<String, List<WriteRequest>> requestItems, int attempt, Future<Void> chunkFuture) {
+        Handler<AsyncResult<Map<String, List<WriteRequest>>>> unprocessedHandler = res -> {
+            if (res.failed()) {
+                chunkFuture.fail(res.cause());
+            } else {
+                Map<String, List<WriteRequest>> unprocessed = res.result();
+
+                if (unprocessed != null && !unprocessed.isEmpty() && executor.getRateLimiter() != null) {
+                    executor.getRateLimiter().onThrottle(executor.rateLimitKey(null));
+                }
+
+                if (unprocessed == null || unprocessed.isEmpty()) {
+                    chunkFuture.complete();
+                } else if (attempt >= MAX_RETRIES) {
+                    int count = unprocessed.values().stream().mapToInt(List::size).sum();
+
+                    chunkFuture.fail(new IllegalStateException(count + " items in " + COLLECTION +
+                            " were still unprocessed after " + MAX_RETRIES + " retries!"));
+                } else {
+                    long delay = backoff(attempt);
+
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Retrying unprocessed items for " + COLLECTION + " in " + delay + " ms");
+                    }
+
+                    vertx.setTimer(delay, timer -> writeChunk(unprocessed, attempt + 1, chunkFuture));
+                }
+            }
+        };
+
+        if (asyncExecutor != null) {
+            asyncExecutor.batchWriteItem(new BatchWriteItemRequest().withRequestItems(requestItems), res -> {
+                if (res.failed() && res.cause() instanceof ProvisionedThroughputExceededException) {
+                    logger.warn("Throughput exceeded for " + COLLECTION + " on attempt " + attempt + ", backing off...");
+
+                    unprocessedHandler.handle(Future.succeededFuture(requestItems));
+                } else if (res.failed()) {
+                    unprocessedHandler.handle(Future.failedFuture(res.cause()));
+                } else {
+                    unprocessedHandler.handle(Future.succeededFuture(res.result().getUnprocessedItems()));
+                }
+            });
+
+            return;
+        }
+
+        executor.<Map<String, List<WriteRequest>>>executeBlocking(future -> {
+            try {
+                BatchWriteItemResult result = DYNAMO_DB_CLIENT.batchWriteItem(new BatchWriteItemRequest()
+                        .withRequestItems(requestItems));
+
+                future.complete(result.getUnprocessedItems());
+            } catch (ProvisionedThroughputExceededException ptee) {
+                logger.warn("Throughput exceeded for " + COLLECTION + " on attempt " + attempt + ", backing off...");
+
+                future.complete(requestItems);
+            } catch (AmazonServiceException ase) {
+                logger.error("Could not complete DynamoDB Operation, " +
+                        "Error Message:  " + ase.getMessage() + ", " +
+                        "HTTP Status:    " + ase.getStatusCode() + ", " +
+                        "AWS Error Code: " + ase.getErrorCode() + ", " +
+                        "Error Type:     " + ase.getErrorType() + ", " +
+                        "Request ID:     " + ase.getRequestId());
+
+                future.fail(ase);
+            } catch (AmazonClientException ace) {
+                logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                future.fail(ace);
+            }
+        }, false, unprocessedHandler);
+    }
+
+    static long backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF, BASE_BACKOFF * (1L << Math.min(attempt, 16)));
+
+        return 1L + ThreadLocalRandom.current().nextLong(ceiling);
+    }
+}
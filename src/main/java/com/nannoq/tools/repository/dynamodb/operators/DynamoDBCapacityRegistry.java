@@ -0,0 +1,323 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.*;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class defines the consumed capacity registry for the DynamoDBRepository. A request handler on the client asks
+ * DynamoDB to return the consumed capacity of every request, and records it per operation, table, index and query
+ * shape. The shape is carried by the request itself, as a custom request header set through
+ * {@link #withShape(AmazonWebServiceRequest, String)}, so it is kept on whichever thread the request is sent from. The
+ * mapper has no way to set headers on the requests it sends, so mapper calls use {@link #shapeConfig(String)}, a config
+ * with a metric collector recording the capacity of those requests itself. The registry can be queried at any time,
+ * and keeps a bounded history of periodic snapshots.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBCapacityRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBCapacityRegistry.class.getSimpleName());
+
+    private static final String NO_SHAPE = "none";
+    private static final String SHAPE_HEADER = "x-nannoq-query-shape";
+
+    private final Vertx vertx;
+    private final long snapshotTimer;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Deque<JsonObject> snapshots = new ConcurrentLinkedDeque<>();
+    private final int maxSnapshots;
+    private final RequestHandler2 requestHandler = new CapacityRequestHandler();
+
+    /**
+     * @param vertx the vertx instance
+     * @param snapshotInterval the time in milliseconds between snapshots, 0 or less to disable snapshots
+     * @param maxSnapshots the number of snapshots to keep
+     */
+    public DynamoDBCapacityRegistry(Vertx vertx, long snapshotInterval, int maxSnapshots) {
+        this.vertx = vertx;
+        this.maxSnapshots = maxSnapshots;
+        this.snapshotTimer = snapshotInterval > 0 ? vertx.setPeriodic(snapshotInterval, id -> takeSnapshot()) : -1L;
+    }
+
+    /**
+     * Tags a request with the shape its consumed capacity is recorded with.
+     *
+     * @param request the request to send
+     * @param shape the shape of the query, null if the request is not a query
+     * @return the request
+     */
+    public static <X extends AmazonWebServiceRequest> X withShape(X request, String shape) {
+        if (shape != null) request.putCustomRequestHeader(SHAPE_HEADER, shape);
+
+        return request;
+    }
+
+    /**
+     * @param shape the shape of the query, null if the requests are not a query
+     * @return a mapper config recording the consumed capacity of every request sent with it under the shape
+     */
+    public DynamoDBMapperConfig shapeConfig(String shape) {
+        return DynamoDBMapperConfig.builder()
+                .withRequestMetricCollector(new ShapeMetricCollector(shape))
+                .build();
+    }
+
+    /**
+     * Cancels the periodic snapshots.
+     */
+    public void close() {
+        if (snapshotTimer >= 0) vertx.cancelTimer(snapshotTimer);
+    }
+
+    public RequestHandler2 getRequestHandler() {
+        return requestHandler;
+    }
+
+    public void record(String operation, String table, String index, String shape, double capacityUnits) {
+        String finalShape = shape == null ? NO_SHAPE : shape;
+        String key = operation + "|" + table + "|" + (index == null ? "" : index) + "|" + finalShape;
+
+        entries.computeIfAbsent(key, k -> new Entry(operation, table, index, finalShape)).add(capacityUnits);
+    }
+
+    /**
+     * @return all entries, with the most expensive first
+     */
+    public JsonArray getEntries() {
+        return query(null, null, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param operation the operation to match, e.g. Query, null for all
+     * @param table the table to match, null for all
+     * @param index the index to match, null for all
+     * @param limit the max number of entries to return
+     * @return the matching entries, with the most expensive first
+     */
+    public JsonArray query(String operation, String table, String index, int limit) {
+        return new JsonArray(entries.values().stream()
+                .filter(entry -> operation == null || operation.equals(entry.operation))
+                .filter(entry -> table == null || table.equals(entry.table))
+                .filter(entry -> index == null || index.equals(entry.index))
+                .sorted(Comparator.comparingDouble((Entry entry) -> entry.capacityUnits.sum()).reversed())
+                .limit(limit)
+                .map(Entry::toJson)
+                .collect(toList()));
+    }
+
+    public JsonObject getSnapshot() {
+        return new JsonObject()
+                .put("timestamp", System.currentTimeMillis())
+                .put("entries", getEntries());
+    }
+
+    /**
+     * @return the periodic snapshots, with the newest first
+     */
+    public JsonArray getSnapshots() {
+        return new JsonArray(new ArrayList<>(snapshots));
+    }
+
+    public void reset() {
+        entries.clear();
+        snapshots.clear();
+    }
+
+    /**
+     * Asks DynamoDB to return the total consumed capacity of the request, unless the caller has set it already.
+     *
+     * @param request the request to send
+     */
+    static void returnConsumedCapacity(AmazonWebServiceRequest request) {
+        if (request instanceof GetItemRequest && ((GetItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((GetItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof QueryRequest && ((QueryRequest) request).getReturnConsumedCapacity() == null) {
+            ((QueryRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof ScanRequest && ((ScanRequest) request).getReturnConsumedCapacity() == null) {
+            ((ScanRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof PutItemRequest && ((PutItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((PutItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof UpdateItemRequest &&
+                ((UpdateItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((UpdateItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof DeleteItemRequest &&
+                ((DeleteItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((DeleteItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof BatchGetItemRequest &&
+                ((BatchGetItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((BatchGetItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof BatchWriteItemRequest &&
+                ((BatchWriteItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((BatchWriteItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        }
+    }
+
+    private void takeSnapshot() {
+        JsonObject snapshot = getSnapshot();
+        snapshots.addFirst(snapshot);
+
+        while (snapshots.size() > maxSnapshots) snapshots.pollLast();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Capacity snapshot: " + snapshot.encodePrettily());
+        }
+    }
+
+    private class CapacityRequestHandler extends RequestHandler2 {
+        @Override
+        public AmazonWebServiceRequest beforeMarshalling(AmazonWebServiceRequest request) {
+            returnConsumedCapacity(request);
+
+            return request;
+        }
+
+        @Override
+        public void afterResponse(Request<?> request, Response<?> response) {
+            try {
+                AmazonWebServiceRequest original = request.getOriginalRequest();
+
+                if (original.getRequestMetricCollector() instanceof ShapeMetricCollector) return;
+
+                Map<String, String> headers = original.getCustomRequestHeaders();
+
+                recordResponse(original, response == null ? null : response.getAwsResponse(),
+                        headers == null ? null : headers.get(SHAPE_HEADER));
+            } catch (Exception e) {
+                logger.error("Unable to record consumed capacity!", e);
+            }
+        }
+    }
+
+    private void recordResponse(Object original, Object result, String shape) {
+        if (result instanceof GetItemResult) {
+            record("GetItem", ((GetItemResult) result).getConsumedCapacity(), null, shape);
+        } else if (result instanceof QueryResult) {
+            record("Query", ((QueryResult) result).getConsumedCapacity(),
+                    ((QueryRequest) original).getIndexName(), shape);
+        } else if (result instanceof ScanResult) {
+            record("Scan", ((ScanResult) result).getConsumedCapacity(),
+                    ((ScanRequest) original).getIndexName(), shape);
+        } else if (result instanceof PutItemResult) {
+            record("PutItem", ((PutItemResult) result).getConsumedCapacity(), null, shape);
+        } else if (result instanceof UpdateItemResult) {
+            record("UpdateItem", ((UpdateItemResult) result).getConsumedCapacity(), null, shape);
+        } else if (result instanceof DeleteItemResult) {
+            record("DeleteItem", ((DeleteItemResult) result).getConsumedCapacity(), null, shape);
+        } else if (result instanceof BatchGetItemResult) {
+            List<ConsumedCapacity> capacities = ((BatchGetItemResult) result).getConsumedCapacity();
+            if (capacities != null) capacities.forEach(c -> record("BatchGetItem", c, null, shape));
+        } else if (result instanceof BatchWriteItemResult) {
+            List<ConsumedCapacity> capacities = ((BatchWriteItemResult) result).getConsumedCapacity();
+            if (capacities != null) capacities.forEach(c -> record("BatchWriteItem", c, null, shape));
+        }
+    }
+
+    private void record(String operation, ConsumedCapacity capacity, String index, String shape) {
+        if (capacity != null && capacity.getCapacityUnits() != null) {
+            record(operation, capacity.getTableName(), index, shape, capacity.getCapacityUnits());
+        }
+    }
+
+    private class ShapeMetricCollector extends RequestMetricCollector {
+        private final String shape;
+
+        private ShapeMetricCollector(String shape) {
+            this.shape = shape;
+        }
+
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            try {
+                recordResponse(request.getOriginalRequest(), response == null ? null : response.getAwsResponse(),
+                        shape);
+            } catch (Exception e) {
+                logger.error("Unable to record consumed capacity!", e);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String operation;
+        private final String table;
+        private final String index;
+        private final String shape;
+        private final AtomicLong requests = new AtomicLong();
+        private final DoubleAdder capacityUnits = new DoubleAdder();
+        private volatile double maxCapacityUnits;
+
+        private Entry(String operation, String table, String index, String shape) {
+            this.operation = operation;
+            this.table = table;
+            this.index = index;
+            this.shape = shape;
+        }
+
+        private void add(double units) {
+            requests.incrementAndGet();
+            capacityUnits.add(units);
+
+            synchronized (this) {
+                if (units > maxCapacityUnits) maxCapacityUnits = units;
+            }
+        }
+
+        private JsonObject toJson() {
+            long count = requests.get();
+            double total = capacityUnits.sum();
+
+            return new JsonObject()
+                    .put("operation", operation)
+                    .put("table", table)
+                    .put("index", index)
+                    .put("shape", shape)
+                    .put("requests", count)
+                    .put("capacityUnits", total)
+                    .put("averageCapacityUnits", count == 0 ? 0.0 : total / count)
+                    .put("maxCapacityUnits", maxCapacityUnits);
+        }
+    }
+}
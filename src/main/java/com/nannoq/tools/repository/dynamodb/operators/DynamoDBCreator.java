@@ -28,9 +28,13 @@ package com.nannoq.tools.repository.dynamodb.operators;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.google.common.collect.ImmutableMap;
 import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
 import com.nannoq.tools.repository.models.Cacheable;
@@ -39,6 +43,7 @@ import com.nannoq.tools.repository.models.ETagable;
 import com.nannoq.tools.repository.models.Model;
 import com.nannoq.tools.repository.repository.cache.CacheManager;
 import com.nannoq.tools.repository.repository.etag.ETagManager;
+import com.nannoq.tools.repository.repository.results.CreateResult;
 import io.vertx.core.*;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
@@ -49,6 +54,7 @@ import io.vertx.serviceproxy.ServiceException;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 
@@ -63,6 +69,7 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
 
     private final Class<E> TYPE;
     private final Vertx vertx;
+    private final DynamoDBWorkerExecutor executor;
     private final DynamoDBRepository<E> db;
 
     private final CacheManager<E> cacheManager;
@@ -73,6 +80,7 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
 
     private final DynamoDBMapper DYNAMO_DB_MAPPER;
     private final RedisClient REDIS_CLIENT;
+    private final DynamoDBBatchWriter batchWriter;
 
     private final Function<E, String> shortCacheIdSupplier;
     private final Function<E, String> cacheIdSupplier;
@@ -84,12 +92,15 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
         TYPE = type;
         this.vertx = vertx;
         this.db = db;
+        this.executor = db.getWorkerExecutor();
         this.cacheManager = cacheManager;
         this.DYNAMO_DB_MAPPER = db.getDynamoDbMapper();
         this.REDIS_CLIENT = db.getRedisClient();
         this.HASH_IDENTIFIER = HASH_IDENTIFIER;
         this.IDENTIFIER = IDENTIFIER;
         this.eTagManager = eTagManager;
+        this.batchWriter = new DynamoDBBatchWriter(vertx, executor, db.getDynamoDbClient(), db.getCollection(),
+                db.isAsyncExecutionEnabled() ? db.getAsyncExecutor() : null);
         cacheIdSupplier = e -> {
             String hash = e.getHash();
             String range = e.getRange();
@@ -104,13 +115,63 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
         };
     }
 
+    /**
+     * Writes the records, splitting the write map into as many partitions as the configured write parallelism. Each
+     * partition runs on its own worker, and the written records are returned in the iteration order of the write map.
+     *
+     * @param create true if this is a create, false if it is an update
+     * @param writeMap the records to write, with the update logic to apply to each
+     * @param resultHandler the handler for the written records
+     */
     @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
     public void doWrite(boolean create, Map<E, Function<E, E>> writeMap, Handler<AsyncResult<List<E>>> resultHandler) {
-        vertx.<List<E>>executeBlocking(future -> {
+        if (create && db.isAsyncExecutionEnabled() && !db.isVersioned()) {
+            doAsyncCreate(writeMap, resultHandler);
+
+            return;
+        }
+
+        final List<Map.Entry<E, Function<E, E>>> entries = new ArrayList<>(writeMap.entrySet());
+        final int partitions = Math.max(1, Math.min(db.getWriteParallelism(), entries.size()));
+        final int partitionSize = (entries.size() + partitions - 1) / partitions;
+        final List<Future> partitionFutures = new ArrayList<>();
+
+        for (int i = 0; i < partitions; i++) {
+            int from = Math.min(i * partitionSize, entries.size());
+            int to = Math.min(from + partitionSize, entries.size());
+            Future<List<E>> partitionFuture = Future.future();
+
+            writePartition(create, entries.subList(from, to), partitionFuture.completer());
+
+            partitionFutures.add(partitionFuture);
+        }
+
+        CompositeFuture.all(partitionFutures).setHandler(result -> {
+            if (result.failed()) {
+                logger.error("Error in doWrite!", result.cause());
+
+                resultHandler.handle(ServiceException.fail(500,
+                        "An error occured when running doWrite: " + result.cause().getMessage(),
+                        new JsonObject(Json.encode(result.cause()))));
+            } else {
+                List<E> written = new ArrayList<>();
+                //noinspection unchecked
+                partitionFutures.forEach(partitionFuture -> written.addAll((List<E>) partitionFuture.result()));
+
+                resultHandler.handle(Future.succeededFuture(written));
+            }
+        });
+    }
+
+    private void writePartition(boolean create, List<Map.Entry<E, Function<E, E>>> entries,
+                                Handler<AsyncResult<List<E>>> resultHandler) {
+        executor.<List<E>>executeBlocking(future -> {
             try {
                 List<Future> writeFutures = new ArrayList<>();
 
-                writeMap.forEach((E record, Function<E, E> updateLogic) -> {
+                entries.forEach(entry -> {
+                    E record = entry.getKey();
+                    Function<E, E> updateLogic = entry.getValue();
                     Future<E> writeFuture = Future.future();
 
                     if (!create && updateLogic != null) {
@@ -142,6 +203,8 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
                             Future<Boolean> purgeFuture = Future.future();
                             destroyEtagsAfterCachePurge(writeFuture, finalRecord, purgeFuture);
 
+                            db.invalidateReadCaches();
+                            db.getMaterializedAggregates().written(es);
                             cacheManager.replaceCache(purgeFuture, es, shortCacheIdSupplier, cacheIdSupplier);
                         } catch (Exception e) {
                             writeFuture.fail(e);
@@ -179,19 +242,197 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
 
                 future.fail(e);
             }
-        }, false, result -> {
-            if (result.failed()) {
-                logger.error("Error in doWrite!", result.cause());
+        }, false, resultHandler);
+    }
+
+    @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
+    private void doAsyncCreate(Map<E, Function<E, E>> writeMap, Handler<AsyncResult<List<E>>> resultHandler) {
+        List<Future> writeFutures = new ArrayList<>();
+
+        writeMap.forEach((E record, Function<E, E> updateLogic) -> {
+            Future<E> writeFuture = Future.future();
+
+            if (logger.isDebugEnabled()) { logger.debug("Running async remoteCreate..."); }
+
+            if (eTagManager != null) {
+                eTagManager.setSingleRecordEtag(record.generateAndSetEtag(new HashMap<>()), tagResult -> {
+                    if (tagResult.failed()) logger.error("Failed etag operation!", tagResult.cause());
+                });
+            }
+
+            try {
+                E finalRecord = db.setCreatedAt(db.setUpdatedAt(record));
+
+                db.getAsyncExecutor().putItem(new PutItemRequest()
+                        .withTableName(db.getCollection())
+                        .withItem(db.getAsyncExecutor().convert(finalRecord))
+                        .withConditionExpression("attribute_not_exists(#hash)")
+                        .withExpressionAttributeNames(Collections.singletonMap("#hash", HASH_IDENTIFIER)), putRes -> {
+                    if (putRes.failed()) {
+                        writeFuture.fail(putRes.cause());
+                    } else {
+                        Future<Boolean> purgeFuture = Future.future();
+                        destroyEtagsAfterCachePurge(writeFuture, finalRecord, purgeFuture);
+
+                        db.invalidateReadCaches();
+                        db.getMaterializedAggregates().written(Collections.singletonList(finalRecord));
+                        cacheManager.replaceCache(purgeFuture, Collections.singletonList(finalRecord),
+                                shortCacheIdSupplier, cacheIdSupplier);
+                    }
+                });
+            } catch (Exception e) {
+                writeFuture.fail(e);
+            }
+
+            writeFutures.add(writeFuture);
+        });
+
+        CompositeFuture.all(writeFutures).setHandler(res -> {
+            if (res.failed()) {
+                logger.error("Error in doWrite!", res.cause());
 
                 resultHandler.handle(ServiceException.fail(500,
-                        "An error occured when running doWrite: " + result.cause().getMessage(),
-                        new JsonObject(Json.encode(result.cause()))));
+                        "An error occured when running doWrite: " + res.cause().getMessage(),
+                        new JsonObject(Json.encode(res.cause()))));
+            } else {
+                //noinspection unchecked
+                resultHandler.handle(Future.succeededFuture(writeFutures.stream()
+                        .map(finalFuture -> (E) finalFuture.result())
+                        .collect(toList())));
+            }
+        });
+    }
+
+    /**
+     * Creates all records through BatchWriteItem instead of one conditional save per record. BatchWriteItem does not
+     * support conditions, so records are put unconditionally: an existing item with the same key is replaced, last
+     * writer wins, and attributes of the existing item that the model does not map are lost. Callers must only use this
+     * where that is acceptable, it is never used for updates or versioned models. A record sharing a key with an
+     * earlier record of the batch is rejected with a 409, as BatchWriteItem rejects duplicate keys in a request. Every
+     * chunk is attempted, and the outcome is reported per record. Etags and caches are refreshed for the records that
+     * were written, and purged for the records of failed chunks, as those may have been partially written.
+     *
+     * @param records the records, the result is returned in the same order
+     * @param parallelism the number of chunks to run at once
+     * @param resultHandler the handler for the result of every record, failed only if no record was created
+     */
+    @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
+    public void doBatchCreate(List<E> records, int parallelism,
+                              Handler<AsyncResult<List<CreateResult<E>>>> resultHandler) {
+        final List<E> finalRecords = new ArrayList<>();
+        final Throwable[] causes = new Throwable[records.size()];
+        final List<Integer> requestIndexes = new ArrayList<>();
+        final List<Map<String, String>> etags = new ArrayList<>();
+        final List<WriteRequest> writeRequests = new ArrayList<>();
+
+        try {
+            final DynamoDBMapperTableModel<E> tableModel = DYNAMO_DB_MAPPER.getTableModel(TYPE);
+            final Set<String> keys = new HashSet<>();
+
+            for (int i = 0; i < records.size(); i++) {
+                E finalRecord = db.setCreatedAt(db.setUpdatedAt(records.get(i)));
+                String key = cacheIdSupplier.apply(finalRecord);
+
+                finalRecords.add(finalRecord);
+
+                if (!keys.add(key)) {
+                    causes[i] = new ServiceException(409, "Duplicate key in batch: " + key);
+
+                    continue;
+                }
+
+                if (eTagManager != null) etags.add(finalRecord.generateAndSetEtag(new HashMap<>()));
+
+                requestIndexes.add(i);
+                writeRequests.add(new WriteRequest().withPutRequest(
+                        new PutRequest().withItem(tableModel.convert(finalRecord))));
+            }
+        } catch (Exception e) {
+            logger.error("Unable to prepare batch write!", e);
+
+            resultHandler.handle(ServiceException.fail(500,
+                    "An error occured when running doBatchCreate: " + e.getMessage(),
+                    new JsonObject(Json.encode(e))));
+
+            return;
+        }
+
+        batchWriter.writeEach(writeRequests, parallelism, writeRes -> {
+            final List<E> attempted = new ArrayList<>();
+            final List<E> created = new ArrayList<>();
+            final List<E> failed = new ArrayList<>();
+
+            for (int j = 0; j < requestIndexes.size(); j++) {
+                final int index = requestIndexes.get(j);
+                final Throwable cause = writeRes.result().get(j);
+
+                attempted.add(finalRecords.get(index));
+
+                if (cause == null) {
+                    created.add(finalRecords.get(index));
+
+                    if (eTagManager != null) {
+                        eTagManager.setSingleRecordEtag(etags.get(j), tagResult -> {
+                            if (tagResult.failed()) logger.error("Failed etag operation!", tagResult.cause());
+                        });
+                    }
+                } else {
+                    causes[index] = cause;
+                    failed.add(finalRecords.get(index));
+                }
+            }
+
+            Future<Boolean> replaceFuture = Future.future();
+            Future<Boolean> purgeFailedFuture = Future.future();
+            Future<Boolean> purgeFuture = Future.future();
+            Future<List<E>> writeFuture = Future.future();
+            destroyEtagsAfterBatchCachePurge(writeFuture, attempted, purgeFuture);
+
+            db.invalidateReadCaches();
+            db.getMaterializedAggregates().written(created);
+            db.getMaterializedAggregates().invalidate(failed);
+
+            CompositeFuture.join(replaceFuture, purgeFailedFuture).setHandler(purgeRes ->
+                    purgeFuture.complete(purgeRes.succeeded()));
+
+            if (created.isEmpty()) {
+                replaceFuture.complete(Boolean.TRUE);
             } else {
-                resultHandler.handle(Future.succeededFuture(result.result()));
+                cacheManager.replaceCache(replaceFuture, created, shortCacheIdSupplier, cacheIdSupplier);
             }
+
+            if (failed.isEmpty()) {
+                purgeFailedFuture.complete(Boolean.TRUE);
+            } else {
+                cacheManager.purgeCache(purgeFailedFuture, failed, cacheIdSupplier);
+            }
+
+            writeFuture.setHandler(res -> {
+                if (res.failed()) {
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else if (created.isEmpty() && !finalRecords.isEmpty()) {
+                    Throwable cause = Arrays.stream(causes).filter(Objects::nonNull).findFirst().orElse(null);
+
+                    logger.error("Error in doBatchCreate!", cause);
+
+                    resultHandler.handle(ServiceException.fail(500,
+                            "An error occured when running doBatchCreate: " +
+                                    (cause == null ? "" : cause.getMessage()),
+                            new JsonObject(Json.encode(cause))));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(IntStream.range(0, finalRecords.size())
+                            .mapToObj(i -> new CreateResult<>(finalRecords.get(i), causes[i]))
+                            .collect(toList())));
+                }
+            });
         });
     }
 
+    /**
+     * Saves the update without reading the record first, trusting the version held by the caller. The newest record is
+     * only fetched, and the update logic re-applied to it, when the conditional save fails on a version or existence
+     * conflict. Other errors have already been retried by the client and are returned to the caller.
+     */
     private void optimisticLockingSave(E newerVersion, Function<E, E> updateLogic,
                                        Integer prevCounter, Future<E> writeFuture, E record) {
         Integer counter = 0;
@@ -211,8 +452,10 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
                 if (logger.isDebugEnabled()) { logger.debug("Performing " + counter + " remoteUpdate!"); }
                 DYNAMO_DB_MAPPER.save(newerVersion, buildExistingExpression(newerVersion, true));
                 Future<Boolean> purgeFuture = Future.future();
-                destroyEtagsAfterCachePurge(writeFuture, record, purgeFuture);
+                destroyEtagsAfterCachePurge(writeFuture, newerVersion, purgeFuture);
 
+                db.invalidateReadCaches();
+                db.getMaterializedAggregates().written(Collections.singletonList(newerVersion));
                 cacheManager.replaceCache(purgeFuture, Collections.singletonList(newerVersion),
                         shortCacheIdSupplier, cacheIdSupplier);
                 if (logger.isDebugEnabled()) { logger.debug("Update " + counter + " performed successfully!"); }
@@ -229,9 +472,10 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
                 if (logger.isDebugEnabled()) { logger.debug("Performing immediate remoteUpdate!"); }
                 DYNAMO_DB_MAPPER.save(updatedRecord, buildExistingExpression(record, true));
                 Future<Boolean> purgeFuture = Future.future();
-                purgeFuture.setHandler(purgeRes ->
-                        destroyEtagsAfterCachePurge(writeFuture, record, purgeFuture));
+                destroyEtagsAfterCachePurge(writeFuture, updatedRecord, purgeFuture);
 
+                db.invalidateReadCaches();
+                db.getMaterializedAggregates().written(Collections.singletonList(updatedRecord));
                 cacheManager.replaceCache(purgeFuture, Collections.singletonList(updatedRecord),
                         shortCacheIdSupplier, cacheIdSupplier);
                 if (logger.isDebugEnabled()) { logger.debug("Immediate remoteUpdate performed!"); }
@@ -254,7 +498,13 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
 
             E newestRecord = db.fetchNewestRecord(TYPE, record.getHash(), record.getRange());
 
-            optimisticLockingSave(newestRecord, updateLogic, ++counter, writeFuture, record);
+            if (newestRecord == null) {
+                logger.error("Record no longer exists, aborting remoteUpdate!");
+
+                writeFuture.fail(e);
+            } else {
+                optimisticLockingSave(newestRecord, updateLogic, ++counter, writeFuture, record);
+            }
         } catch (AmazonServiceException ase) {
             logger.error("Could not complete DynamoDB Operation, " +
                     "Error Message:  " + ase.getMessage() + ", " +
@@ -263,27 +513,11 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
                     "Error Type:     " + ase.getErrorType() + ", " +
                     "Request ID:     " + ase.getRequestId());
 
-            if (counter > 100) {
-                logger.error(Json.encodePrettily(record) + "\n:\n" + Json.encodePrettily(newerVersion));
-
-                throw new InternalError();
-            }
-
-            E newestRecord = db.fetchNewestRecord(TYPE, record.getHash(), record.getRange());
-
-            optimisticLockingSave(newestRecord, updateLogic, ++counter, writeFuture, record);
+            writeFuture.fail(ase);
         } catch (AmazonClientException ace) {
             logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
 
-            if (counter > 100) {
-                logger.error(Json.encodePrettily(record) + "\n:\n" + Json.encodePrettily(newerVersion));
-
-                throw new InternalError();
-            }
-
-            E newestRecord = db.fetchNewestRecord(TYPE, record.getHash(), record.getRange());
-
-            optimisticLockingSave(newestRecord, updateLogic, ++counter, writeFuture, record);
+            writeFuture.fail(ace);
         }
     }
 
@@ -320,6 +554,39 @@ public class DynamoDBCreator<E extends DynamoDBModel & Model & ETagable & Cachea
         });
     }
 
+    private void destroyEtagsAfterBatchCachePurge(Future<List<E>> writeFuture, List<E> records,
+                                                  Future<Boolean> purgeFuture) {
+        purgeFuture.setHandler(purgeRes -> {
+            if (eTagManager == null) {
+                writeFuture.complete(records);
+            } else {
+                List<Future> etagFutures = new ArrayList<>();
+
+                records.stream()
+                        .map(record -> new JsonObject().put("hash", record.getHash()).encode().hashCode())
+                        .distinct()
+                        .forEach(hashId -> {
+                            Future<Boolean> removeProjections = Future.future();
+                            Future<Boolean> removeETags = Future.future();
+
+                            eTagManager.removeProjectionsEtags(hashId, removeProjections.completer());
+                            eTagManager.destroyEtags(hashId, removeETags.completer());
+
+                            etagFutures.add(removeProjections);
+                            etagFutures.add(removeETags);
+                        });
+
+                CompositeFuture.all(etagFutures).setHandler(res -> {
+                    if (res.failed()) {
+                        writeFuture.fail(res.cause());
+                    } else {
+                        writeFuture.complete(records);
+                    }
+                });
+            }
+        });
+    }
+
     private DynamoDBSaveExpression buildExistingExpression(E element, boolean exists) {
         ImmutableMap.Builder<String, ExpectedAttributeValue> expectationbuilder =
                 new ImmutableMap.Builder<String, ExpectedAttributeValue>()
@@ -30,8 +30,11 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDeleteExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.KeyPair;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.google.common.collect.ImmutableMap;
 import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
 import com.nannoq.tools.repository.models.Cacheable;
@@ -47,13 +50,11 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.serviceproxy.ServiceException;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * This class defines the deletion operations for the DynamoDBRepository.
@@ -66,6 +67,7 @@ public class DynamoDBDeleter<E extends DynamoDBModel & Model & ETagable & Cachea
 
     private final Class<E> TYPE;
     private final Vertx vertx;
+    private final DynamoDBWorkerExecutor executor;
     private final DynamoDBRepository<E> db;
     private final CacheManager<E> cacheManager;
     private final ETagManager<E> eTagManager;
@@ -74,6 +76,7 @@ public class DynamoDBDeleter<E extends DynamoDBModel & Model & ETagable & Cachea
     private final String IDENTIFIER;
 
     private final DynamoDBMapper DYNAMO_DB_MAPPER;
+    private final DynamoDBBatchWriter batchWriter;
 
     public DynamoDBDeleter(Class<E> type, Vertx vertx, DynamoDBRepository<E> db,
                            String HASH_IDENTIFIER, String IDENTIFIER,
@@ -82,16 +85,19 @@ public class DynamoDBDeleter<E extends DynamoDBModel & Model & ETagable & Cachea
         TYPE = type;
         this.vertx = vertx;
         this.db = db;
+        this.executor = db.getWorkerExecutor();
         this.cacheManager = cacheManager;
         this.DYNAMO_DB_MAPPER = db.getDynamoDbMapper();
         this.HASH_IDENTIFIER = HASH_IDENTIFIER;
         this.IDENTIFIER = IDENTIFIER;
         this.eTagManager = eTagManager;
+        this.batchWriter = new DynamoDBBatchWriter(vertx, executor, db.getDynamoDbClient(), db.getCollection(),
+                db.isAsyncExecutionEnabled() ? db.getAsyncExecutor() : null);
     }
 
     @SuppressWarnings({"unchecked", "ThrowableResultOfMethodCallIgnored"})
     public void doDelete(List<JsonObject> identifiers, Handler<AsyncResult<List<E>>> resultHandler) {
-        vertx.<List<E>>executeBlocking(future -> {
+        executor.<List<E>>executeBlocking(future -> {
             try {
                 List<E> items = DYNAMO_DB_MAPPER.batchLoad(Collections.singletonMap(TYPE, identifiers.stream()
                         .map(id -> new KeyPair()
@@ -162,6 +168,8 @@ public class DynamoDBDeleter<E extends DynamoDBModel & Model & ETagable & Cachea
                             }
                         });
 
+                        db.invalidateReadCaches();
+                        db.getMaterializedAggregates().deleted(items);
                         cacheManager.purgeCache(purgeFuture, items, e -> {
                             String hash = e.getHash();
                             String range = e.getRange();
@@ -198,6 +206,164 @@ public class DynamoDBDeleter<E extends DynamoDBModel & Model & ETagable & Cachea
         });
     }
 
+    /**
+     * Deletes the records with BatchWriteItem in chunks of 25 keys, running the chunks in parallel and retrying
+     * unprocessed keys. Records are loaded first so the deleted items can be returned and purged from the cache.
+     * Item list etags are destroyed once per hash key instead of once per record. BatchWriteItem does not support
+     * conditions, so versioned models must use {@link #doDelete(List, Handler)} instead.
+     *
+     * @param identifiers the identifiers of the records to delete
+     * @param parallelism the number of chunks to have in flight at the same time
+     * @param resultHandler the handler for the deleted records, in the order of the identifiers
+     */
+    @SuppressWarnings({"unchecked", "ThrowableResultOfMethodCallIgnored"})
+    public void doBatchDelete(List<JsonObject> identifiers, int parallelism,
+                              Handler<AsyncResult<List<E>>> resultHandler) {
+        executor.<List<E>>executeBlocking(future -> {
+            try {
+                Map<String, E> loaded = new HashMap<>();
+
+                DYNAMO_DB_MAPPER.batchLoad(Collections.singletonMap(TYPE, identifiers.stream()
+                        .map(id -> new KeyPair()
+                                .withHashKey(id.getString("hash"))
+                                .withRangeKey(id.getString("range")))
+                        .collect(toList()))).values().forEach(list -> list.forEach(item -> {
+                            E record = (E) item;
+
+                            loaded.put(keyOf(record.getHash(), record.getRange()), record);
+                        }));
+
+                future.complete(identifiers.stream()
+                        .map(id -> loaded.remove(keyOf(id.getString("hash"), id.getString("range"))))
+                        .filter(Objects::nonNull)
+                        .collect(toList()));
+            } catch (AmazonServiceException ase) {
+                logger.error("Could not complete DynamoDB Operation, " +
+                        "Error Message:  " + ase.getMessage() + ", " +
+                        "HTTP Status:    " + ase.getStatusCode() + ", " +
+                        "AWS Error Code: " + ase.getErrorCode() + ", " +
+                        "Error Type:     " + ase.getErrorType() + ", " +
+                        "Request ID:     " + ase.getRequestId());
+
+                future.fail(ase);
+            } catch (AmazonClientException ace) {
+                logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                future.fail(ace);
+            } catch (Exception e) {
+                logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+                future.fail(e);
+            }
+        }, false, loadRes -> {
+            if (loadRes.failed()) {
+                resultHandler.handle(ServiceException.fail(500, "Unable to perform remoteDelete!",
+                        new JsonObject(Json.encode(loadRes.cause()))));
+
+                return;
+            }
+
+            List<E> items = loadRes.result();
+
+            if (logger.isDebugEnabled()) { logger.debug("To Batch Delete: " + items.size()); }
+
+            List<WriteRequest> writeRequests = items.stream()
+                    .map(item -> new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(buildKey(item))))
+                    .collect(toList());
+
+            batchWriter.write(writeRequests, parallelism, writeRes -> {
+                if (writeRes.failed()) {
+                    logger.error("Error in doBatchDelete!", writeRes.cause());
+
+                    resultHandler.handle(ServiceException.fail(500, "Unable to perform remoteDelete!",
+                            new JsonObject(Json.encode(writeRes.cause()))));
+                } else {
+                    Future<Boolean> purgeFuture = Future.future();
+                    purgeFuture.setHandler(purgeRes -> {
+                        if (purgeRes.failed()) {
+                            resultHandler.handle(ServiceException.fail(500, "Unable to perform remoteDelete!",
+                                    new JsonObject(Json.encode(purgeRes.cause()))));
+                        } else {
+                            destroyEtagsForPartitions(identifiers, items, resultHandler);
+                        }
+                    });
+
+                    if (items.isEmpty()) {
+                        purgeFuture.complete(Boolean.TRUE);
+                    } else {
+                        db.invalidateReadCaches();
+                        db.getMaterializedAggregates().deleted(items);
+                        cacheManager.purgeCache(purgeFuture, items, e -> {
+                            String hash = e.getHash();
+                            String range = e.getRange();
+
+                            return TYPE.getSimpleName() + "_" + hash + (range.equals("") ? "" : "/" + range);
+                        });
+                    }
+                }
+            });
+        });
+    }
+
+    private void destroyEtagsForPartitions(List<JsonObject> identifiers, List<E> items,
+                                           Handler<AsyncResult<List<E>>> resultHandler) {
+        if (eTagManager == null) {
+            resultHandler.handle(Future.succeededFuture(items));
+
+            return;
+        }
+
+        List<Future> etagFutures = new ArrayList<>();
+        Set<String> deletedKeys = items.stream()
+                .map(item -> keyOf(item.getHash(), item.getRange()))
+                .collect(toSet());
+
+        identifiers.stream()
+                .filter(id -> deletedKeys.contains(keyOf(id.getString("hash"), id.getString("range"))))
+                .map(id -> id.encode().hashCode())
+                .distinct()
+                .forEach(projectionsId -> {
+                    Future<Boolean> removeProjections = Future.future();
+                    eTagManager.removeProjectionsEtags(projectionsId, removeProjections.completer());
+
+                    etagFutures.add(removeProjections);
+                });
+
+        items.stream()
+                .map(item -> new JsonObject().put("hash", item.getHash()).encode().hashCode())
+                .distinct()
+                .forEach(hashId -> {
+                    Future<Boolean> removeETags = Future.future();
+                    eTagManager.destroyEtags(hashId, removeETags.completer());
+
+                    etagFutures.add(removeETags);
+                });
+
+        CompositeFuture.all(etagFutures).setHandler(etagRes -> {
+            if (etagRes.failed()) {
+                resultHandler.handle(ServiceException.fail(500, "Unable to perform remoteDelete!",
+                        new JsonObject(Json.encode(etagRes.cause()))));
+            } else {
+                resultHandler.handle(Future.succeededFuture(items));
+            }
+        });
+    }
+
+    private Map<String, AttributeValue> buildKey(E item) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(HASH_IDENTIFIER, new AttributeValue().withS(item.getHash()));
+
+        if (!IDENTIFIER.equals("")) {
+            key.put(IDENTIFIER, new AttributeValue().withS(item.getRange()));
+        }
+
+        return key;
+    }
+
+    private String keyOf(String hash, String range) {
+        return hash + "/" + (range == null || IDENTIFIER.equals("") ? "" : range);
+    }
+
     private void optimisticLockingDelete(E record, Integer prevCounter, Future<E> deleteFuture) {
         Integer counter = 0;
         if (prevCounter != null) counter = prevCounter;
@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import com.nannoq.tools.repository.utils.AggregateFunction;
+import com.nannoq.tools.repository.utils.GroupingConfiguration;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class defines the grouping key extractors for the aggregations of the DynamoDBRepository. Every grouping
+ * configuration is compiled once per model into a function reading the field through a method handle, shared by every
+ * configuration with the same field, unit and range. Ranged groupings are bucketed on the primitive value, and the
+ * key of the bucket is built per item so arbitrary value ranges do not grow the extractor.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBGroupingKeys<E extends DynamoDBModel & Model & ETagable & Cacheable> {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final DynamoDBRepository<E> db;
+    private final Map<String, Function<E, String>> extractors = new ConcurrentHashMap<>();
+
+    public DynamoDBGroupingKeys(DynamoDBRepository<E> db) {
+        this.db = db;
+    }
+
+    /**
+     * Returns the compiled grouping key extractor for a grouping configuration, compiling it on first use.
+     *
+     * @param groupingConfiguration the grouping configuration
+     * @return the grouping key extractor
+     */
+    public Function<E, String> extractor(GroupingConfiguration groupingConfiguration) {
+        return extractors.computeIfAbsent(extractorKey(groupingConfiguration),
+                key -> compile(groupingConfiguration));
+    }
+
+    private static String extractorKey(GroupingConfiguration groupingConfiguration) {
+        return groupingConfiguration.getGroupBy() + "|" + groupingConfiguration.getGroupByUnit() + "|" +
+                groupingConfiguration.getGroupByRange();
+    }
+
+    private Function<E, String> compile(GroupingConfiguration groupingConfiguration) {
+        final MethodHandle getter = getter(groupingConfiguration.getGroupBy());
+
+        if (!groupingConfiguration.hasGroupRanging()) {
+            return item -> read(getter, item).toString();
+        }
+
+        final String groupByRangeUnit = groupingConfiguration.getGroupByUnit();
+        final String groupByRangeRange = groupingConfiguration.getGroupByRange().toString();
+        final long groupingValue;
+        final ToLongFunction<Object> valueExtractor;
+
+        if (groupByRangeUnit.equalsIgnoreCase("INTEGER")) {
+            groupingValue = Long.parseLong(groupByRangeRange);
+            valueExtractor = DynamoDBGroupingKeys::longValue;
+        } else if (groupByRangeUnit.equalsIgnoreCase("DATE")) {
+            groupingValue = getTimeRangeFromDateUnit(groupByRangeRange);
+            valueExtractor = value -> ((Date) value).getTime();
+        } else {
+            return item -> {
+                throw new UnknownError("Cannot find field!");
+            };
+        }
+
+        return item -> bucketKey(valueExtractor.applyAsLong(read(getter, item)) / groupingValue, groupingValue);
+    }
+
+    private MethodHandle getter(String fieldName) {
+        try {
+            return MethodHandles.lookup().unreflectGetter(db.getField(fieldName)).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new UnknownError("Cannot find field!");
+        }
+    }
+
+    private static Object read(MethodHandle getter, Object item) {
+        Object value;
+
+        try {
+            value = (Object) getter.invokeExact(item);
+        } catch (Throwable t) {
+            throw new UnknownError("Cannot find field!");
+        }
+
+        if (value == null) throw new UnknownError("Field is null!");
+
+        return value;
+    }
+
+    private static long longValue(Object value) {
+        if (value instanceof Number) return ((Number) value).longValue();
+
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException nfe) {
+            return (long) Double.parseDouble(value.toString());
+        }
+    }
+
+    static String bucketKey(long ratio, long groupingValue) {
+        return new JsonObject()
+                .put("floor", ratio * groupingValue)
+                .put("base", groupingValue)
+                .put("ratio", (double) ratio)
+                .put("ceil", (ratio + 1L) * groupingValue)
+                .encode();
+    }
+
+    static long getTimeRangeFromDateUnit(String groupByRangeRange) {
+        switch (AggregateFunction.TIMEUNIT_DATE.valueOf(groupByRangeRange.toUpperCase())) {
+            case HOUR:
+                return Duration.ofHours(1).toMillis();
+            case TWELVE_HOUR:
+                return Duration.ofHours(12).toMillis();
+            case DAY:
+                return Duration.ofDays(1).toMillis();
+            case WEEK:
+                return Duration.ofDays(7).toMillis();
+            case MONTH:
+                return Duration.ofDays(30).toMillis();
+            case YEAR:
+                return Duration.ofDays(365).toMillis();
+            default:
+                throw new Error("Invalid TIME UNIT for Date!");
+        }
+    }
+}
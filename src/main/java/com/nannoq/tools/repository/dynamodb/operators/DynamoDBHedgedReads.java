@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This class defines hedged point reads for the DynamoDBReader. The latency of every response is recorded in a
+ * histogram covering the current and the previous window. A read that has not returned within the configured
+ * percentile of that histogram is sent once more, and whichever response arrives first is used. Hedges are capped to a
+ * fraction of the reads in the window, and no hedges are sent before the histogram has enough samples or while the
+ * caller reports that it is saturated. Only successful responses with an item are recorded, so failures and misses do
+ * not skew the delay.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBHedgedReads {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBHedgedReads.class.getSimpleName());
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 30 * SUB_BUCKETS;
+    private static final int MIN_SAMPLES = 100;
+
+    private final Vertx vertx;
+    private final double percentile;
+    private final double budget;
+    private final long minDelay;
+    private final long windowMillis;
+
+    private final AtomicLongArray[] windows = new AtomicLongArray[]{
+            new AtomicLongArray(BUCKETS), new AtomicLongArray(BUCKETS)};
+    private final AtomicInteger current = new AtomicInteger();
+    private volatile long windowStart = System.currentTimeMillis();
+
+    private final AtomicLong windowReads = new AtomicLong();
+    private final AtomicLong windowHedges = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+    private final AtomicLong saturated = new AtomicLong();
+
+    /**
+     * @param vertx the vertx instance for the hedge timers
+     * @param percentile the latency percentile to wait for before hedging, between 0 and 1
+     * @param budget the max fraction of reads that may be hedged, between 0 and 1
+     * @param minDelay the min delay in milliseconds before hedging
+     * @param windowMillis the length of a histogram and budget window in milliseconds
+     */
+    public DynamoDBHedgedReads(Vertx vertx, double percentile, double budget, long minDelay, long windowMillis) {
+        this.vertx = vertx;
+        this.percentile = percentile;
+        this.budget = budget;
+        this.minDelay = Math.max(1L, minDelay);
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Runs a read, and sends it once more if it is slower than the hedge delay and the budget allows it. The first
+     * successful response is used, and a failure is only returned when every sent read has failed.
+     *
+     * @param request sends one read, calling the given handler with its result
+     * @param canHedge checked when the hedge is due, false while the caller has no capacity for another read
+     * @param resultHandler the handler for the first result
+     * @param <T> the result type
+     */
+    public <T> void read(Consumer<Handler<AsyncResult<T>>> request, BooleanSupplier canHedge,
+                         Handler<AsyncResult<T>> resultHandler) {
+        rotateIfExpired();
+        reads.incrementAndGet();
+        windowReads.incrementAndGet();
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicBoolean primaryPending = new AtomicBoolean(true);
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        final long delay = hedgeDelay();
+
+        send(request, false, done, primaryPending, outstanding, resultHandler);
+
+        if (delay < 0) return;
+
+        vertx.setTimer(delay, timer -> {
+            if (done.get()) return;
+
+            if (!canHedge.getAsBoolean()) {
+                saturated.incrementAndGet();
+
+                return;
+            }
+
+            if (!tryAcquireHedge()) {
+                budgetExhausted.incrementAndGet();
+
+                return;
+            }
+
+            if (logger.isDebugEnabled()) { logger.debug("Hedging read after " + delay + " ms"); }
+
+            outstanding.incrementAndGet();
+            send(request, true, done, primaryPending, outstanding, resultHandler);
+        });
+    }
+
+    private <T> void send(Consumer<Handler<AsyncResult<T>>> request, boolean hedge, AtomicBoolean done,
+                          AtomicBoolean primaryPending, AtomicInteger outstanding,
+                          Handler<AsyncResult<T>> resultHandler) {
+        final long start = System.nanoTime();
+
+        request.accept(result -> {
+            int remaining = outstanding.decrementAndGet();
+            boolean primaryWasPending = hedge ? primaryPending.get() : primaryPending.getAndSet(false);
+
+            if (result.succeeded()) {
+                if (result.result() != null) record((System.nanoTime() - start) / 1000L);
+
+                if (done.compareAndSet(false, true)) {
+                    if (hedge && primaryWasPending && result.result() != null) hedgeWins.incrementAndGet();
+
+                    resultHandler.handle(result);
+                }
+            } else if (remaining == 0 && done.compareAndSet(false, true)) {
+                resultHandler.handle(Future.failedFuture(result.cause()));
+            }
+        });
+    }
+
+    /**
+     * @return the delay in milliseconds before a read is hedged, or -1 if there are too few samples to hedge
+     */
+    long hedgeDelay() {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+
+        for (AtomicLongArray window : windows) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += window.get(i);
+                total += window.get(i);
+            }
+        }
+
+        if (total < MIN_SAMPLES) return -1L;
+
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+
+            if (seen >= rank) return Math.max(minDelay, upperBoundMicros(i) / 1000L);
+        }
+
+        return Math.max(minDelay, upperBoundMicros(BUCKETS - 1) / 1000L);
+    }
+
+    /**
+     * Records a response latency in the current window.
+     *
+     * @param micros the latency in microseconds
+     */
+    void record(long micros) {
+        windows[current.get()].incrementAndGet(bucketOf(micros));
+    }
+
+    private boolean tryAcquireHedge() {
+        while (true) {
+            long used = windowHedges.get();
+
+            if (used + 1 > windowReads.get() * budget) return false;
+
+            if (windowHedges.compareAndSet(used, used + 1)) {
+                hedges.incrementAndGet();
+
+                return true;
+            }
+        }
+    }
+
+    private void rotateIfExpired() {
+        long now = System.currentTimeMillis();
+
+        if (now - windowStart < windowMillis) return;
+
+        synchronized (windows) {
+            if (now - windowStart < windowMillis) return;
+
+            int next = 1 - current.get();
+
+            for (int i = 0; i < BUCKETS; i++) {
+                windows[next].set(i, 0L);
+            }
+
+            current.set(next);
+            windowReads.set(0L);
+            windowHedges.set(0L);
+            windowStart = now;
+        }
+    }
+
+    static int bucketOf(long micros) {
+        if (micros <= 1) return 0;
+
+        int bucket = (int) (Math.log(micros) / Math.log(2) * SUB_BUCKETS);
+
+        return Math.min(BUCKETS - 1, bucket);
+    }
+
+    static long upperBoundMicros(int bucket) {
+        return (long) Math.ceil(Math.pow(2, (bucket + 1) / (double) SUB_BUCKETS));
+    }
+
+    public JsonObject getMetrics() {
+        return new JsonObject()
+                .put("reads", reads.get())
+                .put("hedges", hedges.get())
+                .put("hedgeWins", hedgeWins.get())
+                .put("budgetExhausted", budgetExhausted.get())
+                .put("saturated", saturated.get())
+                .put("hedgeDelay", hedgeDelay());
+    }
+}
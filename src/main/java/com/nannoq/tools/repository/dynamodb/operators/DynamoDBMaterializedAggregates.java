@@ -0,0 +1,513 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import com.nannoq.tools.repository.utils.AggregateFunction;
+import com.nannoq.tools.repository.utils.AggregateFunctions;
+import com.nannoq.tools.repository.utils.GroupingConfiguration;
+import com.nannoq.tools.repository.utils.QueryPack;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class defines the materialized aggregates for the DynamoDBRepository. A registered COUNT or SUM, with up to
+ * three grouping levels, is kept per hash key as running totals, and every create, update and delete applies its delta
+ * to the totals of its hash key. A matching aggregation is answered from the totals instead of a query of the
+ * partition. The totals of a hash key are built by one query on first use, and writes arriving while it runs are
+ * replayed onto the result. The contribution of every item is kept, so an update replaces the old contribution of the
+ * item without needing its old image. Totals expire after the ttl, which bounds how long writes made through other
+ * instances go unseen, the least recently used totals are evicted when the max number of partitions is reached, and
+ * partitions larger than the max items are answered but not kept. Since a contribution is kept per item, the memory
+ * used grows with max partitions times max items, so aggregates are only materialized when registered and the
+ * default limits are kept low. A failure to apply a write drops every kept total rather than failing the write.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBMaterializedAggregates<E extends DynamoDBModel & Model & ETagable & Cacheable> {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBMaterializedAggregates.class.getSimpleName());
+
+    private final DynamoDBRepository<E> db;
+    private final DynamoDBGroupingKeys<E> groupingKeys;
+    private final long ttl;
+    private final int maxPartitions;
+    private final int maxItems;
+
+    private final List<Definition<E>> definitions = new CopyOnWriteArrayList<>();
+    private final LinkedHashMap<String, Totals> totals;
+    private final Map<String, Build<E>> builds = new HashMap<>();
+
+    /**
+     * @param db the repository
+     * @param ttl the time in milliseconds totals are served before they are rebuilt, 0 to never expire
+     * @param maxPartitions the max number of hash keys totals are kept for, across all definitions
+     * @param maxItems the max number of items in a partition that totals are kept for
+     */
+    public DynamoDBMaterializedAggregates(DynamoDBRepository<E> db, long ttl, int maxPartitions, int maxItems) {
+        this.db = db;
+        this.groupingKeys = new DynamoDBGroupingKeys<>(db);
+        this.ttl = ttl;
+        this.maxPartitions = maxPartitions;
+        this.maxItems = maxItems;
+        this.totals = new LinkedHashMap<String, Totals>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Totals> eldest) {
+                return size() > DynamoDBMaterializedAggregates.this.maxPartitions;
+            }
+        };
+    }
+
+    /**
+     * Registers an aggregate to be materialized. Registering an aggregate that is already materialized does nothing.
+     *
+     * @param aggregateFunction the aggregate, a COUNT or SUM with up to three grouping levels
+     * @throws IllegalArgumentException if the aggregate cannot be materialized
+     */
+    public synchronized void register(AggregateFunction aggregateFunction) throws IllegalArgumentException {
+        final AggregateFunctions function = aggregateFunction.getFunction();
+
+        if (function != AggregateFunctions.COUNT && function != AggregateFunctions.SUM) {
+            throw new IllegalArgumentException("Only COUNT and SUM can be materialized!");
+        }
+
+        if (aggregateFunction.getGroupBy().size() > 3) {
+            throw new IllegalArgumentException("GroupBy size of three is max!");
+        }
+
+        if (indexOf(aggregateFunction) >= 0) return;
+
+        final Function<E, Double> valueExtractor;
+
+        if (function == AggregateFunctions.SUM) {
+            final Field field = db.checkAndGetField(aggregateFunction.getField());
+
+            valueExtractor = item -> db.extractValueAsDouble(field, item);
+        } else {
+            valueExtractor = item -> 0.0;
+        }
+
+        definitions.add(new Definition<>(aggregateFunction, valueExtractor, aggregateFunction.getGroupBy().stream()
+                .map(groupingKeys::extractor)
+                .collect(toList())));
+    }
+
+    /**
+     * @param identifiers the identifiers of the aggregation
+     * @param queryPack the query of the aggregation
+     * @param GSI the index of the aggregation
+     * @return true if the aggregation is a registered aggregate of a single hash key without filters
+     */
+    public boolean isMaterialized(JsonObject identifiers, QueryPack queryPack, String GSI) {
+        return !definitions.isEmpty() && GSI == null && identifiers.getString("hash") != null &&
+                (queryPack.getParams() == null || queryPack.getParams().isEmpty()) &&
+                indexOf(queryPack.getAggregateFunction()) >= 0;
+    }
+
+    /**
+     * Returns the totals of a registered aggregate for a hash key, querying the partition if they are not kept.
+     *
+     * @param hash the hash key
+     * @param queryPack the query of the aggregation
+     * @param projections the projections needed to build the totals
+     * @param resultHandler the handler for the totals
+     */
+    public void aggregate(String hash, QueryPack queryPack, String[] projections,
+                          Handler<AsyncResult<Aggregate>> resultHandler) {
+        final int index = indexOf(queryPack.getAggregateFunction());
+
+        if (index < 0) {
+            resultHandler.handle(Future.failedFuture(new IllegalArgumentException("Aggregate is not materialized!")));
+
+            return;
+        }
+
+        final Definition<E> definition = definitions.get(index);
+        final String key = index + "/" + hash;
+        final Build<E> build;
+        Aggregate aggregate = null;
+
+        synchronized (this) {
+            Totals current = getTotals(key);
+
+            if (current != null) {
+                aggregate = current.aggregate(definition.function);
+                build = null;
+            } else if (builds.containsKey(key)) {
+                builds.get(key).waiters.add(resultHandler);
+
+                return;
+            } else {
+                build = new Build<>(resultHandler);
+                builds.put(key, build);
+            }
+        }
+
+        if (build == null) {
+            resultHandler.handle(Future.succeededFuture(aggregate));
+        } else {
+            build(key, definition, build, hash, queryPack, projections);
+        }
+    }
+
+    /**
+     * Applies created or updated records to the kept totals of their hash keys.
+     *
+     * @param records the records as written
+     */
+    public void written(List<E> records) {
+        if (!definitions.isEmpty()) applySafely(records, false);
+    }
+
+    /**
+     * Removes deleted records from the kept totals of their hash keys.
+     *
+     * @param records the deleted records
+     */
+    public void deleted(List<E> records) {
+        if (!definitions.isEmpty()) applySafely(records, true);
+    }
+
+    /**
+     * Drops the kept totals of the hash keys of records whose write has an unknown outcome, so they are rebuilt on next
+     * use.
+     *
+     * @param records the records
+     */
+    public void invalidate(List<E> records) {
+        if (!definitions.isEmpty() && !records.isEmpty()) drop(records);
+    }
+
+    private synchronized void drop(List<E> records) {
+        for (int i = 0; i < definitions.size(); i++) {
+            for (E record : records) {
+                final String key = i + "/" + record.getHash();
+                final Build<E> build = builds.get(key);
+
+                totals.remove(key);
+
+                if (build != null) build.stale = true;
+            }
+        }
+    }
+
+    private void applySafely(List<E> records, boolean delete) {
+        try {
+            apply(records, delete);
+        } catch (RuntimeException | Error e) {
+            logger.error("Could not apply writes to materialized aggregates, dropping totals!", e);
+
+            synchronized (this) {
+                totals.clear();
+            }
+        }
+    }
+
+    private synchronized void apply(List<E> records, boolean delete) {
+        for (int i = 0; i < definitions.size(); i++) {
+            final Definition<E> definition = definitions.get(i);
+
+            for (E record : records) {
+                final String key = i + "/" + record.getHash();
+                final Build<E> build = builds.get(key);
+                final Totals current = totals.get(key);
+
+                if (build != null) build.records.add(new AbstractMap.SimpleImmutableEntry<>(record, delete));
+
+                if (current != null) {
+                    try {
+                        current.apply(definition, record, delete);
+                    } catch (RuntimeException | Error e) {
+                        totals.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private void build(String key, Definition<E> definition, Build<E> build,
+                       String hash, QueryPack queryPack, String[] projections) {
+        final Totals building = new Totals();
+        final Future<Totals> done = Future.future();
+        done.setHandler(result -> complete(key, definition, build, result));
+
+        final DynamoDBReadStream<E> stream;
+
+        try {
+            stream = db.getReader().readAllWithoutPaginationAsStream(hash, queryPack, projections, null);
+        } catch (RuntimeException | Error e) {
+            done.tryFail(e);
+
+            return;
+        }
+
+        stream.readAhead(true)
+                .exceptionHandler(done::tryFail)
+                .endHandler(v -> done.tryComplete(building))
+                .handler(item -> {
+                    try {
+                        building.apply(definition, item, false);
+                    } catch (RuntimeException | Error e) {
+                        stream.pause();
+                        done.tryFail(e);
+                    }
+                });
+    }
+
+    private void complete(String key, Definition<E> definition, Build<E> build, AsyncResult<Totals> result) {
+        AsyncResult<Aggregate> aggregate;
+
+        synchronized (this) {
+            try {
+                aggregate = install(key, definition, build, result);
+            } catch (RuntimeException | Error e) {
+                aggregate = Future.failedFuture(e);
+            } finally {
+                builds.remove(key);
+            }
+        }
+
+        final AsyncResult<Aggregate> completed = aggregate;
+
+        build.waiters.forEach(waiter -> waiter.handle(completed));
+    }
+
+    private AsyncResult<Aggregate> install(String key, Definition<E> definition, Build<E> build,
+                                           AsyncResult<Totals> result) {
+        if (result.failed()) return Future.failedFuture(result.cause());
+
+        final Totals built = result.result();
+
+        try {
+            build.records.forEach(entry -> built.apply(definition, entry.getKey(), entry.getValue()));
+        } catch (RuntimeException | Error e) {
+            return Future.failedFuture(e);
+        }
+
+        if (!build.stale && built.items.size() <= maxItems) totals.put(key, built);
+
+        return Future.succeededFuture(built.aggregate(definition.function));
+    }
+
+    private Totals getTotals(String key) {
+        Totals current = totals.get(key);
+
+        if (current != null && ttl > 0 && System.currentTimeMillis() - current.created > ttl) {
+            totals.remove(key);
+
+            return null;
+        }
+
+        return current;
+    }
+
+    private int indexOf(AggregateFunction aggregateFunction) {
+        for (int i = 0; i < definitions.size(); i++) {
+            if (definitions.get(i).matches(aggregateFunction)) return i;
+        }
+
+        return -1;
+    }
+
+    private static String rangeOf(DynamoDBModel item) {
+        return item.getRange() == null ? "" : item.getRange();
+    }
+
+    /**
+     * The totals of a materialized aggregate for a single hash key.
+     */
+    public static final class Aggregate {
+        private final long itemCount;
+        private final double sum;
+        private final Map<String, Object> groupedValues;
+
+        private Aggregate(long itemCount, double sum, Map<String, Object> groupedValues) {
+            this.itemCount = itemCount;
+            this.sum = sum;
+            this.groupedValues = groupedValues;
+        }
+
+        /**
+         * @return the number of items that contributed a value, every item for COUNT
+         */
+        public long getItemCount() {
+            return itemCount;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        /**
+         * @return the count or sum of every group, as nested maps with one level per grouping level
+         */
+        public Map<String, Object> getGroupedValues() {
+            return groupedValues;
+        }
+    }
+
+    private static final class Definition<E> {
+        private final AggregateFunction aggregateFunction;
+        private final AggregateFunctions function;
+        private final Function<E, Double> valueExtractor;
+        private final List<Function<E, String>> groupingKeys;
+
+        private Definition(AggregateFunction aggregateFunction, Function<E, Double> valueExtractor,
+                           List<Function<E, String>> groupingKeys) {
+            this.aggregateFunction = aggregateFunction;
+            this.function = aggregateFunction.getFunction();
+            this.valueExtractor = valueExtractor;
+            this.groupingKeys = groupingKeys;
+        }
+
+        private boolean matches(AggregateFunction other) {
+            if (other == null || other.getFunction() != function) return false;
+            if (function == AggregateFunctions.SUM &&
+                    !Objects.equals(aggregateFunction.getField(), other.getField())) return false;
+
+            final List<GroupingConfiguration> groupBy = aggregateFunction.getGroupBy();
+            final List<GroupingConfiguration> otherGroupBy = other.getGroupBy();
+
+            if (groupBy.size() != otherGroupBy.size()) return false;
+
+            for (int i = 0; i < groupBy.size(); i++) {
+                GroupingConfiguration level = groupBy.get(i);
+                GroupingConfiguration otherLevel = otherGroupBy.get(i);
+
+                if (!Objects.equals(level.getGroupBy(), otherLevel.getGroupBy()) ||
+                        !Objects.equals(level.getGroupByUnit(), otherLevel.getGroupByUnit()) ||
+                        !Objects.equals(level.getGroupByRange(), otherLevel.getGroupByRange())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private Contribution contributionOf(E item) {
+            final Double value = valueExtractor.apply(item);
+
+            if (value == null) return new Contribution(Collections.emptyList(), null);
+
+            return new Contribution(groupingKeys.stream()
+                    .map(key -> key.apply(item))
+                    .collect(toList()), value);
+        }
+    }
+
+    private static final class Contribution {
+        private final List<String> groupPath;
+        private final Double value;
+
+        private Contribution(List<String> groupPath, Double value) {
+            this.groupPath = groupPath;
+            this.value = value;
+        }
+    }
+
+    private static final class Group {
+        private long count;
+        private double sum;
+    }
+
+    private static final class Totals {
+        private final long created = System.currentTimeMillis();
+        private final Map<String, Contribution> items = new HashMap<>();
+        private final Map<List<String>, Group> groups = new HashMap<>();
+        private double sum;
+
+        private <E extends DynamoDBModel> void apply(Definition<E> definition, E item, boolean delete) {
+            final Contribution contribution = delete ? null : definition.contributionOf(item);
+            final Contribution previous = items.remove(rangeOf(item));
+
+            if (previous != null && previous.value != null) {
+                Group group = groups.get(previous.groupPath);
+                group.count--;
+                group.sum -= previous.value;
+                sum -= previous.value;
+
+                if (group.count == 0) groups.remove(previous.groupPath);
+            }
+
+            if (contribution != null) {
+                items.put(rangeOf(item), contribution);
+
+                if (contribution.value != null) {
+                    Group group = groups.computeIfAbsent(contribution.groupPath, k -> new Group());
+                    group.count++;
+                    group.sum += contribution.value;
+                    sum += contribution.value;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Aggregate aggregate(AggregateFunctions function) {
+            final Map<String, Object> groupedValues = new HashMap<>();
+
+            groups.forEach((groupPath, group) -> {
+                if (groupPath.isEmpty()) return;
+
+                Map<String, Object> level = groupedValues;
+
+                for (int i = 0; i < groupPath.size() - 1; i++) {
+                    level = (Map<String, Object>) level.computeIfAbsent(groupPath.get(i),
+                            k -> new HashMap<String, Object>());
+                }
+
+                level.put(groupPath.get(groupPath.size() - 1),
+                        function == AggregateFunctions.COUNT ? (Object) group.count : (Object) group.sum);
+            });
+
+            return new Aggregate(groups.values().stream().mapToLong(group -> group.count).sum(), sum, groupedValues);
+        }
+    }
+
+    private static final class Build<E> {
+        private final List<Handler<AsyncResult<Aggregate>>> waiters = new ArrayList<>();
+        private final List<Map.Entry<E, Boolean>> records = new ArrayList<>();
+        private boolean stale;
+
+        private Build(Handler<AsyncResult<Aggregate>> waiter) {
+            waiters.add(waiter);
+        }
+    }
+}
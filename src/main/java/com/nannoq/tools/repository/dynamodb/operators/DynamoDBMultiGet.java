@@ -0,0 +1,415 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import com.nannoq.tools.repository.repository.results.ItemResult;
+import io.vertx.core.*;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.*;
+
+/**
+ * This class defines a batch read across several DynamoDBRepositories. Every repository checks its object cache for
+ * its identifiers first, and the misses are fetched per table with BatchGetItem requests of at most 100 keys, in
+ * parallel across tables. The keys of a table are sent through the reader of a repository on that table, so its
+ * worker executor and rate limiter serve and are charged for the requests. The fetched records are cached by their
+ * own repository, and the results are returned per repository in the order of its identifiers.
+ *
+ * Repositories on the same table with the same projections share requests, with different projections they are
+ * fetched in separate requests, and repositories whose identifiers lack a required range are read with their own
+ * reads. Identifiers that do not exist or could not be read, including every identifier of a repository whose cache
+ * checks could not be prepared, are reported per repository instead of failing the multi get.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBMultiGet {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBMultiGet.class.getSimpleName());
+
+    private final Map<DynamoDBRepository<?>, Request<?>> requests = new LinkedHashMap<>();
+
+    /**
+     * Adds the identifiers to read from a repository, reading full records.
+     *
+     * @param repository the repository
+     * @param identifiers the identifiers, with a range if the model has a range key
+     * @param <T> the model type
+     * @return this multi get
+     */
+    public <T extends DynamoDBModel & Model & ETagable & Cacheable> DynamoDBMultiGet add(
+            DynamoDBRepository<T> repository, List<JsonObject> identifiers) {
+        return add(repository, identifiers, null);
+    }
+
+    /**
+     * Adds the identifiers to read from a repository.
+     *
+     * @param repository the repository
+     * @param identifiers the identifiers, with a range if the model has a range key
+     * @param projections the projections, null for full reads
+     * @param <T> the model type
+     * @return this multi get
+     */
+    public <T extends DynamoDBModel & Model & ETagable & Cacheable> DynamoDBMultiGet add(
+            DynamoDBRepository<T> repository, List<JsonObject> identifiers, String[] projections) {
+        if (requests.containsKey(repository)) {
+            throw new IllegalArgumentException("Repository for " + repository.getCollection() +
+                    " is already part of this multi get!");
+        }
+
+        requests.put(repository, new Request<>(repository, identifiers, projections));
+
+        return this;
+    }
+
+    /**
+     * Reads all added identifiers. The multi get itself only fails if it cannot be run at all, identifiers that do
+     * not exist or could not be read are reported per repository by the results.
+     *
+     * @param resultHandler the handler for the results per repository
+     */
+    public void execute(Handler<AsyncResult<Results>> resultHandler) {
+        final List<Request<?>> batched = new ArrayList<>();
+        final List<Future> prepareFutures = new ArrayList<>();
+        final List<Future> resultFutures = new ArrayList<>();
+
+        requests.values().forEach(request -> {
+            if (request.isBatchable()) {
+                batched.add(request);
+                prepareFutures.add(request.prepare());
+            } else {
+                resultFutures.add(request.readSeparately());
+            }
+        });
+
+        CompositeFuture.join(prepareFutures).setHandler(prepared -> {
+            final Map<String, List<Round>> roundsByTable = new LinkedHashMap<>();
+
+            for (Request<?> request : batched) {
+                if (request.batch == null) continue;
+
+                if (!request.batch.hasMisses()) {
+                    resultFutures.add(request.complete(null));
+
+                    continue;
+                }
+
+                final String table = request.repository.getCollection();
+                final KeysAndAttributes keys = request.keys();
+                final List<Round> rounds = roundsByTable.computeIfAbsent(table, k -> new ArrayList<>());
+                Round round = rounds.stream()
+                        .filter(existing -> mergeable(existing.keys, keys))
+                        .findFirst()
+                        .orElse(null);
+
+                if (round == null) {
+                    round = new Round(request.repository.getReader(), table);
+                    rounds.add(round);
+                }
+
+                round.add(request, keys);
+            }
+
+            final List<Round> allRounds = new ArrayList<>();
+            final List<Future> roundFutures = new ArrayList<>();
+
+            roundsByTable.values().forEach(allRounds::addAll);
+            allRounds.forEach(round -> {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Multi get fetching " + round.keys.getKeys().size() + " keys from " + round.table);
+                }
+
+                roundFutures.add(round.fetch());
+            });
+
+            CompositeFuture.join(roundFutures).setHandler(fetched -> {
+                allRounds.forEach(round -> round.requests.forEach(request -> {
+                    if (round.future.failed()) {
+                        logger.error("Error in multi get for " + round.table + "!", round.future.cause());
+
+                        resultFutures.add(request.fail());
+                    } else {
+                        resultFutures.add(request.complete(round.future.result().get(round.table)));
+                    }
+                }));
+
+                collect(resultFutures, resultHandler);
+            });
+        });
+    }
+
+    /**
+     * Keys for the same table can only share a request if they read the same attributes, as the projection of a
+     * table applies to all of its keys in a BatchGetItem request.
+     */
+    private static boolean mergeable(KeysAndAttributes existing, KeysAndAttributes keys) {
+        return existing == null ||
+                (Objects.equals(existing.getProjectionExpression(), keys.getProjectionExpression()) &&
+                        Objects.equals(existing.getExpressionAttributeNames(), keys.getExpressionAttributeNames()) &&
+                        Objects.equals(existing.getConsistentRead(), keys.getConsistentRead()));
+    }
+
+    private void collect(List<Future> resultFutures, Handler<AsyncResult<Results>> resultHandler) {
+        CompositeFuture.all(resultFutures).setHandler(res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(new Results(requests)));
+            }
+        });
+    }
+
+    /**
+     * The results of a multi get, per repository.
+     */
+    public static final class Results {
+        private final Map<DynamoDBRepository<?>, Request<?>> requests;
+
+        private Results(Map<DynamoDBRepository<?>, Request<?>> requests) {
+            this.requests = requests;
+        }
+
+        /**
+         * Returns the results of a repository in the order of its identifiers. Identifiers that do not exist or could
+         * not be read have a result with a null item.
+         *
+         * @param repository the repository
+         * @param <T> the model type
+         * @return the results, or null if the repository was not part of the multi get
+         */
+        @SuppressWarnings("unchecked")
+        public <T extends DynamoDBModel & Model & ETagable & Cacheable> List<ItemResult<T>> get(
+                DynamoDBRepository<T> repository) {
+            Request<?> request = requests.get(repository);
+
+            return request == null ? null : ((Request<T>) request).results;
+        }
+
+        /**
+         * @param repository the repository
+         * @return the identifiers of the repository that were read but do not exist, or null if the repository was
+         * not part of the multi get
+         */
+        public List<JsonObject> getMissing(DynamoDBRepository<?> repository) {
+            Request<?> request = requests.get(repository);
+            if (request == null) return null;
+
+            List<JsonObject> missing = new ArrayList<>();
+
+            for (int i = 0; i < request.identifiers.size(); i++) {
+                if (!request.failed.contains(i) && request.results.get(i).getItem() == null) {
+                    missing.add(request.identifiers.get(i));
+                }
+            }
+
+            return missing;
+        }
+
+        /**
+         * @param repository the repository
+         * @return the identifiers of the repository that could not be read, or null if the repository was not part
+         * of the multi get
+         */
+        public List<JsonObject> getFailed(DynamoDBRepository<?> repository) {
+            Request<?> request = requests.get(repository);
+            if (request == null) return null;
+
+            List<JsonObject> failed = new ArrayList<>();
+            request.failed.forEach(index -> failed.add(request.identifiers.get(index)));
+
+            return failed;
+        }
+    }
+
+    /**
+     * The keys of one or more repositories on a table that share a projection, fetched with the reader of the first.
+     */
+    private static final class Round {
+        private final DynamoDBReader<?> reader;
+        private final String table;
+        private final List<Request<?>> requests = new ArrayList<>();
+        private final Future<Map<String, List<Map<String, AttributeValue>>>> future = Future.future();
+        private KeysAndAttributes keys;
+
+        private Round(DynamoDBReader<?> reader, String table) {
+            this.reader = reader;
+            this.table = table;
+        }
+
+        private void add(Request<?> request, KeysAndAttributes more) {
+            requests.add(request);
+
+            if (keys == null) {
+                keys = more;
+            } else {
+                Set<Map<String, AttributeValue>> merged = new LinkedHashSet<>(keys.getKeys());
+                merged.addAll(more.getKeys());
+
+                keys = keys.clone().withKeys(merged);
+            }
+        }
+
+        private Future<Map<String, List<Map<String, AttributeValue>>>> fetch() {
+            reader.fetchBatch(Collections.singletonMap(table, keys), future.completer());
+
+            return future;
+        }
+    }
+
+    private static final class Request<T extends DynamoDBModel & Model & ETagable & Cacheable> {
+        private final DynamoDBRepository<T> repository;
+        private final List<JsonObject> identifiers;
+        private final String[] projections;
+        private final SortedSet<Integer> failed = new TreeSet<>();
+
+        private DynamoDBReader.BatchRead<T> batch;
+        private List<ItemResult<T>> results;
+
+        private Request(DynamoDBRepository<T> repository, List<JsonObject> identifiers, String[] projections) {
+            this.repository = repository;
+            this.identifiers = identifiers;
+            this.projections = projections;
+        }
+
+        private boolean isBatchable() {
+            return !identifiers.isEmpty() && (!repository.hasRangeKey() ||
+                    identifiers.stream().allMatch(id -> id.getString("range") != null));
+        }
+
+        private Future<Void> prepare() {
+            Future<Void> future = Future.future();
+
+            repository.getReader().prepareBatchRead(identifiers, projections, prepared -> {
+                if (prepared.failed()) {
+                    logger.error("Could not prepare multi get for " + repository.getCollection() + "!",
+                            prepared.cause());
+
+                    results = new ArrayList<>();
+                    identifiers.forEach(id -> results.add(new ItemResult<>(null, false)));
+                    for (int i = 0; i < identifiers.size(); i++) failed.add(i);
+
+                    future.fail(prepared.cause());
+                } else {
+                    batch = prepared.result();
+
+                    future.complete();
+                }
+            });
+
+            return future;
+        }
+
+        private KeysAndAttributes keys() {
+            return repository.getReader().batchKeys(batch);
+        }
+
+        private Future<Void> complete(List<Map<String, AttributeValue>> responses) {
+            Future<Void> future = Future.future();
+
+            if (!batch.hasMisses()) {
+                results = batch.results();
+                future.complete();
+            } else {
+                repository.getReader().completeBatchRead(batch, responses, res -> {
+                    if (res.failed()) {
+                        logger.error("Error in multi get for " + repository.getCollection() + "!", res.cause());
+
+                        fail().setHandler(future.completer());
+                    } else {
+                        results = res.result();
+                        future.complete();
+                    }
+                });
+            }
+
+            return future;
+        }
+
+        private Future<Void> fail() {
+            failed.addAll(batch.failMisses());
+            results = batch.results();
+
+            return Future.succeededFuture();
+        }
+
+        /**
+         * Reads every identifier on its own, so identifiers that do not exist are reported as missing and only the
+         * identifiers whose read failed are reported as failed.
+         */
+        private Future<Void> readSeparately() {
+            Future<Void> future = Future.future();
+            List<Future> reads = new ArrayList<>();
+
+            identifiers.forEach(id -> {
+                Future<ItemResult<T>> read = Future.future();
+
+                if (projections != null) {
+                    repository.read(id, projections, read.completer());
+                } else {
+                    repository.read(id, read.completer());
+                }
+
+                reads.add(read);
+            });
+
+            CompositeFuture.join(reads).setHandler(res -> {
+                results = new ArrayList<>();
+
+                for (int i = 0; i < reads.size(); i++) {
+                    @SuppressWarnings("unchecked")
+                    Future<ItemResult<T>> read = (Future<ItemResult<T>>) reads.get(i);
+
+                    if (read.succeeded()) {
+                        results.add(read.result());
+                    } else {
+                        results.add(new ItemResult<>(null, false));
+
+                        if (!(read.cause() instanceof ServiceException &&
+                                ((ServiceException) read.cause()).failureCode() == 404)) {
+                            logger.error("Error in multi get for " + identifiers.get(i).encode() + "!", read.cause());
+
+                            failed.add(i);
+                        }
+                    }
+                }
+
+                future.complete();
+            });
+
+            return future;
+        }
+    }
+}
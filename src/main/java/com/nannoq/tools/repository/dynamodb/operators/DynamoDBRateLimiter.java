@@ -0,0 +1,411 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.services.dynamodbv2.model.*;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines the adaptive rate limiter for the DynamoDBRepository. Every table and index has a token bucket
+ * with its own rate. Operations reserve a permit and are delayed until it is available instead of failing, unless the
+ * wait would exceed the max wait. The rate is halved on every throttle from DynamoDB and grows back additively while
+ * operations succeed. The permit of an operation is only a reservation, returned when the operation is done. The
+ * request handler on the client charges every request sent, on any thread, with its consumed capacity, and at least one
+ * permit, so an operation sending many requests pays for all of them. The retry policy on the client counts every
+ * throttled attempt, so the rate reacts to throttling while the client is still retrying, not only once it gives up.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBRateLimiter.class.getSimpleName());
+
+    private final Vertx vertx;
+    private final double initialRate;
+    private final double minRate;
+    private final double maxRate;
+    private final long maxWait;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final RequestHandler2 requestHandler = new ChargingRequestHandler();
+    private final RetryPolicy retryPolicy = new RetryPolicy(this::shouldRetry,
+            PredefinedRetryPolicies.DYNAMODB_DEFAULT_BACKOFF_STRATEGY,
+            PredefinedRetryPolicies.DYNAMODB_DEFAULT_MAX_ERROR_RETRY, true);
+
+    /**
+     * @param vertx the vertx instance
+     * @param initialRate the starting rate in operations per second
+     * @param minRate the lowest rate a bucket is reduced to on throttling
+     * @param maxRate the highest rate a bucket grows to
+     * @param maxWait the longest time in milliseconds an operation is delayed before it is rejected
+     */
+    public DynamoDBRateLimiter(Vertx vertx, double initialRate, double minRate, double maxRate, long maxWait) {
+        this.vertx = vertx;
+        this.initialRate = initialRate;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Reserves a permit for the key, calling the handler when the permit is available. Fails with a 503 if the wait
+     * would be longer than the max wait.
+     *
+     * @param key the table or table/index
+     * @param resultHandler the handler to run the operation in
+     */
+    public void acquire(String key, Handler<AsyncResult<Void>> resultHandler) {
+        Bucket bucket = bucket(key);
+        long wait = bucket.reserve(1.0, TimeUnit.MILLISECONDS.toNanos(maxWait));
+
+        if (wait < 0) {
+            logger.warn("Rate limit for " + key + " reached at " + bucket.rate + " ops/s, rejecting operation!");
+
+            resultHandler.handle(ServiceException.fail(503, "Throughput limit reached for " + key + "!",
+                    bucket.toJson()));
+        } else {
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(wait);
+
+            if (waitMillis < 1) {
+                resultHandler.handle(Future.succeededFuture());
+            } else {
+                vertx.setTimer(waitMillis, id -> resultHandler.handle(Future.succeededFuture()));
+            }
+        }
+    }
+
+    /**
+     * Reserves a permit for the key, runs the operation when it is available and returns the permit when the operation
+     * is done. The outcome of the operation adjusts the rate of the key.
+     *
+     * @param key the table or table/index
+     * @param operation the operation, completing the given future when done
+     * @param resultHandler the handler for the result of the operation
+     * @param <T> the result type
+     */
+    public <T> void execute(String key, Handler<Future<T>> operation, Handler<AsyncResult<T>> resultHandler) {
+        acquire(key, permit -> {
+            if (permit.failed()) {
+                resultHandler.handle(Future.failedFuture(permit.cause()));
+            } else {
+                Future<T> future = Future.future();
+                future.setHandler(result -> {
+                    release(key);
+
+                    if (result.failed() && isThrottle(result.cause())) {
+                        onThrottle(key);
+                    } else {
+                        onSuccess(key);
+                    }
+
+                    resultHandler.handle(result);
+                });
+
+                try {
+                    operation.handle(future);
+                } catch (RuntimeException e) {
+                    future.tryFail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a permit reserved with acquire, once the requests of the operation have been charged.
+     *
+     * @param key the table or table/index
+     */
+    public void release(String key) {
+        bucket(key).credit(1.0);
+    }
+
+    /**
+     * Debits a request sent to DynamoDB, by its consumed capacity and at least one permit.
+     *
+     * @param key the table or table/index
+     * @param capacityUnits the consumed capacity units of the request
+     */
+    public void charge(String key, double capacityUnits) {
+        bucket(key).debit(Math.max(1.0, capacityUnits));
+    }
+
+    /**
+     * @return the request handler charging every request sent by the client
+     */
+    public RequestHandler2 getRequestHandler() {
+        return requestHandler;
+    }
+
+    /**
+     * @return the DynamoDB default retry policy, reducing the rate of the table or index on every throttled attempt
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    private boolean shouldRetry(AmazonWebServiceRequest originalRequest, AmazonClientException exception,
+                                int retriesAttempted) {
+        if (isThrottle(exception)) keysOf(originalRequest).forEach(this::onThrottle);
+
+        return PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(originalRequest, exception,
+                retriesAttempted);
+    }
+
+    private static List<String> keysOf(AmazonWebServiceRequest request) {
+        if (request instanceof GetItemRequest) {
+            return Collections.singletonList(((GetItemRequest) request).getTableName());
+        } else if (request instanceof QueryRequest) {
+            return Collections.singletonList(keyOf(((QueryRequest) request).getTableName(),
+                    ((QueryRequest) request).getIndexName()));
+        } else if (request instanceof ScanRequest) {
+            return Collections.singletonList(keyOf(((ScanRequest) request).getTableName(),
+                    ((ScanRequest) request).getIndexName()));
+        } else if (request instanceof PutItemRequest) {
+            return Collections.singletonList(((PutItemRequest) request).getTableName());
+        } else if (request instanceof UpdateItemRequest) {
+            return Collections.singletonList(((UpdateItemRequest) request).getTableName());
+        } else if (request instanceof DeleteItemRequest) {
+            return Collections.singletonList(((DeleteItemRequest) request).getTableName());
+        } else if (request instanceof BatchGetItemRequest) {
+            return new ArrayList<>(((BatchGetItemRequest) request).getRequestItems().keySet());
+        } else if (request instanceof BatchWriteItemRequest) {
+            return new ArrayList<>(((BatchWriteItemRequest) request).getRequestItems().keySet());
+        }
+
+        return Collections.emptyList();
+    }
+
+    private static String keyOf(String table, String index) {
+        return index == null ? table : table + "/" + index;
+    }
+
+    public void onSuccess(String key) {
+        bucket(key).increase();
+    }
+
+    public void onThrottle(String key) {
+        Bucket bucket = bucket(key);
+        bucket.decrease();
+
+        logger.warn("Throttled on " + key + ", reducing rate to " + bucket.rate + " ops/s");
+    }
+
+    public double getRate(String key) {
+        return bucket(key).rate;
+    }
+
+    /**
+     * @return the current rate, throttle count and rejection count per table and index
+     */
+    public JsonObject getMetrics() {
+        JsonObject metrics = new JsonObject();
+        buckets.forEach((key, bucket) -> metrics.put(key, bucket.toJson()));
+
+        return metrics;
+    }
+
+    /**
+     * @param throwable the failure of an operation
+     * @return true if the failure, or one of its causes, is a throttle from DynamoDB
+     */
+    public static boolean isThrottle(Throwable throwable) {
+        Throwable cause = throwable;
+
+        while (cause != null) {
+            if (cause instanceof ProvisionedThroughputExceededException) return true;
+
+            if (cause instanceof AmazonServiceException) {
+                String errorCode = ((AmazonServiceException) cause).getErrorCode();
+
+                if ("ProvisionedThroughputExceededException".equals(errorCode) ||
+                        "ThrottlingException".equals(errorCode)) {
+                    return true;
+                }
+            }
+
+            cause = cause.getCause() == cause ? null : cause.getCause();
+        }
+
+        return false;
+    }
+
+    private Bucket bucket(String key) {
+        return buckets.computeIfAbsent(key, k -> new Bucket());
+    }
+
+    private class Bucket {
+        private double rate = initialRate;
+        private double storedPermits = 0.0;
+        private long nextFree = System.nanoTime();
+        private long throttles = 0L;
+        private long rejected = 0L;
+
+        private synchronized long reserve(double permits, long maxWaitNanos) {
+            long now = System.nanoTime();
+            refill(now);
+
+            long wait = Math.max(0L, nextFree - now);
+
+            if (wait > maxWaitNanos) {
+                rejected++;
+
+                return -1L;
+            }
+
+            take(permits);
+
+            return wait;
+        }
+
+        private synchronized void debit(double permits) {
+            refill(System.nanoTime());
+            take(permits);
+        }
+
+        private synchronized void credit(double permits) {
+            long now = System.nanoTime();
+            refill(now);
+
+            long returned = Math.min(Math.max(0L, nextFree - now),
+                    (long) (permits / rate * TimeUnit.SECONDS.toNanos(1)));
+            nextFree -= returned;
+            storedPermits = Math.min(rate,
+                    storedPermits + permits - returned * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private synchronized void increase() {
+            rate = Math.min(maxRate, rate + Math.max(1.0, rate * 0.05));
+        }
+
+        private synchronized void decrease() {
+            throttles++;
+            rate = Math.max(minRate, rate / 2.0);
+            storedPermits = 0.0;
+        }
+
+        private void refill(long now) {
+            if (now > nextFree) {
+                storedPermits = Math.min(rate, storedPermits + (now - nextFree) * rate / TimeUnit.SECONDS.toNanos(1));
+                nextFree = now;
+            }
+        }
+
+        private void take(double permits) {
+            double fromStored = Math.min(permits, storedPermits);
+            storedPermits -= fromStored;
+            nextFree += (long) ((permits - fromStored) / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private synchronized JsonObject toJson() {
+            return new JsonObject()
+                    .put("rate", rate)
+                    .put("throttles", throttles)
+                    .put("rejected", rejected);
+        }
+    }
+
+    private class ChargingRequestHandler extends RequestHandler2 {
+        @Override
+        public AmazonWebServiceRequest beforeMarshalling(AmazonWebServiceRequest request) {
+            DynamoDBCapacityRegistry.returnConsumedCapacity(request);
+
+            return request;
+        }
+
+        @Override
+        public void afterResponse(Request<?> request, Response<?> response) {
+            try {
+                Object original = request.getOriginalRequest();
+                Object result = response == null ? null : response.getAwsResponse();
+
+                if (result instanceof GetItemResult) {
+                    charge(((GetItemRequest) original).getTableName(), null,
+                            ((GetItemResult) result).getConsumedCapacity());
+                } else if (result instanceof QueryResult) {
+                    charge(((QueryRequest) original).getTableName(), ((QueryRequest) original).getIndexName(),
+                            ((QueryResult) result).getConsumedCapacity());
+                } else if (result instanceof ScanResult) {
+                    charge(((ScanRequest) original).getTableName(), ((ScanRequest) original).getIndexName(),
+                            ((ScanResult) result).getConsumedCapacity());
+                } else if (result instanceof PutItemResult) {
+                    charge(((PutItemRequest) original).getTableName(), null,
+                            ((PutItemResult) result).getConsumedCapacity());
+                } else if (result instanceof UpdateItemResult) {
+                    charge(((UpdateItemRequest) original).getTableName(), null,
+                            ((UpdateItemResult) result).getConsumedCapacity());
+                } else if (result instanceof DeleteItemResult) {
+                    charge(((DeleteItemRequest) original).getTableName(), null,
+                            ((DeleteItemResult) result).getConsumedCapacity());
+                } else if (result instanceof BatchGetItemResult) {
+                    chargeTables(((BatchGetItemRequest) original).getRequestItems(),
+                            ((BatchGetItemResult) result).getConsumedCapacity());
+                } else if (result instanceof BatchWriteItemResult) {
+                    chargeTables(((BatchWriteItemRequest) original).getRequestItems(),
+                            ((BatchWriteItemResult) result).getConsumedCapacity());
+                }
+            } catch (Exception e) {
+                logger.error("Unable to charge request!", e);
+            }
+        }
+
+        private void charge(String table, String index, ConsumedCapacity capacity) {
+            if (table == null) return;
+
+            DynamoDBRateLimiter.this.charge(keyOf(table, index),
+                    capacity == null || capacity.getCapacityUnits() == null ? 1.0 : capacity.getCapacityUnits());
+        }
+
+        private void chargeTables(Map<String, ?> requestItems, List<ConsumedCapacity> capacities) {
+            if (capacities != null && !capacities.isEmpty()) {
+                capacities.forEach(capacity -> charge(capacity.getTableName(), null, capacity));
+            } else if (requestItems != null) {
+                requestItems.keySet().forEach(table -> charge(table, null, null));
+            }
+        }
+    }
+}
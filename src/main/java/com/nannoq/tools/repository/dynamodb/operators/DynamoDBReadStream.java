@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * This class defines a back-pressured stream over a DynamoDB scan or query. Pages are fetched one at a time, and only
+ * when the previous page has been drained by the consumer, so at most one page of items is held in memory. With read
+ * ahead enabled, the next page is fetched while the current one is delivered, holding at most two pages. Pausing the
+ * stream stops both delivery and fetching until it is resumed.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBReadStream<E extends DynamoDBModel & Model & ETagable & Cacheable> implements ReadStream<E> {
+    private final BiConsumer<Map<String, AttributeValue>, Handler<AsyncResult<Page<E>>>> pageLoader;
+    private final Deque<E> buffer = new ArrayDeque<>();
+
+    private Handler<E> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    private Map<String, AttributeValue> lastEvaluatedKey;
+    private boolean readAhead;
+    private boolean paused;
+    private boolean fetching;
+    private boolean exhausted;
+    private boolean ended;
+
+    /**
+     * @param pageLoader loads the page starting at the given key, which is null for the first page
+     */
+    public DynamoDBReadStream(BiConsumer<Map<String, AttributeValue>, Handler<AsyncResult<Page<E>>>> pageLoader) {
+        this.pageLoader = pageLoader;
+    }
+
+    @Override
+    public DynamoDBReadStream<E> exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+
+        return this;
+    }
+
+    @Override
+    public DynamoDBReadStream<E> handler(Handler<E> handler) {
+        this.handler = handler;
+
+        if (handler != null) drain();
+
+        return this;
+    }
+
+    @Override
+    public DynamoDBReadStream<E> pause() {
+        paused = true;
+
+        return this;
+    }
+
+    @Override
+    public DynamoDBReadStream<E> resume() {
+        if (paused) {
+            paused = false;
+
+            drain();
+        }
+
+        return this;
+    }
+
+    @Override
+    public DynamoDBReadStream<E> endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+
+        return this;
+    }
+
+    /**
+     * Fetches the next page as soon as a page arrives, so delivery of a page overlaps with fetching the next.
+     *
+     * @param readAhead whether to read one page ahead
+     * @return this stream
+     */
+    public DynamoDBReadStream<E> readAhead(boolean readAhead) {
+        this.readAhead = readAhead;
+
+        return this;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void drain() {
+        while (!paused && !ended && handler != null && !buffer.isEmpty()) {
+            handler.handle(buffer.poll());
+        }
+
+        if (paused || ended || handler == null || !buffer.isEmpty()) return;
+
+        if (exhausted) {
+            ended = true;
+
+            if (endHandler != null) endHandler.handle(null);
+        } else if (!fetching) {
+            fetch();
+        }
+    }
+
+    private void fetch() {
+        fetching = true;
+
+        pageLoader.accept(lastEvaluatedKey, pageResult -> {
+            fetching = false;
+
+            if (pageResult.failed()) {
+                ended = true;
+
+                if (exceptionHandler != null) exceptionHandler.handle(pageResult.cause());
+
+                return;
+            }
+
+            Page<E> page = pageResult.result();
+            lastEvaluatedKey = page.getLastEvaluatedKey();
+            exhausted = lastEvaluatedKey == null || lastEvaluatedKey.isEmpty();
+
+            buffer.addAll(page.getItems());
+
+            if (readAhead && !exhausted && !paused && !ended) fetch();
+
+            drain();
+        });
+    }
+
+    public static class Page<E> {
+        private final List<E> items;
+        private final Map<String, AttributeValue> lastEvaluatedKey;
+
+        public Page(List<E> items, Map<String, AttributeValue> lastEvaluatedKey) {
+            this.items = items;
+            this.lastEvaluatedKey = lastEvaluatedKey;
+        }
+
+        public List<E> getItems() {
+            return items;
+        }
+
+        public Map<String, AttributeValue> getLastEvaluatedKey() {
+            return lastEvaluatedKey;
+        }
+    }
+}
@@ -29,6 +29,10 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.datamodeling.*;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
 import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
 import com.nannoq.tools.repository.models.Cacheable;
 import com.nannoq.tools.repository.models.DynamoDBModel;
@@ -43,6 +47,7 @@ import com.nannoq.tools.repository.utils.ItemList;
 import com.nannoq.tools.repository.utils.OrderByParameter;
 import com.nannoq.tools.repository.utils.QueryPack;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -55,7 +60,10 @@ import io.vertx.serviceproxy.ServiceException;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.nannoq.tools.repository.dynamodb.DynamoDBRepository.PAGINATION_INDEX;
 import static com.nannoq.tools.repository.repository.Repository.MULTIPLE_KEY;
@@ -72,6 +80,7 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
     private final Class<E> TYPE;
     private final Vertx vertx;
+    private final DynamoDBWorkerExecutor executor;
     private final DynamoDBRepository<E> db;
     private final DynamoDBMapper DYNAMO_DB_MAPPER;
 
@@ -85,8 +94,11 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
     private final DynamoDBParameters<E> dbParams;
     private final CacheManager<E> cacheManager;
     private final ETagManager<E> etagManager;
+    private final Map<String, List<Handler<?>>> inFlightReads;
+    private final AtomicInteger inFlightPrefetches = new AtomicInteger();
 
-    private final int coreNum = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int MAX_BATCH_GET_SIZE = 100;
+    private static final int MAX_BATCH_GET_RETRIES = 10;
 
     public DynamoDBReader(Class<E> type, Vertx vertx, DynamoDBRepository<E> db, String COLLECTION,
                           String HASH_IDENTIFIER, String IDENTIFIER, String PAGINATION_IDENTIFIER,
@@ -95,6 +107,7 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         TYPE = type;
         this.vertx = vertx;
         this.db = db;
+        this.executor = db.getWorkerExecutor();
         this.COLLECTION = COLLECTION;
         this.HASH_IDENTIFIER = HASH_IDENTIFIER;
         this.IDENTIFIER = IDENTIFIER;
@@ -104,6 +117,7 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         this.dbParams = dbParams;
         this.cacheManager = cacheManager;
         this.etagManager = etagManager;
+        this.inFlightReads = new HashMap<>();
     }
 
     public void read(JsonObject identifiers, Handler<AsyncResult<ItemResult<E>>> resultHandler) {
@@ -131,19 +145,7 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
                 if (logger.isDebugEnabled()) { logger.debug("Served cached version of: " + cacheId); }
             } else {
-                vertx.<E>executeBlocking(future -> {
-                    E item = fetchItem(startTime, preOperationTime, operationTime, hash, range, true);
-
-                    if (item != null && cacheManager.isObjectCacheAvailable()) {
-                        cacheManager.replaceObjectCache(cacheBase, item, future, new String[]{});
-                    } else {
-                        if (item == null) {
-                            future.fail(new NoSuchElementException());
-                        } else {
-                            future.complete(item);
-                        }
-                    }
-                }, false, readResult -> {
+                Handler<AsyncResult<E>> readHandler = readResult -> {
                     if (readResult.failed()) {
                         doReadResult(postOperationTime, startTime, readResult, resultHandler);
                     } else {
@@ -151,6 +153,43 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
                         returnTimedResult(readResult, preOperationTime, operationTime, postOperationTime, resultHandler);
                     }
+                };
+
+                loadOnce(cacheId, readHandler, loadHandler -> {
+                    if (db.isAsyncExecutionEnabled()) {
+                        preOperationTime.set(System.nanoTime() - startTime.get());
+
+                        hedged(range, fetch -> db.getAsyncExecutor().load(hash, range, true, fetch), loadResult -> {
+                            operationTime.set(System.nanoTime() - startTime.get());
+                            Future<E> future = Future.future();
+                            future.setHandler(loadHandler);
+
+                            if (loadResult.failed()) {
+                                future.fail(loadResult.cause());
+                            } else {
+                                cacheItem(cacheBase, loadResult.result(), new String[]{}, future);
+                            }
+                        });
+                    } else if (isHedged(range)) {
+                        hedged(range, fetch -> executor.<E>executeBlocking(future -> future.complete(
+                                fetchItem(startTime, preOperationTime, operationTime, hash, range, true)),
+                                false, fetch), fetchResult -> {
+                            Future<E> future = Future.future();
+                            future.setHandler(loadHandler);
+
+                            if (fetchResult.failed()) {
+                                future.fail(fetchResult.cause());
+                            } else {
+                                cacheItem(cacheBase, fetchResult.result(), new String[]{}, future);
+                            }
+                        });
+                    } else {
+                        executor.<E>executeBlocking(future -> {
+                            E item = fetchItem(startTime, preOperationTime, operationTime, hash, range, true);
+
+                            cacheItem(cacheBase, item, new String[]{}, future);
+                        }, false, loadHandler);
+                    }
                 });
             }
         });
@@ -182,39 +221,250 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
                 if (logger.isDebugEnabled()) { logger.debug("Served cached version of: " + cacheId); }
             } else {
-                vertx.<E>executeBlocking(future -> {
-                    E item = fetchItem(startTime, preOperationTime, operationTime, hash, range, consistent);
+                Handler<AsyncResult<E>> readHandler = readResult -> {
+                    if (readResult.failed()) {
+                        doReadResult(postOperationTime, startTime, readResult, resultHandler);
+                    } else {
+                        postOperationTime.set(System.nanoTime() - operationTime.get());
 
-                    if (item != null) {
-                        item.generateAndSetEtag(new ConcurrentHashMap<>());
+                        returnTimedResult(readResult, preOperationTime, operationTime, postOperationTime, resultHandler);
                     }
-
-                    if (etagManager != null) {
-                        etagManager.setProjectionEtags(projections, identifiers.encode().hashCode(), item);
+                };
+
+                loadOnce(cacheId + (consistent ? "/consistent" : ""), readHandler, loadHandler -> {
+                    if (db.isAsyncExecutionEnabled()) {
+                        preOperationTime.set(System.nanoTime() - startTime.get());
+
+                        hedged(range, fetch -> db.getAsyncExecutor().load(hash, range, consistent, projections,
+                                fetch), loadResult -> {
+                            operationTime.set(System.nanoTime() - startTime.get());
+                            Future<E> future = Future.future();
+                            future.setHandler(loadHandler);
+
+                            if (loadResult.failed()) {
+                                future.fail(loadResult.cause());
+                            } else {
+                                cacheProjectedItem(identifiers, cacheId, projections, loadResult.result(), future);
+                            }
+                        });
+                    } else if (isHedged(range)) {
+                        hedged(range, fetch -> executor.<E>executeBlocking(future -> future.complete(
+                                projections != null && projections.length > 0 ?
+                                        fetchProjectedItem(startTime, preOperationTime, operationTime,
+                                                hash, range, consistent, projections) :
+                                        fetchItem(startTime, preOperationTime, operationTime, hash, range, consistent)),
+                                false, fetch), fetchResult -> {
+                            Future<E> future = Future.future();
+                            future.setHandler(loadHandler);
+
+                            if (fetchResult.failed()) {
+                                future.fail(fetchResult.cause());
+                            } else {
+                                cacheProjectedItem(identifiers, cacheId, projections, fetchResult.result(), future);
+                            }
+                        });
+                    } else {
+                        executor.<E>executeBlocking(future -> {
+                            E item = projections != null && projections.length > 0 ?
+                                    fetchProjectedItem(startTime, preOperationTime, operationTime,
+                                            hash, range, consistent, projections) :
+                                    fetchItem(startTime, preOperationTime, operationTime, hash, range, consistent);
+
+                            cacheProjectedItem(identifiers, cacheId, projections, item, future);
+                        }, false, loadHandler);
                     }
+                });
+            }
+        });
+    }
 
-                    if (item != null && cacheManager.isObjectCacheAvailable()) {
-                        cacheManager.replaceObjectCache(cacheId, item, future, projections == null ? new String[]{} : projections);
-                    } else {
-                        if (item == null) {
-                            future.fail(new NoSuchElementException());
+    private boolean isHedged(String range) {
+        return db.getHedgedReads() != null && (!db.hasRangeKey() || range != null);
+    }
+
+    /**
+     * Runs a fetch through the hedged reads of the repository when it is a point read and hedging is enabled, and
+     * directly otherwise. Blocking fetches are not hedged while the worker queue has reads waiting, as a hedge would
+     * only queue behind them.
+     */
+    private void hedged(String range, Consumer<Handler<AsyncResult<E>>> fetch, Handler<AsyncResult<E>> resultHandler) {
+        if (isHedged(range)) {
+            db.getHedgedReads().read(fetch,
+                    () -> db.isAsyncExecutionEnabled() || executor.getQueueDepth() == 0, resultHandler);
+        } else {
+            fetch.accept(resultHandler);
+        }
+    }
+
+    /**
+     * Collapses concurrent cache misses for the same key into a single load. The first miss runs the loader, and every
+     * miss arriving while it is in flight waits for its result. The first caller receives the loaded item, the others
+     * receive copies of it, so no caller shares an instance with another.
+     *
+     * @param flightKey the key of the load, the cache id of the read
+     * @param readHandler the handler of this read
+     * @param loader runs the load, calling the given handler with the loaded and cached item
+     */
+    private void loadOnce(String flightKey, Handler<AsyncResult<E>> readHandler,
+                          Consumer<Handler<AsyncResult<E>>> loader) {
+        loadOnce(flightKey, readHandler, loader, this::copyItem);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void loadOnce(String flightKey, Handler<AsyncResult<T>> readHandler,
+                              Consumer<Handler<AsyncResult<T>>> loader, Function<T, T> copier) {
+        synchronized (inFlightReads) {
+            List<Handler<?>> waiting = inFlightReads.get(flightKey);
+
+            if (waiting != null) {
+                if (logger.isDebugEnabled()) { logger.debug("Joining in flight load of: " + flightKey); }
+
+                waiting.add(readHandler);
+
+                return;
+            }
+
+            inFlightReads.put(flightKey, new ArrayList<>());
+        }
+
+        try {
+            loader.accept(loadResult -> {
+                List<Handler<?>> waiting;
+
+                synchronized (inFlightReads) {
+                    waiting = inFlightReads.remove(flightKey);
+                }
+
+                readHandler.handle(loadResult);
+
+                if (waiting != null) {
+                    waiting.forEach(handler -> {
+                        if (loadResult.failed()) {
+                            ((Handler<AsyncResult<T>>) handler).handle(Future.failedFuture(loadResult.cause()));
                         } else {
-                            future.complete(item);
+                            ((Handler<AsyncResult<T>>) handler).handle(
+                                    Future.succeededFuture(copier.apply(loadResult.result())));
                         }
-                    }
-                }, false, readResult -> {
-                    if (readResult.failed()) {
-                        doReadResult(postOperationTime, startTime, readResult, resultHandler);
+                    });
+                }
+            });
+        } catch (Exception e) {
+            List<Handler<?>> waiting;
+
+            synchronized (inFlightReads) {
+                waiting = inFlightReads.remove(flightKey);
+            }
+
+            readHandler.handle(Future.failedFuture(e));
+
+            if (waiting != null) {
+                waiting.forEach(handler -> ((Handler<AsyncResult<T>>) handler).handle(Future.failedFuture(e)));
+            }
+        }
+    }
+
+    private E copyItem(E item) {
+        return item == null ? null : Json.decodeValue(Json.encode(item), TYPE);
+    }
+
+    private List<E> copyItems(List<E> items) {
+        return items.stream()
+                .map(this::copyItem)
+                .collect(toList());
+    }
+
+    /**
+     * Serves an unpaginated read from the item list cache. On a miss, concurrent identical reads are collapsed into
+     * a single load, and the result is cached as an item list, which is purged with the rest of the item list cache
+     * when the model is written. The cache id carries the write generation of the repository, so a load that was in
+     * flight when the model was written is cached under a generation that is no longer read.
+     *
+     * @param cacheId the cache id of the read, derived from everything that determines its result
+     * @param projections the projections of the read
+     * @param resultHandler the handler of this read
+     * @param loader runs the read against DynamoDB
+     */
+    private void readListCached(String cacheId, String[] projections, Handler<AsyncResult<List<E>>> resultHandler,
+                                Consumer<Handler<AsyncResult<List<E>>>> loader) {
+        if (!db.isUnpaginatedCacheEnabled()) {
+            loader.accept(resultHandler);
+
+            return;
+        }
+
+        final String[] finalProjections = projections == null ? new String[]{} : projections;
+        final String generationCacheId = cacheId + "/" + db.getWriteGeneration();
+
+        vertx.<ItemList<E>>executeBlocking(future -> cacheManager.checkItemListCache(generationCacheId, finalProjections,
+                result -> {
+                    if (result.failed()) {
+                        future.fail(result.cause());
                     } else {
-                        postOperationTime.set(System.nanoTime() - operationTime.get());
+                        future.complete(result.result());
+                    }
+                }), false, checkResult -> {
+            if (checkResult.succeeded()) {
+                if (logger.isDebugEnabled()) { logger.debug("Served cached version of: " + generationCacheId); }
 
-                        returnTimedResult(readResult, preOperationTime, operationTime, postOperationTime, resultHandler);
+                resultHandler.handle(Future.succeededFuture(checkResult.result().getItems()));
+            } else {
+                loadOnce(generationCacheId, resultHandler, loadHandler -> loader.accept(loadResult -> {
+                    if (loadResult.failed() || !cacheManager.isItemListCacheAvailable()) {
+                        loadHandler.handle(loadResult);
+
+                        return;
                     }
-                });
+
+                    List<E> items = loadResult.result();
+                    String content = new ItemList<>(generationCacheId, "END_OF_LIST", items.size(), items,
+                            finalProjections)
+                            .toJson(finalProjections)
+                            .encode();
+
+                    cacheManager.replaceItemListCache(content, () -> generationCacheId, cacheRes -> {
+                        if (cacheRes.failed()) logger.warn("Unable to cache " + generationCacheId, cacheRes.cause());
+
+                        loadHandler.handle(loadResult);
+                    });
+                }), this::copyItems);
             }
         });
     }
 
+    private String listCacheId(String operation, Object... parts) {
+        StringJoiner cacheId = new StringJoiner("/", TYPE.getSimpleName() + "_" + operation + "/", "");
+        Arrays.stream(parts).forEach(part -> cacheId.add(part == null ? "null" :
+                part instanceof String ? (String) part :
+                part instanceof String[] ? Arrays.toString((String[]) part) : Json.encode(part)));
+
+        return cacheId.toString();
+    }
+
+    private void cacheProjectedItem(JsonObject identifiers, String cacheId, String[] projections,
+                                    E item, Future<E> future) {
+        if (item != null) {
+            item.generateAndSetEtag(new ConcurrentHashMap<>());
+        }
+
+        if (etagManager != null) {
+            etagManager.setProjectionEtags(projections, identifiers.encode().hashCode(), item);
+        }
+
+        cacheItem(cacheId, item, projections == null ? new String[]{} : projections, future);
+    }
+
+    private void cacheItem(String cacheId, E item, String[] projections, Future<E> future) {
+        if (item != null && cacheManager.isObjectCacheAvailable()) {
+            cacheManager.replaceObjectCache(cacheId, item, future, projections);
+        } else {
+            if (item == null) {
+                future.fail(new NoSuchElementException());
+            } else {
+                future.complete(item);
+            }
+        }
+    }
+
     private void doReadResult(AtomicLong postOperationTime, AtomicLong startTime, AsyncResult<E> readResult,
                               Handler<AsyncResult<ItemResult<E>>> resultHandler) {
         if (readResult.cause().getClass() == NoSuchElementException.class) {
@@ -248,9 +498,56 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
             }
         } catch (Exception e) {
             logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+            throw fetchFailure(e);
         }
+    }
 
-        return null;
+    /**
+     * Fetch errors must fail the read rather than look like a missing item, so they are not cached as misses and
+     * are not taken as a response by hedged reads.
+     */
+    private RuntimeException fetchFailure(Exception e) {
+        return e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+    }
+
+    /**
+     * Reads only the projected attributes of an item, as a partially populated model. Point reads use GetItem, and
+     * reads on a ranged model without a range use a query limited to one item.
+     */
+    private E fetchProjectedItem(AtomicLong startTime, AtomicLong preOperationTime, AtomicLong operationTime,
+                                 String hash, String range, boolean consistent, String[] projections) {
+        try {
+            DynamoDBAsyncExecutor<E> requests = db.getAsyncExecutor();
+            Map<String, AttributeValue> item;
+            long timeBefore = System.currentTimeMillis();
+
+            preOperationTime.set(System.nanoTime() - startTime.get());
+
+            if (!db.hasRangeKey() || range != null) {
+                item = db.getDynamoDbClient()
+                        .getItem(requests.getItemRequest(hash, range, consistent, projections))
+                        .getItem();
+            } else {
+                List<Map<String, AttributeValue>> items = db.getDynamoDbClient()
+                        .query(requests.hashQueryRequest(hash, consistent, projections).withLimit(1))
+                        .getItems();
+
+                item = items == null || items.isEmpty() ? null : items.get(0);
+            }
+
+            operationTime.set(System.nanoTime() - startTime.get());
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Projected results received in: " + (System.currentTimeMillis() - timeBefore) + " ms");
+            }
+
+            return item == null ? null : requests.unconvert(item);
+        } catch (Exception e) {
+            logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+            throw fetchFailure(e);
+        }
     }
 
     private E fetchHashAndRangeItem(String hash, String range,
@@ -305,14 +602,360 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         resultHandler.handle(Future.succeededFuture(eItemResult));
     }
 
+    /**
+     * Reads the records for the identifiers. The object cache is checked for every identifier at once, and the misses
+     * are fetched with BatchGetItem in chunks of 100 keys that run in parallel, retrying unprocessed keys. Fetched
+     * records are cached and given projection etags the same way as single reads. The results are returned in the
+     * order of the identifiers, with a null item for identifiers that do not exist.
+     *
+     * @param identifiers the identifiers, all with a range if the model has a range key
+     * @param projections the projections, null for full reads
+     * @param resultHandler the handler for the results
+     */
+    @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
+    public void batchRead(List<JsonObject> identifiers, String[] projections,
+                          Handler<AsyncResult<List<ItemResult<E>>>> resultHandler) {
+        prepareBatchRead(identifiers, projections, prepared -> {
+            final BatchRead<E> batch = prepared.result();
+
+            if (!batch.hasMisses()) {
+                resultHandler.handle(Future.succeededFuture(batch.results));
+
+                return;
+            }
+
+            fetchBatch(Collections.singletonMap(COLLECTION, batchKeys(batch)), fetchResult -> {
+                if (fetchResult.failed()) {
+                    logger.error("Error in batchRead!", fetchResult.cause());
+
+                    resultHandler.handle(ServiceException.fail(500, "Unable to performed batchread!",
+                            new JsonObject().put("ids", identifiers)));
+                } else {
+                    completeBatchRead(batch, fetchResult.result().get(COLLECTION), resultHandler);
+                }
+            });
+        });
+    }
+
+    /**
+     * Checks the object cache for every identifier of a batch read, recording the hits and the distinct keys that
+     * must be fetched from the table.
+     *
+     * @param identifiers the identifiers
+     * @param projections the projections, null for full reads
+     * @param resultHandler the handler for the prepared batch, never failed
+     */
+    void prepareBatchRead(List<JsonObject> identifiers, String[] projections,
+                          Handler<AsyncResult<BatchRead<E>>> resultHandler) {
+        final List<String> cacheIds = identifiers.stream()
+                .map(id -> batchCacheId(id, projections))
+                .collect(toList());
+        final List<Future> cacheChecks = new ArrayList<>();
+
+        cacheIds.forEach(cacheId -> {
+            Future<E> checkFuture = Future.future();
+
+            vertx.<E>executeBlocking(future -> cacheManager.checkObjectCache(
+                    projections == null ? "FULL_CACHE_" + cacheId : cacheId, result -> {
+                if (result.failed()) {
+                    future.fail(result.cause());
+                } else {
+                    future.complete(result.result());
+                }
+            }), false, checkFuture.completer());
+
+            cacheChecks.add(checkFuture);
+        });
+
+        CompositeFuture.join(cacheChecks).setHandler(checked -> {
+            final BatchRead<E> batch = new BatchRead<>(identifiers, projections, cacheIds);
+
+            for (int i = 0; i < identifiers.size(); i++) {
+                @SuppressWarnings("unchecked")
+                Future<E> check = (Future<E>) cacheChecks.get(i);
+
+                if (check.succeeded() && check.result() != null) {
+                    batch.results.set(i, new ItemResult<>(check.result(), true));
+                } else {
+                    JsonObject id = identifiers.get(i);
+
+                    batch.misses.computeIfAbsent(batchKey(id.getString("hash"), id.getString("range")),
+                            k -> new ArrayList<>()).add(i);
+                }
+            }
+
+            if (logger.isDebugEnabled() && batch.hasMisses()) {
+                logger.debug("Batch read cache misses: " + batch.misses.size() + " of " + identifiers.size());
+            }
+
+            resultHandler.handle(Future.succeededFuture(batch));
+        });
+    }
+
+    /**
+     * Builds the table keys for the cache misses of a prepared batch read, with the projections of the batch pushed
+     * into the request so only the projected attributes are read.
+     *
+     * @param batch the prepared batch
+     * @return the keys and attributes for this table
+     */
+    KeysAndAttributes batchKeys(BatchRead<E> batch) {
+        List<Map<String, AttributeValue>> keys = batch.misses.values().stream()
+                .map(indexes -> batch.identifiers.get(indexes.get(0)))
+                .map(id -> {
+                    Map<String, AttributeValue> key = new HashMap<>();
+                    key.put(HASH_IDENTIFIER, new AttributeValue().withS(id.getString("hash")));
+
+                    if (!IDENTIFIER.equals("")) {
+                        key.put(IDENTIFIER, new AttributeValue().withS(id.getString("range")));
+                    }
+
+                    return key;
+                })
+                .collect(toList());
+
+        KeysAndAttributes keysAndAttributes = new KeysAndAttributes().withKeys(keys).withConsistentRead(true);
+
+        if (batch.projections != null && batch.projections.length > 0) {
+            Map<String, String> names = new HashMap<>();
+
+            keysAndAttributes
+                    .withProjectionExpression(db.getAsyncExecutor().projectionExpression(batch.projections, names))
+                    .withExpressionAttributeNames(names);
+        }
+
+        return keysAndAttributes;
+    }
+
+    /**
+     * Converts and caches the fetched records of a prepared batch read, and fills in the results. Identifiers that
+     * were not found get a result with a null item, and records that could not be cached are returned uncached.
+     *
+     * @param batch the prepared batch
+     * @param responses the raw records fetched from this table, null if none
+     * @param resultHandler the handler for the results, in the order of the identifiers
+     */
+    void completeBatchRead(BatchRead<E> batch, List<Map<String, AttributeValue>> responses,
+                           Handler<AsyncResult<List<ItemResult<E>>>> resultHandler) {
+        final DynamoDBMapperTableModel<E> tableModel = DYNAMO_DB_MAPPER.getTableModel(TYPE);
+        final Map<String, E> fetched = new HashMap<>();
+
+        try {
+            if (responses != null) {
+                responses.forEach(attributes -> {
+                    E item = tableModel.unconvert(attributes);
+
+                    fetched.put(batchKey(item.getHash(), item.getRange()), item);
+                });
+            }
+        } catch (Exception e) {
+            logger.error("Error in batchRead!", e);
+
+            resultHandler.handle(ServiceException.fail(500, "Unable to performed batchread!",
+                    new JsonObject().put("ids", batch.identifiers)));
+
+            return;
+        }
+
+        List<Future> cacheFutures = new ArrayList<>();
+
+        batch.misses.forEach((key, indexes) -> {
+            E item = fetched.get(key);
+            int first = indexes.get(0);
+            Future<E> cacheFuture = Future.future();
+
+            if (item == null) {
+                cacheFuture.complete();
+            } else if (batch.projections == null) {
+                cacheItem(batch.cacheIds.get(first), item, new String[]{}, cacheFuture);
+            } else {
+                cacheProjectedItem(batch.identifiers.get(first), batch.cacheIds.get(first), batch.projections,
+                        item, cacheFuture);
+            }
+
+            cacheFutures.add(cacheFuture);
+        });
+
+        CompositeFuture.join(cacheFutures).setHandler(cacheResult -> {
+            int i = 0;
+
+            for (Map.Entry<String, List<Integer>> miss : batch.misses.entrySet()) {
+                @SuppressWarnings("unchecked")
+                Future<E> cacheFuture = (Future<E>) cacheFutures.get(i++);
+
+                if (cacheFuture.failed()) {
+                    logger.error("Unable to cache batch read of " + miss.getKey(), cacheFuture.cause());
+                }
+
+                E item = cacheFuture.succeeded() ? cacheFuture.result() : fetched.get(miss.getKey());
+
+                miss.getValue().forEach(index -> batch.results.set(index, new ItemResult<>(item, false)));
+            }
+
+            resultHandler.handle(Future.succeededFuture(batch.results));
+        });
+    }
+
+    private String batchCacheId(JsonObject identifiers, String[] projections) {
+        String hash = identifiers.getString("hash");
+        String range = identifiers.getString("range");
+
+        if (projections == null) {
+            return TYPE.getSimpleName() + "_" + hash + (range == null ?
+                    (db.hasRangeKey() ? "/null" : "") : "/" + range);
+        }
+
+        return TYPE.getSimpleName() + "_" + hash + (range == null ? "" : "/" + range) +
+                (projections.length > 0 ? "/projection/" + Arrays.hashCode(projections) : "");
+    }
+
+    private String batchKey(String hash, String range) {
+        return hash + "/" + (range == null || IDENTIFIER.equals("") ? "" : range);
+    }
+
+    /**
+     * Fetches the keys of one or more tables with BatchGetItem, in requests of at most 100 keys in total that run in
+     * parallel. Unprocessed keys are retried with backoff.
+     *
+     * @param requestItems the keys to fetch by table name
+     * @param resultHandler the handler for the raw records by table name
+     */
+    void fetchBatch(Map<String, KeysAndAttributes> requestItems,
+                    Handler<AsyncResult<Map<String, List<Map<String, AttributeValue>>>>> resultHandler) {
+        final List<Future> chunkFutures = new ArrayList<>();
+        Map<String, KeysAndAttributes> chunk = new HashMap<>();
+        int chunkSize = 0;
+
+        for (Map.Entry<String, KeysAndAttributes> entry : requestItems.entrySet()) {
+            for (Map<String, AttributeValue> key : entry.getValue().getKeys()) {
+                if (chunkSize == MAX_BATCH_GET_SIZE) {
+                    chunkFutures.add(fetchChunk(chunk));
+                    chunk = new HashMap<>();
+                    chunkSize = 0;
+                }
+
+                chunk.computeIfAbsent(entry.getKey(), table -> new KeysAndAttributes()
+                        .withConsistentRead(entry.getValue().getConsistentRead())
+                        .withProjectionExpression(entry.getValue().getProjectionExpression())
+                        .withExpressionAttributeNames(entry.getValue().getExpressionAttributeNames()))
+                        .withKeys(key);
+                chunkSize++;
+            }
+        }
+
+        if (chunkSize > 0) chunkFutures.add(fetchChunk(chunk));
+
+        CompositeFuture.all(chunkFutures).setHandler(res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                Map<String, List<Map<String, AttributeValue>>> fetched = new HashMap<>();
+
+                chunkFutures.forEach(chunkFuture -> {
+                    @SuppressWarnings("unchecked")
+                    Map<String, List<Map<String, AttributeValue>>> responses =
+                            (Map<String, List<Map<String, AttributeValue>>>) chunkFuture.result();
+
+                    responses.forEach((table, items) ->
+                            fetched.computeIfAbsent(table, k -> new ArrayList<>()).addAll(items));
+                });
+
+                resultHandler.handle(Future.succeededFuture(fetched));
+            }
+        });
+    }
+
+    private Future<Map<String, List<Map<String, AttributeValue>>>> fetchChunk(
+            Map<String, KeysAndAttributes> requestItems) {
+        Future<Map<String, List<Map<String, AttributeValue>>>> chunkFuture = Future.future();
+        fetchChunk(requestItems, 0, new HashMap<>(), chunkFuture);
+
+        return chunkFuture;
+    }
+
+    private void fetchChunk(Map<String, KeysAndAttributes> requestItems, int attempt,
+                            Map<String, List<Map<String, AttributeValue>>> fetched,
+                            Future<Map<String, List<Map<String, AttributeValue>>>> chunkFuture) {
+        Handler<AsyncResult<BatchGetItemResult>> chunkHandler = res -> {
+            if (res.failed() && !(res.cause() instanceof ProvisionedThroughputExceededException)) {
+                chunkFuture.fail(res.cause());
+
+                return;
+            }
+
+            Map<String, KeysAndAttributes> unprocessed = requestItems;
+
+            if (res.succeeded()) {
+                res.result().getResponses().forEach((table, responses) ->
+                        fetched.computeIfAbsent(table, k -> new ArrayList<>()).addAll(responses));
+
+                unprocessed = res.result().getUnprocessedKeys();
+            }
+
+            if (unprocessed == null || unprocessed.isEmpty()) {
+                chunkFuture.complete(fetched);
+            } else if (attempt >= MAX_BATCH_GET_RETRIES) {
+                chunkFuture.fail(new IllegalStateException("Keys in " + unprocessed.keySet() +
+                        " were still unprocessed after " + MAX_BATCH_GET_RETRIES + " retries!"));
+            } else {
+                final Map<String, KeysAndAttributes> retryItems = unprocessed;
+
+                vertx.setTimer(DynamoDBBatchWriter.backoff(attempt), timer ->
+                        fetchChunk(retryItems, attempt + 1, fetched, chunkFuture));
+            }
+        };
+
+        BatchGetItemRequest request = new BatchGetItemRequest().withRequestItems(requestItems);
+
+        if (db.isAsyncExecutionEnabled()) {
+            db.getAsyncExecutor().batchGetItem(request, chunkHandler);
+        } else {
+            executor.<BatchGetItemResult>executeBlocking(future -> {
+                try {
+                    future.complete(db.getDynamoDbClient().batchGetItem(request));
+                } catch (AmazonServiceException ase) {
+                    if (!(ase instanceof ProvisionedThroughputExceededException)) {
+                        logger.error("Could not complete DynamoDB Operation, " +
+                                "Error Message:  " + ase.getMessage() + ", " +
+                                "HTTP Status:    " + ase.getStatusCode() + ", " +
+                                "AWS Error Code: " + ase.getErrorCode() + ", " +
+                                "Error Type:     " + ase.getErrorType() + ", " +
+                                "Request ID:     " + ase.getRequestId());
+                    }
+
+                    future.fail(ase);
+                } catch (AmazonClientException ace) {
+                    logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                    future.fail(ace);
+                }
+            }, false, chunkHandler);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public void readAll(Handler<AsyncResult<List<E>>> resultHandler) {
-        vertx.<List<E>>executeBlocking(future -> {
+        if (db.isAsyncExecutionEnabled()) {
+            db.getAsyncExecutor().scanAll(db.getScanSegments(), readResult -> {
+                if (readResult.failed()) {
+                    logger.error("Error in readAll!", readResult.cause());
+
+                    resultHandler.handle(ServiceException.fail(500, "Error in readAll!",
+                            new JsonObject(Json.encode(readResult.cause()))));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(readResult.result()));
+                }
+            });
+
+            return;
+        }
+
+        executor.<List<E>>executeBlocking(future -> {
             try {
                 long timeBefore = System.currentTimeMillis();
 
                 PaginatedParallelScanList<E> items =
-                        DYNAMO_DB_MAPPER.parallelScan(TYPE, new DynamoDBScanExpression(), coreNum);
+                        DYNAMO_DB_MAPPER.parallelScan(TYPE, scanExpression(), db.getScanSegments());
                 items.loadAllResults();
 
                 if (logger.isDebugEnabled()) {
@@ -351,12 +994,12 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
     }
 
     public void readAllPaginated(Handler<AsyncResult<PaginatedParallelScanList<E>>> resultHandler) {
-        vertx.<PaginatedParallelScanList<E>>executeBlocking(future -> {
+        executor.<PaginatedParallelScanList<E>>executeBlocking(future -> {
             try {
                 long timeBefore = System.currentTimeMillis();
 
                 PaginatedParallelScanList<E> items =
-                        DYNAMO_DB_MAPPER.parallelScan(TYPE, new DynamoDBScanExpression(), coreNum);
+                        DYNAMO_DB_MAPPER.parallelScan(TYPE, scanExpression(), db.getScanSegments());
 
                 if (logger.isDebugEnabled()) {
                     logger.debug("Results received in: " + (System.currentTimeMillis() - timeBefore) + " ms");
@@ -395,7 +1038,14 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
     public void readAll(JsonObject identifiers, Map<String, List<FilterParameter>> filterParameterMap,
                         Handler<AsyncResult<List<E>>> resultHandler) {
-        vertx.<List<E>>executeBlocking(future -> {
+        readListCached(listCacheId("readAll", identifiers.encode(),
+                filterParameterMap == null ? null : new TreeMap<>(filterParameterMap)), null, resultHandler,
+                loadHandler -> loadAll(identifiers, filterParameterMap, loadHandler));
+    }
+
+    private void loadAll(JsonObject identifiers, Map<String, List<FilterParameter>> filterParameterMap,
+                         Handler<AsyncResult<List<E>>> resultHandler) {
+        executor.<List<E>>executeBlocking(future -> {
             try {
                 String identifier = identifiers.getString("hash");
                 DynamoDBQueryExpression<E> filterExpression = dbParams.applyParameters(null, filterParameterMap);
@@ -460,9 +1110,66 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
     public void readAll(JsonObject identifiers, String pageToken, QueryPack queryPack, String[] projections,
                         String GSI, Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
+        boolean prefetch = queryPack.getPrefetch() != null ? queryPack.getPrefetch() : db.isPrefetchEnabled();
+
+        if (!prefetch) {
+            doReadAll(identifiers, pageToken, queryPack, projections, GSI, resultHandler);
+
+            return;
+        }
+
+        doReadAll(identifiers, pageToken, queryPack, projections, GSI, readAllResult -> {
+            resultHandler.handle(readAllResult);
+
+            if (readAllResult.succeeded()) {
+                prefetchNextPage(identifiers, queryPack, projections, GSI,
+                        readAllResult.result().getItemList().getPageToken());
+            }
+        });
+    }
+
+    /**
+     * Reads the next page into the item list cache, under the cache id the request for the next page will use.
+     * Prefetching is skipped when the worker queue has waiting operations or the prefetch budget is used up. A
+     * prefetched page is dropped instead of cached if a write purged the caches while it was read.
+     */
+    private void prefetchNextPage(JsonObject identifiers, QueryPack queryPack, String[] projections, String GSI,
+                                  String nextPageToken) {
+        if (nextPageToken == null || nextPageToken.equals("END_OF_LIST")) return;
+
+        if (executor.getQueueDepth() > 0) {
+            if (logger.isDebugEnabled()) { logger.debug("Skipping prefetch, worker queue is busy"); }
+
+            return;
+        }
+
+        if (inFlightPrefetches.incrementAndGet() > db.getPrefetchConcurrency()) {
+            inFlightPrefetches.decrementAndGet();
+
+            if (logger.isDebugEnabled()) { logger.debug("Skipping prefetch, budget is used up"); }
+
+            return;
+        }
+
+        QueryPack nextPage = queryPack.nextPage(nextPageToken);
+
+        doReadAll(identifiers, nextPageToken, nextPage, projections, GSI, prefetchResult -> {
+            inFlightPrefetches.decrementAndGet();
+
+            if (prefetchResult.failed()) {
+                logger.warn("Prefetch of next page failed!", prefetchResult.cause());
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("Prefetched page: " + nextPage.getBaseEtagKey());
+            }
+        });
+    }
+
+    private void doReadAll(JsonObject identifiers, String pageToken, QueryPack queryPack, String[] projections,
+                           String GSI, Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
         AtomicLong startTime = new AtomicLong();
         startTime.set(System.nanoTime());
 
+        long generation = db.getWriteGeneration();
         String hash = identifiers.getString("hash");
         String cacheId = TYPE.getSimpleName() + "_" + hash +
                 (queryPack.getBaseEtagKey() != null ? "/" + queryPack.getBaseEtagKey() : "/START");
@@ -511,18 +1218,26 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
                 String etagKey = queryPack.getBaseEtagKey();
 
                 returnDatabaseContent(queryPack, identifiers, pageToken, hash, etagKey, cacheId,
-                        filterExpression, projections, GSI, startTime, resultHandler);
+                        filterExpression, projections, GSI, startTime, generation, resultHandler);
             }
         });
     }
 
+    /**
+     * Reads a page from the table and stores it in the item list cache, unless a write has invalidated the read caches
+     * since the read started, as the page may then be older than the purge and would be served stale.
+     */
     @SuppressWarnings("unchecked")
     private void returnDatabaseContent(QueryPack queryPack, JsonObject identifiers, String pageToken,
                                        String hash, String etagKey,
                                        String cacheId, DynamoDBQueryExpression<E> filteringExpression,
                                        String[] projections, String GSI,
-                                       AtomicLong startTime, Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
-        vertx.<ItemListResult<E>>executeBlocking(future -> {
+                                       AtomicLong startTime, long generation,
+                                       Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
+        String index = filteringExpression != null && filteringExpression.getIndexName() != null ?
+                filteringExpression.getIndexName() : GSI;
+
+        executor.<ItemListResult<E>>executeBlocking(index, future -> {
             Boolean multiple = identifiers.getBoolean(MULTIPLE_KEY);
             boolean unFilteredIndex = filteringExpression == null;
             String alternateIndex = null;
@@ -548,9 +1263,9 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
                             GSI, projections, pageToken, unFilteredIndex, alternateIndex, startTime,
                             itemListFuture.completer());
                 } else {
-                    runStandardQuery(queryPack.getBaseEtagKey(), multiple, identifiers, hash, filteringExpression,
-                            GSI, projections, pageToken, unFilteredIndex, alternateIndex, startTime,
-                            itemListFuture.completer());
+                    runStandardQuery(queryPack.getBaseEtagKey(), queryPack.getShape(), multiple, identifiers, hash,
+                            filteringExpression, GSI, projections, pageToken, unFilteredIndex, alternateIndex,
+                            startTime, itemListFuture.completer());
                 }
 
                 itemListFuture.setHandler(itemListResult -> {
@@ -565,7 +1280,13 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
                         }
                         Future<Boolean> itemListCacheFuture = Future.future();
 
-                        if (cacheManager.isItemListCacheAvailable()) {
+                        if (cacheManager.isItemListCacheAvailable() && db.getWriteGeneration() != generation) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Written since read started, not caching: " + cacheId);
+                            }
+
+                            itemListCacheFuture.complete();
+                        } else if (cacheManager.isItemListCacheAvailable()) {
                             if (logger.isDebugEnabled()) {
                                 logger.debug("Constructing cache!");
                             }
@@ -631,21 +1352,21 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         });
     }
 
-    private void runStandardQuery(String baseEtagKey, Boolean multiple, JsonObject identifiers, String hash,
-                                  DynamoDBQueryExpression<E> filteringExpression, String GSI, String[] projections,
-                                  String pageToken, boolean unFilteredIndex, String alternateIndex,
+    private void runStandardQuery(String baseEtagKey, String queryShape, Boolean multiple, JsonObject identifiers,
+                                  String hash, DynamoDBQueryExpression<E> filteringExpression, String GSI,
+                                  String[] projections, String pageToken, boolean unFilteredIndex, String alternateIndex,
                                   AtomicLong startTime, Handler<AsyncResult<ItemListResult<E>>> resultHandler)
             throws InstantiationException, IllegalAccessException {
         if (multiple != null && multiple) {
-            standardMultipleQuery(baseEtagKey, identifiers, hash, filteringExpression, pageToken, GSI, unFilteredIndex,
-                    alternateIndex, projections, startTime, resultHandler);
+            standardMultipleQuery(baseEtagKey, queryShape, identifiers, hash, filteringExpression, pageToken, GSI,
+                    unFilteredIndex, alternateIndex, projections, startTime, resultHandler);
         } else {
-            standardQuery(baseEtagKey, identifiers, hash, filteringExpression, pageToken, GSI, unFilteredIndex,
-                    alternateIndex, projections, startTime, resultHandler);
+            standardQuery(baseEtagKey, queryShape, identifiers, hash, filteringExpression, pageToken, GSI,
+                    unFilteredIndex, alternateIndex, projections, startTime, resultHandler);
         }
     }
 
-    private void standardMultipleQuery(String baseEtagKey, JsonObject identifiers, String hash,
+    private void standardMultipleQuery(String baseEtagKey, String queryShape, JsonObject identifiers, String hash,
                                        DynamoDBQueryExpression<E> filteringExpression,
                                        String pageToken, String GSI, boolean unFilteredIndex, String alternateIndex,
                                        String[] projections, AtomicLong startTime,
@@ -682,7 +1403,8 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         long timeBefore = System.currentTimeMillis();
 
         preOperationTime.set(System.nanoTime() - startTime.get());
-        Map<String, List<Object>> items = DYNAMO_DB_MAPPER.batchLoad(keyPairs);
+        Map<String, List<Object>> items = DYNAMO_DB_MAPPER.batchLoad(keyPairs,
+                shapeConfig(queryShape));
         operationTime.set(System.nanoTime() - preOperationTime.get());
 
         int pageCount = items.get(COLLECTION).size();
@@ -750,7 +1472,8 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         resultHandler.handle(Future.succeededFuture(eItemListResult));
     }
 
-    private void standardQuery(String baseEtagKey, JsonObject identifiers, String hash, DynamoDBQueryExpression<E> filteringExpression,
+    private void standardQuery(String baseEtagKey, String queryShape, JsonObject identifiers, String hash,
+                               DynamoDBQueryExpression<E> filteringExpression,
                                String pageToken, String GSI, boolean unFilteredIndex, String alternateIndex,
                                String[] projections, AtomicLong startTime, Handler<AsyncResult<ItemListResult<E>>> resultHandler)
             throws IllegalAccessException, InstantiationException {
@@ -811,7 +1534,7 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
         preOperationTime.set(System.nanoTime() - startTime.get());
         QueryResultPage<E> queryPageResults =
-                DYNAMO_DB_MAPPER.queryPage(TYPE, queryExpression);
+                DYNAMO_DB_MAPPER.queryPage(TYPE, queryExpression, shapeConfig(queryShape));
         operationTime.set(System.nanoTime() - preOperationTime.get());
 
         if (logger.isDebugEnabled()) {
@@ -851,10 +1574,6 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
                                                 String GSI, String[] projections, String pageToken,
                                                 boolean unFilteredIndex, String alternateIndex,
                                                 AtomicLong startTime, Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
-        AtomicLong preOperationTime = new AtomicLong();
-        AtomicLong operationTime = new AtomicLong();
-        AtomicLong postOperationTime = new AtomicLong();
-
         if (logger.isDebugEnabled()) {
             logger.debug("Running illegal rangedKey query...");
         }
@@ -862,83 +1581,30 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         String hashScanKey = "#HASH_KEY_VALUE";
         String hashScanValue = ":HASH_VALUE";
 
-        DynamoDBScanExpression scanExpression = dbParams.applyParameters(queryPack.getParams());
-        String conditionString = scanExpression.getFilterExpression();
-        if (hash != null) conditionString += " AND " + hashScanKey + " = " + hashScanValue;
-        scanExpression.setFilterExpression(conditionString);
-
-        if (GSI == null) {
-            scanExpression.getExpressionAttributeNames().put(hashScanKey, HASH_IDENTIFIER);
-        } else {
-            scanExpression.getExpressionAttributeNames().put(hashScanKey, GSI_KEY_MAP.get(GSI).getString("hash"));
-        }
-
-        scanExpression.getExpressionAttributeValues().put(hashScanValue, new AttributeValue().withS(hash));
-
-        final Map<String, AttributeValue> pageTokenMap = getTokenMap(pageToken, GSI, PAGINATION_IDENTIFIER);
-
-        scanExpression.setLimit(null);
-        scanExpression.setIndexName(GSI != null ? GSI : getPaginationIndex());
-        scanExpression.setConsistentRead(false);
-        setProjectionsOnScanExpression(scanExpression, projections);
-
-        long timeBefore = System.currentTimeMillis();
-
-        if (logger.isDebugEnabled()) {
-            logger.debug("Scan expression is: " + Json.encodePrettily(scanExpression));
-        }
-
-        preOperationTime.set(System.nanoTime() - startTime.get());
-        ScanResultPage<E> items = DYNAMO_DB_MAPPER.scanPage(TYPE, scanExpression);
-        operationTime.set(System.nanoTime() - preOperationTime.get());
-
-        int pageCount = items.getCount();
-        int desiredCount = scanExpression.getLimit() != null ? scanExpression.getLimit() : 20;
-
-        if (logger.isDebugEnabled()) {
-            logger.debug(pageCount + " results received in: " + (System.currentTimeMillis() - timeBefore) + " ms");
-        }
-
-        @SuppressWarnings("UnnecessaryLocalVariable")
-        Queue<OrderByParameter> queue = queryPack.getOrderByQueue();
-
-        final boolean orderIsAscending = queue != null && queue.size() > 0 && queue.peek().getDirection().equals("asc");
-        String finalAlternateIndex = queue != null && queue.size() > 0 ? queue.peek().getField() : PAGINATION_IDENTIFIER;
-        final Comparator<E> comparator = Comparator.comparing(e -> db.getFieldAsString(finalAlternateIndex, e));
-        final Comparator<E> comparing = orderIsAscending ? comparator : comparator.reversed();
-
-        List<E> allItems = items.getResults().stream()
-                .sorted(comparing)
-                .collect(toList());
-
-        if (pageToken != null) {
-            String id = pageTokenMap.get(IDENTIFIER).getS();
-
-            final Optional<E> first = allItems.stream()
-                    .filter(item -> {
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("Id is: " + id + ", Range is: " + item.getRange());
-                        }
-
-                        return item.getRange().equals(id);
-                    })
-                    .findFirst();
+        DynamoDBScanExpression scanExpression = dbParams.applyParameters(queryPack.getParams());
+        String conditionString = scanExpression.getFilterExpression();
+        if (hash != null) conditionString += " AND " + hashScanKey + " = " + hashScanValue;
+        scanExpression.setFilterExpression(conditionString);
 
-            if (first.isPresent()) {
-                allItems = allItems.subList(allItems.indexOf(first.get()) + 1, allItems.size());
-            }
+        if (GSI == null) {
+            scanExpression.getExpressionAttributeNames().put(hashScanKey, HASH_IDENTIFIER);
+        } else {
+            scanExpression.getExpressionAttributeNames().put(hashScanKey, GSI_KEY_MAP.get(GSI).getString("hash"));
         }
 
-        List<E> itemList = allItems.stream()
-                .limit(desiredCount)
-                .collect(toList());
+        scanExpression.getExpressionAttributeValues().put(hashScanValue, new AttributeValue().withS(hash));
 
-        pageCount = allItems.size();
-        int count = pageCount < desiredCount ? pageCount : desiredCount;
-        String pagingToken = setScanPageToken(pageCount, desiredCount, itemList, GSI, alternateIndex, unFilteredIndex);
+        scanExpression.setLimit(null);
+        scanExpression.setIndexName(GSI != null ? GSI : getPaginationIndex());
+        scanExpression.setConsistentRead(false);
+        setProjectionsOnScanExpression(scanExpression, projections);
 
-        returnTimedItemListResult(baseEtagKey, resultHandler, count, pagingToken, itemList, projections,
-                preOperationTime, operationTime, postOperationTime);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Scan expression is: " + Json.encodePrettily(scanExpression));
+        }
+
+        returnSnapshotPage(baseEtagKey, queryPack.getShape(), scanExpression, queryPack.getOrderByQueue(), GSI,
+                pageToken, false, 20, projections, startTime, resultHandler);
     }
 
     private void runRootQuery(String baseEtagKey, Boolean multiple, JsonObject identifiers, String hash,
@@ -947,14 +1613,15 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
                               String alternateIndex, AtomicLong startTime,
                               Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
         if (multiple != null && multiple) {
-            rootMultipleQuery(baseEtagKey, identifiers, hash, filteringExpression, GSI, pageToken, projections,
-                    unFilteredIndex, alternateIndex, startTime, resultHandler);
+            rootMultipleQuery(baseEtagKey, queryPack.getShape(), identifiers, hash, filteringExpression, GSI,
+                    pageToken, projections, unFilteredIndex, alternateIndex, startTime, resultHandler);
         } else {
             rootRootQuery(baseEtagKey, queryPack, GSI, pageToken, projections, unFilteredIndex, alternateIndex, startTime, resultHandler);
         }
     }
 
-    private void rootMultipleQuery(String baseEtagKey, JsonObject identifiers, String hash, DynamoDBQueryExpression<E> filteringExpression,
+    private void rootMultipleQuery(String baseEtagKey, String queryShape, JsonObject identifiers, String hash,
+                                   DynamoDBQueryExpression<E> filteringExpression,
                                    String GSI, String pageToken, String[] projections, boolean unFilteredIndex,
                                    String alternateIndex, AtomicLong startTime,
                                    Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
@@ -990,7 +1657,8 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         long timeBefore = System.currentTimeMillis();
 
         preOperationTime.set(System.nanoTime() - startTime.get());
-        Map<String, List<Object>> items = DYNAMO_DB_MAPPER.batchLoad(keyPairs);
+        Map<String, List<Object>> items = DYNAMO_DB_MAPPER.batchLoad(keyPairs,
+                shapeConfig(queryShape));
         operationTime.set(System.nanoTime() - preOperationTime.get());
 
         int pageCount = items.get(COLLECTION).size();
@@ -1035,75 +1703,185 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
     private void rootRootQuery(String baseEtagKey, QueryPack queryPack, String GSI, String pageToken, String[] projections,
                                boolean unFilteredIndex, String alternateIndex, AtomicLong startTime,
                                Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
-        AtomicLong preOperationTime = new AtomicLong();
-        AtomicLong operationTime = new AtomicLong();
-        AtomicLong postOperationTime = new AtomicLong();
-
         if (logger.isDebugEnabled()) {
             logger.debug("Running root query...");
         }
 
         DynamoDBScanExpression scanExpression = dbParams.applyParameters(queryPack.getParams());
-        final Map<String, AttributeValue> pageTokenMap = getTokenMap(pageToken, GSI, PAGINATION_IDENTIFIER);
 
         scanExpression.setLimit(null);
         scanExpression.setIndexName(GSI != null ? GSI : getPaginationIndex());
         scanExpression.setConsistentRead(false);
         setProjectionsOnScanExpression(scanExpression, projections);
 
-        long timeBefore = System.currentTimeMillis();
-
         if (logger.isDebugEnabled()) {
             logger.debug("Scan expression is: " + Json.encodePrettily(scanExpression));
         }
 
-        preOperationTime.set(System.nanoTime() - startTime.get());
-        ScanResultPage<E> items =
-                DYNAMO_DB_MAPPER.scanPage(TYPE, scanExpression);
-        operationTime.set(System.nanoTime() - preOperationTime.get());
-
-        int pageCount = items.getCount();
         int desiredCount = (queryPack.getLimit() == null || queryPack.getLimit() == 0) ? 20 : queryPack.getLimit();
 
         if (logger.isDebugEnabled()) {
             logger.debug("DesiredCount is: " + desiredCount);
-            logger.debug(pageCount + " results received in: " + (System.currentTimeMillis() - timeBefore) + " ms");
         }
 
-        @SuppressWarnings("UnnecessaryLocalVariable")
-        Queue<OrderByParameter> queue = queryPack.getOrderByQueue();
+        returnSnapshotPage(baseEtagKey, queryPack.getShape(), scanExpression, queryPack.getOrderByQueue(), GSI,
+                pageToken, hashOnlyModel(), desiredCount, projections, startTime, resultHandler);
+    }
+
+    private void returnSnapshotPage(String baseEtagKey, String queryShape, DynamoDBScanExpression scanExpression,
+                                    Queue<OrderByParameter> queue, String GSI, String pageToken,
+                                    boolean matchTokenOnHash, int desiredCount, String[] projections,
+                                    AtomicLong startTime, Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
+        AtomicLong preOperationTime = new AtomicLong();
+        AtomicLong operationTime = new AtomicLong();
+        AtomicLong postOperationTime = new AtomicLong();
 
         final boolean orderIsAscending =
                 queue != null && queue.size() > 0 && queue.peek().getDirection().equals("asc");
-
-        String finalAlternateIndex = queue != null && queue.size() > 0 ?
+        final String sortField = queue != null && queue.size() > 0 ?
                 queue.peek().getField() : PAGINATION_IDENTIFIER;
+        final String shape = snapshotShape(scanExpression, sortField, orderIsAscending);
+        final DynamoDBScanSnapshots<E> scanSnapshots = db.getScanSnapshots();
+
+        preOperationTime.set(System.nanoTime() - startTime.get());
+        DynamoDBScanSnapshots.Snapshot<E> snapshot = scanSnapshots.get(shape);
+
+        if (snapshot == null) {
+            long timeBefore = System.currentTimeMillis();
+            List<E> scanned = scanAllPages(scanExpression, queryShape, scanSnapshots.getMaxItems());
+
+            if (scanned == null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Scan exceeds " + scanSnapshots.getMaxItems() + " items, paging without snapshot...");
+                }
+
+                returnScanPage(baseEtagKey, queryShape, scanExpression, sortField, orderIsAscending, GSI, pageToken,
+                        matchTokenOnHash, desiredCount, projections, preOperationTime, resultHandler);
+
+                return;
+            }
+
+            snapshot = scanSnapshots.create(shape, scanned,
+                    item -> db.getFieldAsString(sortField, item), orderIsAscending);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug(snapshot.getItems().size() + " results received in: " +
+                        (System.currentTimeMillis() - timeBefore) + " ms");
+            }
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("Serving page from snapshot: " + snapshot.getId());
+        }
+
+        operationTime.set(System.nanoTime() - preOperationTime.get());
+
+        int offset = 0;
+        JsonObject cursor = DynamoDBScanSnapshots.decodeCursor(pageToken);
+
+        if (cursor != null) {
+            offset = snapshot.offsetOf(cursor);
+        } else if (pageToken != null) {
+            final Map<String, AttributeValue> pageTokenMap = getTokenMap(pageToken, GSI, PAGINATION_IDENTIFIER);
+            AttributeValue id = pageTokenMap == null ? null :
+                    pageTokenMap.get(matchTokenOnHash ? HASH_IDENTIFIER : IDENTIFIER);
 
-        final Comparator<E> comparator = Comparator.comparing(e -> db.getFieldAsString(finalAlternateIndex, e));
-        final Comparator<E> comparing = orderIsAscending ? comparator : comparator.reversed();
+            if (id != null) {
+                offset = matchTokenOnHash ? snapshot.indexAfter(id.getS(), null) : snapshot.indexAfter(null, id.getS());
+            }
+        }
+
+        List<E> itemList = snapshot.page(offset, desiredCount);
+        int remaining = snapshot.getItems().size() - offset;
+        int count = remaining < desiredCount ? remaining : desiredCount;
+        String pagingToken = remaining > desiredCount ?
+                scanSnapshots.cursor(snapshot, offset + desiredCount) : "END_OF_LIST";
+
+        returnTimedItemListResult(baseEtagKey, resultHandler, count, pagingToken, itemList, projections,
+                preOperationTime, operationTime, postOperationTime);
+    }
+
+    /**
+     * Pages a scan that is too large to snapshot the way it was paged before snapshots: a single scan page is read,
+     * sorted and sliced after the item in the page token.
+     */
+    private void returnScanPage(String baseEtagKey, String queryShape, DynamoDBScanExpression scanExpression,
+                                String sortField, boolean orderIsAscending, String GSI, String pageToken,
+                                boolean matchTokenOnHash, int desiredCount, String[] projections,
+                                AtomicLong preOperationTime, Handler<AsyncResult<ItemListResult<E>>> resultHandler) {
+        AtomicLong operationTime = new AtomicLong();
+        AtomicLong postOperationTime = new AtomicLong();
+
+        scanExpression.setExclusiveStartKey(null);
+        ScanResultPage<E> items = DYNAMO_DB_MAPPER.scanPage(TYPE, scanExpression,
+                shapeConfig(queryShape));
+        operationTime.set(System.nanoTime() - preOperationTime.get());
+
+        final Comparator<E> comparator = Comparator.comparing(e -> db.getFieldAsString(sortField, e),
+                Comparator.nullsFirst(Comparator.<String>naturalOrder()));
 
         List<E> allItems = items.getResults().stream()
-                .sorted(comparing)
+                .sorted(orderIsAscending ? comparator : comparator.reversed())
                 .collect(toList());
 
         if (pageToken != null) {
-            String id = pageTokenMap.get(hashOnlyModel() ? HASH_IDENTIFIER : IDENTIFIER).getS();
+            final Map<String, AttributeValue> pageTokenMap = getTokenMap(pageToken, GSI, PAGINATION_IDENTIFIER);
+            AttributeValue id = pageTokenMap == null ? null :
+                    pageTokenMap.get(matchTokenOnHash ? HASH_IDENTIFIER : IDENTIFIER);
 
-            allItems = reduceByPageToken(allItems, id);
+            if (id != null) allItems = reduceByPageToken(allItems, id.getS());
         }
 
         List<E> itemList = allItems.stream()
                 .limit(desiredCount)
                 .collect(toList());
 
-        pageCount = allItems.size();
+        int pageCount = allItems.size();
         int count = pageCount < desiredCount ? pageCount : desiredCount;
-        String pagingToken = setScanPageToken(pageCount, desiredCount, itemList, GSI, alternateIndex, unFilteredIndex);
+        String pagingToken = setScanPageToken(pageCount, desiredCount, itemList, GSI, null, false);
 
         returnTimedItemListResult(baseEtagKey, resultHandler, count, pagingToken, itemList, projections,
                 preOperationTime, operationTime, postOperationTime);
     }
 
+    private DynamoDBMapperConfig shapeConfig(String queryShape) {
+        DynamoDBCapacityRegistry capacityRegistry = db.getCapacityRegistry();
+
+        return capacityRegistry == null ? DynamoDBMapperConfig.builder().build() :
+                capacityRegistry.shapeConfig(queryShape);
+    }
+
+    /**
+     * @return every item of the scan, or null if the scan holds more than the max items
+     */
+    private List<E> scanAllPages(DynamoDBScanExpression scanExpression, String queryShape, int maxItems) {
+        List<E> items = new ArrayList<>();
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        DynamoDBMapperConfig config = shapeConfig(queryShape);
+
+        do {
+            scanExpression.setExclusiveStartKey(lastEvaluatedKey);
+            ScanResultPage<E> page = DYNAMO_DB_MAPPER.scanPage(TYPE, scanExpression, config);
+
+            items.addAll(page.getResults());
+            lastEvaluatedKey = page.getLastEvaluatedKey();
+
+            if (items.size() > maxItems) return null;
+        } while (lastEvaluatedKey != null && !lastEvaluatedKey.isEmpty());
+
+        return items;
+    }
+
+    private String snapshotShape(DynamoDBScanExpression scanExpression, String sortField, boolean ascending) {
+        Map<String, String> names = scanExpression.getExpressionAttributeNames();
+        Map<String, AttributeValue> values = scanExpression.getExpressionAttributeValues();
+
+        return scanExpression.getIndexName() + "|" +
+                scanExpression.getFilterExpression() + "|" +
+                (names == null ? null : new TreeMap<>(names)) + "|" +
+                (values == null ? null : new TreeMap<>(values)) + "|" +
+                scanExpression.getProjectionExpression() + "|" +
+                sortField + "|" + (ascending ? "asc" : "desc");
+    }
+
     @SuppressWarnings("Duplicates")
     private void setProjectionsOnScanExpression(DynamoDBScanExpression scanExpression, String[] projections) {
         if (projections != null && projections.length > 0) {
@@ -1225,7 +2003,27 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
     public void readAllWithoutPagination(String identifier,
                                          Handler<AsyncResult<List<E>>> resultHandler) {
-        vertx.<List<E>>executeBlocking(future -> {
+        readListCached(listCacheId("readAllWithoutPagination", identifier), null, resultHandler,
+                loadHandler -> loadAllWithoutPagination(identifier, loadHandler));
+    }
+
+    private void loadAllWithoutPagination(String identifier, Handler<AsyncResult<List<E>>> resultHandler) {
+        if (db.isAsyncExecutionEnabled()) {
+            db.getAsyncExecutor().queryAll(identifier, true, readResult -> {
+                if (readResult.failed()) {
+                    logger.error("Error in readAllWithoutPagination!", readResult.cause());
+
+                    resultHandler.handle(ServiceException.fail(500, "Error in readAllWithoutPagination!",
+                            new JsonObject(Json.encode(readResult.cause()))));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(readResult.result()));
+                }
+            });
+
+            return;
+        }
+
+        executor.<List<E>>executeBlocking(future -> {
             try {
                 DynamoDBQueryExpression<E> queryExpression = new DynamoDBQueryExpression<>();
                 E keyItem = TYPE.newInstance();
@@ -1289,6 +2087,13 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
     public void readAllWithoutPagination(QueryPack queryPack, String[] projections,
                                          String GSI, Handler<AsyncResult<List<E>>> resultHandler) {
+        readListCached(listCacheId("readAllWithoutPagination", queryPack == null ? null : queryPack.getBaseEtagKey(),
+                projections, GSI), projections, resultHandler,
+                loadHandler -> loadAllWithoutPagination(queryPack, projections, GSI, loadHandler));
+    }
+
+    private void loadAllWithoutPagination(QueryPack queryPack, String[] projections,
+                                          String GSI, Handler<AsyncResult<List<E>>> resultHandler) {
         Map<String, List<FilterParameter>> params = null;
         if (queryPack != null) params = queryPack.getParams();
         final Map<String, List<FilterParameter>> finalParams = params;
@@ -1297,24 +2102,15 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
             logger.debug("Running aggregation non pagination scan!");
         }
 
-        vertx.<List<E>>executeBlocking(future -> {
+        executor.<List<E>>executeBlocking(GSI, future -> {
             try {
-                DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
-                if (finalParams != null) scanExpression = dbParams.applyParameters(finalParams);
-
-                if (projections != null) {
-                    setProjectionsOnScanExpression(scanExpression, projections);
-                }
+                DynamoDBScanExpression scanExpression = buildScanExpression(finalParams, projections, GSI);
 
                 long timeBefore = System.currentTimeMillis();
 
-                if (GSI != null) {
-                    scanExpression.setIndexName(GSI);
-                    scanExpression.setConsistentRead(false);
-                }
-
-                PaginatedParallelScanList<E> items =
-                        DYNAMO_DB_MAPPER.parallelScan(TYPE, scanExpression, coreNum);
+                PaginatedParallelScanList<E> items = DYNAMO_DB_MAPPER.parallelScan(TYPE, scanExpression,
+                        db.getScanSegments(), shapeConfig(
+                                queryPack == null ? null : queryPack.getShape()));
                 items.loadAllResults();
 
                 if (logger.isDebugEnabled()) {
@@ -1361,48 +2157,21 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
 
     public void readAllWithoutPagination(String identifier, QueryPack queryPack, String[] projections,
                                          String GSI, Handler<AsyncResult<List<E>>> resultHandler) {
-        vertx.<List<E>>executeBlocking(future -> {
+        readListCached(listCacheId("readAllWithoutPagination", identifier,
+                queryPack == null ? null : queryPack.getBaseEtagKey(), projections, GSI), projections, resultHandler,
+                loadHandler -> loadAllWithoutPagination(identifier, queryPack, projections, GSI, loadHandler));
+    }
+
+    private void loadAllWithoutPagination(String identifier, QueryPack queryPack, String[] projections,
+                                          String GSI, Handler<AsyncResult<List<E>>> resultHandler) {
+        executor.<List<E>>executeBlocking(GSI, future -> {
             try {
                 if (logger.isDebugEnabled()) {
                     logger.debug("Running aggregation non pagination query with id: " + identifier);
                 }
 
-                Queue<OrderByParameter> orderByQueue = queryPack.getOrderByQueue();
-                Map<String, List<FilterParameter>> params = queryPack.getParams();
-                String indexName = queryPack.getIndexName();
-
-                if (logger.isDebugEnabled()) { logger.debug("Building expression..."); }
-
-                DynamoDBQueryExpression<E> filterExpression;
-
-                if (params != null) {
-                    filterExpression = dbParams.applyParameters(
-                            projections == null && orderByQueue != null ? orderByQueue.peek() : null,
-                            params);
-                    if (projections == null) {
-                        filterExpression = dbParams.applyOrderBy(orderByQueue, GSI, indexName, filterExpression);
-                    }
-                } else {
-                    filterExpression = new DynamoDBQueryExpression<>();
-                }
-
-                if (GSI == null) {
-                    if (filterExpression.getKeyConditionExpression() == null) {
-                        E keyItem = TYPE.newInstance();
-                        keyItem.setHash(identifier);
-                        filterExpression.setHashKeyValues(keyItem);
-                    }
-
-                    filterExpression.setConsistentRead(true);
-                } else {
-                    filterExpression.setIndexName(GSI);
-
-                    if (filterExpression.getKeyConditionExpression() == null) {
-                        setFilterExpressionKeyCondition(filterExpression, GSI, identifier);
-                    }
-                }
-
-                setProjectionsOnQueryExpression(filterExpression, projections);
+                DynamoDBQueryExpression<E> filterExpression =
+                        buildQueryExpression(identifier, queryPack, projections, GSI);
 
                 long timeBefore = System.currentTimeMillis();
 
@@ -1410,7 +2179,8 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
                     logger.debug("Filter Expression: " + Json.encodePrettily(filterExpression));
                 }
 
-                PaginatedQueryList<E> items = DYNAMO_DB_MAPPER.query(TYPE, filterExpression);
+                PaginatedQueryList<E> items = DYNAMO_DB_MAPPER.query(TYPE, filterExpression,
+                        shapeConfig(queryPack == null ? null : queryPack.getShape()));
                 items.loadAllResults();
 
                 if (logger.isDebugEnabled()) {
@@ -1449,6 +2219,277 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
         });
     }
 
+    /**
+     * Counts the items matching the query pack without reading them. Queries and scans run with Select.COUNT and only
+     * sum the count of every page, and scans without an identifier run one such count per segment in parallel.
+     *
+     * @param identifier the hash key, or null to scan the table
+     * @param queryPack the query pack with the filter parameters, may be null
+     * @param GSI the index to count on, may be null
+     * @param resultHandler the handler for the count
+     */
+    public void count(String identifier, QueryPack queryPack, String GSI, Handler<AsyncResult<Long>> resultHandler) {
+        final Map<String, List<FilterParameter>> params = queryPack == null ? null : queryPack.getParams();
+        final String shape = queryPack == null ? null : queryPack.getShape();
+        final List<Future> countFutures = new ArrayList<>();
+        final int segments = identifier == null ? db.getScanSegments() : 1;
+
+        for (int segment = 0; segment < segments; segment++) {
+            final int currentSegment = segment;
+            Future<Long> countFuture = Future.future();
+
+            executor.<Long>executeBlocking(GSI, future -> {
+                try {
+                    long timeBefore = System.currentTimeMillis();
+                    int count;
+
+                    if (identifier != null) {
+                        count = DYNAMO_DB_MAPPER.count(TYPE,
+                                buildQueryExpression(identifier, queryPack, new String[]{}, GSI),
+                                shapeConfig(shape));
+                    } else {
+                        DynamoDBScanExpression scanExpression = buildScanExpression(params, null, GSI);
+                        scanExpression.setSegment(currentSegment);
+                        scanExpression.setTotalSegments(segments);
+
+                        count = DYNAMO_DB_MAPPER.count(TYPE, scanExpression,
+                                shapeConfig(shape));
+                    }
+
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Counted " + count + " in: " + (System.currentTimeMillis() - timeBefore) + " ms");
+                    }
+
+                    future.complete((long) count);
+                } catch (AmazonServiceException ase) {
+                    logger.error("Could not complete DynamoDB Operation, " +
+                            "Error Message:  " + ase.getMessage() + ", " +
+                            "HTTP Status:    " + ase.getStatusCode() + ", " +
+                            "AWS Error Code: " + ase.getErrorCode() + ", " +
+                            "Error Type:     " + ase.getErrorType() + ", " +
+                            "Request ID:     " + ase.getRequestId());
+
+                    future.fail(ase);
+                } catch (AmazonClientException ace) {
+                    logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                    future.fail(ace);
+                } catch (Exception e) {
+                    logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+                    future.fail(e);
+                }
+            }, false, countFuture.completer());
+
+            countFutures.add(countFuture);
+        }
+
+        CompositeFuture.all(countFutures).setHandler(countResult -> {
+            if (countResult.failed()) {
+                logger.error("Error in count!", countResult.cause());
+
+                resultHandler.handle(ServiceException.fail(500, "Error in count!",
+                        new JsonObject(Json.encode(countResult.cause()))));
+            } else {
+                resultHandler.handle(Future.succeededFuture(countFutures.stream()
+                        .mapToLong(countFuture -> (Long) countFuture.result())
+                        .sum()));
+            }
+        });
+    }
+
+    /**
+     * Streams every item in the table. Pages are scanned lazily as the stream is drained.
+     *
+     * @return a stream of all items
+     */
+    public DynamoDBReadStream<E> readAllAsStream() {
+        return scanStream(null, null, null);
+    }
+
+    /**
+     * Streams every item for a hash key. Pages are queried lazily as the stream is drained.
+     *
+     * @param identifier the hash key
+     * @return a stream of the items for the hash key
+     */
+    public DynamoDBReadStream<E> readAllWithoutPaginationAsStream(String identifier) {
+        return queryStream(identifier, null, null, null);
+    }
+
+    public DynamoDBReadStream<E> readAllWithoutPaginationAsStream(QueryPack queryPack, String[] projections,
+                                                                  String GSI) {
+        return scanStream(queryPack, projections, GSI);
+    }
+
+    public DynamoDBReadStream<E> readAllWithoutPaginationAsStream(String identifier, QueryPack queryPack,
+                                                                  String[] projections, String GSI) {
+        return queryStream(identifier, queryPack, projections, GSI);
+    }
+
+    private DynamoDBReadStream<E> scanStream(QueryPack queryPack, String[] projections, String GSI) {
+        final Map<String, List<FilterParameter>> params = queryPack == null ? null : queryPack.getParams();
+        final String shape = queryPack == null ? null : queryPack.getShape();
+
+        return new DynamoDBReadStream<>((startKey, pageHandler) ->
+                executor.<DynamoDBReadStream.Page<E>>executeBlocking(GSI, future -> {
+            try {
+                DynamoDBScanExpression scanExpression = buildScanExpression(params, projections, GSI);
+                scanExpression.setExclusiveStartKey(startKey);
+
+                ScanResultPage<E> page = DYNAMO_DB_MAPPER.scanPage(TYPE, scanExpression,
+                        shapeConfig(shape));
+
+                future.complete(new DynamoDBReadStream.Page<>(page.getResults(), page.getLastEvaluatedKey()));
+            } catch (AmazonServiceException ase) {
+                logger.error("Could not complete DynamoDB Operation, " +
+                        "Error Message:  " + ase.getMessage() + ", " +
+                        "HTTP Status:    " + ase.getStatusCode() + ", " +
+                        "AWS Error Code: " + ase.getErrorCode() + ", " +
+                        "Error Type:     " + ase.getErrorType() + ", " +
+                        "Request ID:     " + ase.getRequestId());
+
+                future.fail(ase);
+            } catch (AmazonClientException ace) {
+                logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                future.fail(ace);
+            } catch (Exception e) {
+                logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+                future.fail(e);
+            }
+        }, false, pageResult -> returnStreamPage(pageResult, pageHandler)));
+    }
+
+    private DynamoDBReadStream<E> queryStream(String identifier, QueryPack queryPack, String[] projections,
+                                              String GSI) {
+        final String shape = queryPack == null ? null : queryPack.getShape();
+
+        return new DynamoDBReadStream<>((startKey, pageHandler) ->
+                executor.<DynamoDBReadStream.Page<E>>executeBlocking(GSI, future -> {
+            try {
+                DynamoDBQueryExpression<E> queryExpression =
+                        buildQueryExpression(identifier, queryPack, projections, GSI);
+                queryExpression.setExclusiveStartKey(startKey);
+
+                QueryResultPage<E> page = DYNAMO_DB_MAPPER.queryPage(TYPE, queryExpression,
+                        shapeConfig(shape));
+
+                future.complete(new DynamoDBReadStream.Page<>(page.getResults(), page.getLastEvaluatedKey()));
+            } catch (AmazonServiceException ase) {
+                logger.error("Could not complete DynamoDB Operation, " +
+                        "Error Message:  " + ase.getMessage() + ", " +
+                        "HTTP Status:    " + ase.getStatusCode() + ", " +
+                        "AWS Error Code: " + ase.getErrorCode() + ", " +
+                        "Error Type:     " + ase.getErrorType() + ", " +
+                        "Request ID:     " + ase.getRequestId());
+
+                future.fail(ase);
+            } catch (AmazonClientException ace) {
+                logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                future.fail(ace);
+            } catch (Exception e) {
+                logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+                future.fail(e);
+            }
+        }, false, pageResult -> returnStreamPage(pageResult, pageHandler)));
+    }
+
+    private void returnStreamPage(AsyncResult<DynamoDBReadStream.Page<E>> pageResult,
+                                  Handler<AsyncResult<DynamoDBReadStream.Page<E>>> pageHandler) {
+        if (pageResult.failed()) {
+            logger.error("Error in readAllAsStream!", pageResult.cause());
+
+            pageHandler.handle(ServiceException.fail(500, "Error in readAllAsStream!",
+                    new JsonObject(Json.encode(pageResult.cause()))));
+        } else {
+            pageHandler.handle(Future.succeededFuture(pageResult.result()));
+        }
+    }
+
+    private DynamoDBScanExpression scanExpression() {
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
+        if (db.getScanPageSize() > 0) scanExpression.setLimit(db.getScanPageSize());
+
+        return scanExpression;
+    }
+
+    /**
+     * @param queryPack the query pack to filter by, or null for all items
+     * @param projections the projections, or null for full items
+     * @param GSI the index to scan, or null for the table
+     * @return the scan expression the unpaginated reads without an identifier are scanned with
+     */
+    DynamoDBScanExpression rootScanExpression(QueryPack queryPack, String[] projections, String GSI) {
+        return buildScanExpression(queryPack == null ? null : queryPack.getParams(), projections, GSI);
+    }
+
+    private DynamoDBScanExpression buildScanExpression(Map<String, List<FilterParameter>> params,
+                                                       String[] projections, String GSI) {
+        DynamoDBScanExpression scanExpression = scanExpression();
+        if (params != null) {
+            scanExpression = dbParams.applyParameters(params);
+            if (db.getScanPageSize() > 0) scanExpression.setLimit(db.getScanPageSize());
+        }
+
+        if (projections != null) {
+            setProjectionsOnScanExpression(scanExpression, projections);
+        }
+
+        if (GSI != null) {
+            scanExpression.setIndexName(GSI);
+            scanExpression.setConsistentRead(false);
+        }
+
+        return scanExpression;
+    }
+
+    private DynamoDBQueryExpression<E> buildQueryExpression(String identifier, QueryPack queryPack,
+                                                            String[] projections, String GSI)
+            throws IllegalAccessException, InstantiationException {
+        Queue<OrderByParameter> orderByQueue = queryPack == null ? null : queryPack.getOrderByQueue();
+        Map<String, List<FilterParameter>> params = queryPack == null ? null : queryPack.getParams();
+        String indexName = queryPack == null ? null : queryPack.getIndexName();
+
+        if (logger.isDebugEnabled()) { logger.debug("Building expression..."); }
+
+        DynamoDBQueryExpression<E> filterExpression;
+
+        if (params != null) {
+            filterExpression = dbParams.applyParameters(
+                    projections == null && orderByQueue != null ? orderByQueue.peek() : null,
+                    params);
+            if (projections == null) {
+                filterExpression = dbParams.applyOrderBy(orderByQueue, GSI, indexName, filterExpression);
+            }
+        } else {
+            filterExpression = new DynamoDBQueryExpression<>();
+        }
+
+        if (GSI == null) {
+            if (filterExpression.getKeyConditionExpression() == null) {
+                E keyItem = TYPE.newInstance();
+                keyItem.setHash(identifier);
+                filterExpression.setHashKeyValues(keyItem);
+            }
+
+            filterExpression.setConsistentRead(true);
+        } else {
+            filterExpression.setIndexName(GSI);
+
+            if (filterExpression.getKeyConditionExpression() == null) {
+                setFilterExpressionKeyCondition(filterExpression, GSI, identifier);
+            }
+        }
+
+        setProjectionsOnQueryExpression(filterExpression, projections);
+
+        return filterExpression;
+    }
+
     private void setFilterExpressionKeyCondition(DynamoDBQueryExpression<E> filterExpression,
                                                  String GSI, String identifier)
             throws IllegalAccessException, InstantiationException {
@@ -1476,4 +2517,49 @@ public class DynamoDBReader<E extends DynamoDBModel & Model & ETagable & Cacheab
     private String getPaginationIndex() {
         return PAGINATION_IDENTIFIER != null && !PAGINATION_IDENTIFIER.equals("") ? PAGINATION_INDEX : null;
     }
+
+    /**
+     * The state of a batch read between the cache check and the table fetch.
+     *
+     * @param <E> the model type
+     */
+    static final class BatchRead<E extends Model> {
+        private final List<JsonObject> identifiers;
+        private final String[] projections;
+        private final List<String> cacheIds;
+        private final List<ItemResult<E>> results;
+        private final Map<String, List<Integer>> misses;
+
+        private BatchRead(List<JsonObject> identifiers, String[] projections, List<String> cacheIds) {
+            this.identifiers = identifiers;
+            this.projections = projections;
+            this.cacheIds = cacheIds;
+            this.results = new ArrayList<>(Collections.nCopies(identifiers.size(), null));
+            this.misses = new LinkedHashMap<>();
+        }
+
+        boolean hasMisses() {
+            return !misses.isEmpty();
+        }
+
+        List<ItemResult<E>> results() {
+            return results;
+        }
+
+        /**
+         * Gives the cache misses a result with a null item, for when they could not be fetched.
+         *
+         * @return the indexes of the identifiers that could not be read
+         */
+        List<Integer> failMisses() {
+            List<Integer> failed = new ArrayList<>();
+
+            misses.values().forEach(indexes -> indexes.forEach(index -> {
+                results.set(index, new ItemResult<>(null, false));
+                failed.add(index);
+            }));
+
+            return failed;
+        }
+    }
 }
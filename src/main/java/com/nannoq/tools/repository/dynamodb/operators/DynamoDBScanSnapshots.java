@@ -0,0 +1,272 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class defines the sorted scan snapshots for the DynamoDBRepository. Queries that DynamoDB cannot serve in
+ * order are answered with a full scan, and the sorted result is kept as a snapshot per query shape. Pages are served
+ * from the snapshot with opaque cursors, so a page costs the size of the page rather than a new scan and sort.
+ * Snapshots expire after the ttl, the least recently used snapshot is evicted when the max number of snapshots is
+ * reached, and results larger than the max items are not snapshotted at all; the reader pages those with a scan per
+ * request.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBScanSnapshots<E extends DynamoDBModel> {
+    private final long ttl;
+    private final int maxSnapshots;
+    private final int maxItems;
+
+    private final LinkedHashMap<String, Snapshot<E>> snapshots;
+
+    /**
+     * @param ttl the time in milliseconds a snapshot is served before it is rebuilt
+     * @param maxSnapshots the max number of snapshots kept
+     * @param maxItems the max number of items in a snapshot that is kept
+     */
+    public DynamoDBScanSnapshots(long ttl, int maxSnapshots, int maxItems) {
+        this.ttl = ttl;
+        this.maxSnapshots = maxSnapshots;
+        this.maxItems = maxItems;
+        this.snapshots = new LinkedHashMap<String, Snapshot<E>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot<E>> eldest) {
+                return size() > DynamoDBScanSnapshots.this.maxSnapshots;
+            }
+        };
+    }
+
+    /**
+     * @param shape the query shape
+     * @return the snapshot for the shape, or null if there is none or it has expired
+     */
+    public synchronized Snapshot<E> get(String shape) {
+        Snapshot<E> snapshot = snapshots.get(shape);
+
+        if (snapshot != null && snapshot.isExpired()) {
+            snapshots.remove(shape);
+
+            return null;
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Sorts the items and creates a snapshot of them. The sort key of every item is extracted once.
+     *
+     * @param shape the query shape
+     * @param items the unsorted items
+     * @param sortKey extracts the sort key of an item
+     * @param ascending the sort direction
+     * @return the snapshot, which is only kept if it is within the max items
+     */
+    public Snapshot<E> create(String shape, List<E> items, Function<E, String> sortKey, boolean ascending) {
+        List<String> keys = items.stream().map(sortKey).collect(toList());
+        Comparator<Integer> order = (a, b) -> compare(ascending,
+                keys.get(a), items.get(a).getHash(), items.get(a).getRange(),
+                keys.get(b), items.get(b).getHash(), items.get(b).getRange());
+
+        List<Integer> positions = IntStream.range(0, items.size()).boxed()
+                .sorted(order)
+                .collect(toList());
+        List<E> sorted = positions.stream().map(items::get).collect(toList());
+        List<String> sortedKeys = positions.stream().map(keys::get).collect(toList());
+
+        Snapshot<E> snapshot = new Snapshot<>(UUID.randomUUID().toString(), System.currentTimeMillis() + ttl,
+                ascending, Collections.unmodifiableList(sorted), sortedKeys);
+
+        if (sorted.size() <= maxItems) {
+            synchronized (this) {
+                snapshots.put(shape, snapshot);
+            }
+        }
+
+        return snapshot;
+    }
+
+    public synchronized void invalidate() {
+        snapshots.clear();
+    }
+
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * @param snapshot the snapshot the cursor points into
+     * @param offset the index of the first item of the next page
+     * @return an opaque cursor, which also carries the sort key and key of the last item served so a rebuilt
+     * snapshot can be resumed
+     */
+    public String cursor(Snapshot<E> snapshot, int offset) {
+        E lastItem = snapshot.getItems().get(offset - 1);
+        JsonObject cursor = new JsonObject()
+                .put("snapshot", snapshot.getId())
+                .put("offset", offset)
+                .put("sortKey", snapshot.sortKeys.get(offset - 1))
+                .put("hash", lastItem.getHash());
+
+        if (lastItem.getRange() != null) cursor.put("range", lastItem.getRange());
+
+        return Base64.getUrlEncoder().encodeToString(cursor.encode().getBytes());
+    }
+
+    /**
+     * @param pageToken a page token
+     * @return the decoded cursor, or null if the token is not a snapshot cursor
+     */
+    public static JsonObject decodeCursor(String pageToken) {
+        if (pageToken == null) return null;
+
+        try {
+            JsonObject cursor = new JsonObject(new String(Base64.getUrlDecoder().decode(pageToken)));
+
+            return cursor.getString("snapshot") != null && cursor.getInteger("offset") != null ? cursor : null;
+        } catch (IllegalArgumentException | DecodeException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Orders items by sort key, then by hash and range, so every item has a fixed position that can be found again
+     * in a rebuilt snapshot even if the item itself is gone.
+     */
+    private static int compare(boolean ascending, String sortKey, String hash, String range,
+                               String otherSortKey, String otherHash, String otherRange) {
+        Comparator<String> keyOrder = Comparator.nullsFirst(Comparator.<String>naturalOrder());
+        int result = keyOrder.compare(sortKey, otherSortKey);
+        if (result == 0) result = keyOrder.compare(hash, otherHash);
+        if (result == 0) result = keyOrder.compare(range, otherRange);
+
+        return ascending ? result : -result;
+    }
+
+    public static class Snapshot<E extends DynamoDBModel> {
+        private final String id;
+        private final long expires;
+        private final boolean ascending;
+        private final List<E> items;
+        private final List<String> sortKeys;
+
+        private Snapshot(String id, long expires, boolean ascending, List<E> items, List<String> sortKeys) {
+            this.id = id;
+            this.expires = expires;
+            this.ascending = ascending;
+            this.items = items;
+            this.sortKeys = sortKeys;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<E> getItems() {
+            return items;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+
+        /**
+         * @param cursor a decoded cursor
+         * @return the offset of the next page, relocated by the sort key and key of the last item if the cursor is
+         * from an earlier snapshot
+         */
+        public int offsetOf(JsonObject cursor) {
+            if (id.equals(cursor.getString("snapshot"))) return Math.min(cursor.getInteger("offset"), items.size());
+            if (!cursor.containsKey("sortKey")) return indexAfter(cursor.getString("hash"), cursor.getString("range"));
+
+            return indexAfter(cursor.getString("sortKey"), cursor.getString("hash"), cursor.getString("range"));
+        }
+
+        /**
+         * @param sortKey the sort key of the last item served
+         * @param hash the hash of the last item served
+         * @param range the range of the last item served
+         * @return the index of the first item that sorts after the last item served, whether or not that item is
+         * still in the snapshot
+         */
+        public int indexAfter(String sortKey, String hash, String range) {
+            int low = 0;
+            int high = items.size();
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                E item = items.get(mid);
+
+                if (compare(ascending, sortKeys.get(mid), item.getHash(), item.getRange(), sortKey, hash, range) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * @param hash the hash of the last item served, or null to match on range only
+         * @param range the range of the last item served, or null to match on hash only
+         * @return the index after the item, or 0 if it is not in the snapshot, used for page tokens that carry no
+         * sort key
+         */
+        public int indexAfter(String hash, String range) {
+            if (hash == null && range == null) return 0;
+
+            for (int i = 0; i < items.size(); i++) {
+                E item = items.get(i);
+
+                if ((hash == null || hash.equals(item.getHash())) && (range == null || range.equals(item.getRange()))) {
+                    return i + 1;
+                }
+            }
+
+            return 0;
+        }
+
+        public List<E> page(int offset, int count) {
+            return new ArrayList<>(items.subList(Math.min(offset, items.size()),
+                    Math.min(offset + count, items.size())));
+        }
+    }
+}
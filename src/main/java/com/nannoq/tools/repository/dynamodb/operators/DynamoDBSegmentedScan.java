@@ -0,0 +1,429 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import io.vertx.core.*;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class defines the segmented parallel scan for the DynamoDBRepository. The table is split into a fixed number of
+ * segments, and every segment is scanned as an independent cursor, one page at a time. The read capacity budget is
+ * divided evenly across the segments, and each segment waits for its share before fetching the next page. The
+ * position of every segment can be checkpointed after each page, and a scan created from a checkpoint resumes where
+ * the segments left off.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBSegmentedScan<E extends DynamoDBModel & Model & ETagable & Cacheable> {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBSegmentedScan.class.getSimpleName());
+
+    private static final int MAX_THROTTLE_RETRIES = 10;
+
+    private final Vertx vertx;
+    private final DynamoDBRepository<E> db;
+    private final DynamoDBWorkerExecutor executor;
+    private final String table;
+    private final int totalSegments;
+    private final int pageSize;
+    private final double readCapacity;
+    private final DynamoDBRateLimiter segmentLimiter;
+    private final List<Segment> segments;
+
+    private DynamoDBScanExpression expression;
+    private Handler<JsonObject> checkpointHandler;
+    private volatile boolean stopped;
+
+    /**
+     * @param vertx the vertx instance
+     * @param db the repository to scan
+     * @param totalSegments the number of segments to split the table into
+     * @param pageSize the max number of items per page, or 0 for DynamoDB's 1 MB pages
+     * @param readCapacity the read capacity units per second for the whole scan, or 0 for no limit
+     */
+    public DynamoDBSegmentedScan(Vertx vertx, DynamoDBRepository<E> db, int totalSegments, int pageSize,
+                                 double readCapacity) {
+        if (totalSegments < 1) throw new IllegalArgumentException("A scan must have at least one segment!");
+
+        this.vertx = vertx;
+        this.db = db;
+        this.executor = db.getWorkerExecutor();
+        this.table = db.getCollection();
+        this.totalSegments = totalSegments;
+        this.pageSize = pageSize;
+        this.readCapacity = readCapacity;
+        this.segments = IntStream.range(0, totalSegments)
+                .mapToObj(Segment::new)
+                .collect(toList());
+
+        if (readCapacity > 0) {
+            double segmentCapacity = readCapacity / totalSegments;
+
+            segmentLimiter = new DynamoDBRateLimiter(vertx,
+                    segmentCapacity, segmentCapacity, segmentCapacity, Long.MAX_VALUE);
+        } else {
+            segmentLimiter = null;
+        }
+    }
+
+    /**
+     * Applies the filter, projection and index of the expression to every segment.
+     *
+     * @param expression the expression to scan with
+     * @return this scan
+     */
+    public DynamoDBSegmentedScan<E> withExpression(DynamoDBScanExpression expression) {
+        this.expression = expression;
+
+        return this;
+    }
+
+    /**
+     * Restores the position of every segment from a checkpoint.
+     *
+     * @param checkpoint a checkpoint produced by a scan with the same number of segments
+     * @return this scan
+     */
+    public DynamoDBSegmentedScan<E> fromCheckpoint(JsonObject checkpoint) {
+        if (checkpoint.getInteger("totalSegments", -1) != totalSegments) {
+            throw new IllegalArgumentException("Checkpoint has " + checkpoint.getInteger("totalSegments") +
+                    " segments, this scan has " + totalSegments + "!");
+        }
+
+        checkpoint.getJsonArray("segments").forEach(segmentJson -> {
+            JsonObject json = (JsonObject) segmentJson;
+            Segment segment = segments.get(json.getInteger("segment"));
+            segment.done = json.getBoolean("done", false);
+            segment.scannedCount = json.getLong("scannedCount", 0L);
+            segment.lastEvaluatedKey = json.getJsonObject("lastEvaluatedKey") == null ? null :
+                    keyFromJson(json.getJsonObject("lastEvaluatedKey"));
+        });
+
+        return this;
+    }
+
+    /**
+     * @param checkpointHandler receives a new checkpoint every time a segment has processed a page
+     * @return this scan
+     */
+    public DynamoDBSegmentedScan<E> checkpointHandler(Handler<JsonObject> checkpointHandler) {
+        this.checkpointHandler = checkpointHandler;
+
+        return this;
+    }
+
+    /**
+     * Scans all segments in parallel. The page handler is called on the calling context with every page, and the
+     * result handler is called when all segments are done or the scan is stopped.
+     *
+     * @param pageHandler the handler for every page of items
+     * @param resultHandler the handler for the completion of the scan
+     */
+    public void scan(Handler<List<E>> pageHandler, Handler<AsyncResult<Void>> resultHandler) {
+        scanSegments(segment -> pageHandler, resultHandler);
+    }
+
+    /**
+     * Scans all segments in parallel with a page handler per segment, so every segment can keep its own state. The
+     * page handlers are called on the calling context, and the result handler is called when all segments are done or
+     * the scan is stopped.
+     *
+     * @param segmentPageHandlers gives the handler for the pages of a segment, by segment number
+     * @param resultHandler the handler for the completion of the scan
+     */
+    @SuppressWarnings("unchecked")
+    public void scanSegments(IntFunction<Handler<List<E>>> segmentPageHandlers,
+                             Handler<AsyncResult<Void>> resultHandler) {
+        stopped = false;
+
+        List<Future> segmentFutures = segments.stream()
+                .map(segment -> {
+                    Future<Void> segmentFuture = Future.future();
+                    scanSegment(segment, segmentPageHandlers.apply(segment.segment), 0, segmentFuture);
+
+                    return segmentFuture;
+                })
+                .collect(toList());
+
+        CompositeFuture.all(segmentFutures).setHandler(res -> {
+            if (res.failed()) {
+                logger.error("Error in segmented scan of " + table + "!", res.cause());
+
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture());
+            }
+        });
+    }
+
+    /**
+     * Scans all segments in parallel and collects the items.
+     *
+     * @param resultHandler the handler for the items
+     */
+    public void readAll(Handler<AsyncResult<List<E>>> resultHandler) {
+        List<E> items = new ArrayList<>();
+
+        scan(items::addAll, res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(items));
+            }
+        });
+    }
+
+    /**
+     * Stops the scan after the pages in flight. The scan can be continued from its checkpoint.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isComplete() {
+        return segments.stream().allMatch(segment -> segment.done);
+    }
+
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public double getReadCapacity() {
+        return readCapacity;
+    }
+
+    /**
+     * @return the position of every segment, which can be persisted and passed to fromCheckpoint
+     */
+    public JsonObject checkpoint() {
+        JsonArray segmentArray = new JsonArray();
+        segments.forEach(segment -> segmentArray.add(segment.toJson()));
+
+        return new JsonObject()
+                .put("table", table)
+                .put("totalSegments", totalSegments)
+                .put("segments", segmentArray);
+    }
+
+    private void scanSegment(Segment segment, Handler<List<E>> pageHandler, int attempt, Future<Void> segmentFuture) {
+        if (segment.done || stopped) {
+            segmentFuture.tryComplete();
+
+            return;
+        }
+
+        if (segmentLimiter == null) {
+            fetchPage(segment, pageHandler, attempt, segmentFuture);
+        } else {
+            segmentLimiter.acquire(segment.key(), permit -> {
+                if (permit.failed()) {
+                    segmentFuture.tryFail(permit.cause());
+                } else {
+                    fetchPage(segment, pageHandler, attempt, segmentFuture);
+                }
+            });
+        }
+    }
+
+    private void fetchPage(Segment segment, Handler<List<E>> pageHandler, int attempt, Future<Void> segmentFuture) {
+        final ScanRequest request = DynamoDBCapacityRegistry.withShape(buildRequest(segment), "segmentedScan");
+
+        executor.<ScanResult>executeBlocking(request.getIndexName(), future -> {
+            try {
+                future.complete(db.getDynamoDbClient().scan(request));
+            } catch (AmazonServiceException ase) {
+                logger.error("Could not complete DynamoDB Operation, " +
+                        "Error Message:  " + ase.getMessage() + ", " +
+                        "HTTP Status:    " + ase.getStatusCode() + ", " +
+                        "AWS Error Code: " + ase.getErrorCode() + ", " +
+                        "Error Type:     " + ase.getErrorType() + ", " +
+                        "Request ID:     " + ase.getRequestId());
+
+                future.fail(ase);
+            } catch (AmazonClientException ace) {
+                logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                future.fail(ace);
+            } catch (Exception e) {
+                logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+                future.fail(e);
+            }
+        }, false, scanResult -> {
+            if (scanResult.failed()) {
+                if (DynamoDBRateLimiter.isThrottle(scanResult.cause()) && attempt < MAX_THROTTLE_RETRIES) {
+                    if (segmentLimiter != null) segmentLimiter.onThrottle(segment.key());
+
+                    vertx.setTimer(DynamoDBBatchWriter.backoff(attempt), id ->
+                            scanSegment(segment, pageHandler, attempt + 1, segmentFuture));
+                } else {
+                    segmentFuture.tryFail(new ServiceException(500, "Unable to scan segment " + segment.segment +
+                            " of " + table + "!", checkpoint()));
+                }
+
+                return;
+            }
+
+            ScanResult result = scanResult.result();
+
+            if (segmentLimiter != null) {
+                segmentLimiter.release(segment.key());
+                segmentLimiter.onSuccess(segment.key());
+
+                if (result.getConsumedCapacity() != null && result.getConsumedCapacity().getCapacityUnits() != null) {
+                    segmentLimiter.charge(segment.key(), result.getConsumedCapacity().getCapacityUnits());
+                }
+            }
+
+            List<E> items = result.getItems().stream()
+                    .map(item -> db.getAsyncExecutor().unconvert(item))
+                    .collect(toList());
+
+            segment.advance(result.getLastEvaluatedKey(), result.getScannedCount());
+
+            if (!items.isEmpty()) pageHandler.handle(items);
+            if (checkpointHandler != null) checkpointHandler.handle(checkpoint());
+
+            scanSegment(segment, pageHandler, 0, segmentFuture);
+        });
+    }
+
+    private ScanRequest buildRequest(Segment segment) {
+        ScanRequest request = new ScanRequest(table)
+                .withSegment(segment.segment)
+                .withTotalSegments(totalSegments)
+                .withExclusiveStartKey(segment.lastEvaluatedKey)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+        if (pageSize > 0) request.setLimit(pageSize);
+
+        if (expression != null) {
+            request.setIndexName(expression.getIndexName());
+            request.setFilterExpression(expression.getFilterExpression());
+            request.setExpressionAttributeNames(expression.getExpressionAttributeNames());
+            request.setExpressionAttributeValues(expression.getExpressionAttributeValues());
+            request.setProjectionExpression(expression.getProjectionExpression());
+            request.setSelect(expression.getSelect());
+            request.setConsistentRead(expression.isConsistentRead());
+        }
+
+        return request;
+    }
+
+    static JsonObject keyToJson(Map<String, AttributeValue> key) {
+        JsonObject json = new JsonObject();
+
+        key.forEach((name, value) -> {
+            if (value.getS() != null) {
+                json.put(name, new JsonObject().put("S", value.getS()));
+            } else if (value.getN() != null) {
+                json.put(name, new JsonObject().put("N", value.getN()));
+            } else if (value.getB() != null) {
+                ByteBuffer buffer = value.getB().duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+
+                json.put(name, new JsonObject().put("B", bytes));
+            }
+        });
+
+        return json;
+    }
+
+    static Map<String, AttributeValue> keyFromJson(JsonObject json) {
+        Map<String, AttributeValue> key = new HashMap<>();
+
+        json.fieldNames().forEach(name -> {
+            JsonObject value = json.getJsonObject(name);
+
+            if (value.containsKey("S")) {
+                key.put(name, new AttributeValue().withS(value.getString("S")));
+            } else if (value.containsKey("N")) {
+                key.put(name, new AttributeValue().withN(value.getString("N")));
+            } else if (value.containsKey("B")) {
+                key.put(name, new AttributeValue().withB(ByteBuffer.wrap(value.getBinary("B"))));
+            }
+        });
+
+        return key;
+    }
+
+    private class Segment {
+        private final int segment;
+        private Map<String, AttributeValue> lastEvaluatedKey;
+        private long scannedCount;
+        private boolean done;
+
+        private Segment(int segment) {
+            this.segment = segment;
+        }
+
+        private String key() {
+            return table + "/segment/" + segment;
+        }
+
+        private void advance(Map<String, AttributeValue> lastEvaluatedKey, Integer scannedCount) {
+            this.lastEvaluatedKey = lastEvaluatedKey == null || lastEvaluatedKey.isEmpty() ? null : lastEvaluatedKey;
+            this.scannedCount += scannedCount == null ? 0 : scannedCount;
+            this.done = this.lastEvaluatedKey == null;
+        }
+
+        private JsonObject toJson() {
+            return new JsonObject()
+                    .put("segment", segment)
+                    .put("done", done)
+                    .put("scannedCount", scannedCount)
+                    .put("lastEvaluatedKey", lastEvaluatedKey == null ? null : keyToJson(lastEvaluatedKey));
+        }
+    }
+}
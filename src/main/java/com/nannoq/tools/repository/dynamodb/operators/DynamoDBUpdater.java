@@ -25,17 +25,35 @@
 
 package com.nannoq.tools.repository.dynamodb.operators;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.nannoq.tools.repository.dynamodb.DynamoDBRepository;
 import com.nannoq.tools.repository.models.Cacheable;
 import com.nannoq.tools.repository.models.DynamoDBModel;
 import com.nannoq.tools.repository.models.ETagable;
 import com.nannoq.tools.repository.models.Model;
 import com.nannoq.tools.repository.repository.Repository;
+import com.nannoq.tools.repository.repository.cache.CacheManager;
+import com.nannoq.tools.repository.repository.etag.ETagManager;
+import io.vertx.core.*;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.serviceproxy.ServiceException;
 
 import java.lang.reflect.Field;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 import static com.nannoq.tools.repository.repository.Repository.INCREMENTATION.ADDITION;
 import static com.nannoq.tools.repository.repository.Repository.INCREMENTATION.SUBTRACTION;
@@ -49,10 +67,47 @@ import static com.nannoq.tools.repository.repository.Repository.INCREMENTATION.S
 public class DynamoDBUpdater<E extends DynamoDBModel & Model & ETagable & Cacheable> {
     private static final Logger logger = LoggerFactory.getLogger(DynamoDBUpdater.class.getSimpleName());
 
+    private final Class<E> TYPE;
+    private final Vertx vertx;
+    private final DynamoDBWorkerExecutor executor;
     private final DynamoDBRepository<E> db;
 
-    public DynamoDBUpdater(DynamoDBRepository<E> db) {
+    private final CacheManager<E> cacheManager;
+    private final ETagManager<E> eTagManager;
+
+    private final String HASH_IDENTIFIER;
+    private final String IDENTIFIER;
+    private final String VERSION_IDENTIFIER;
+
+    private final Function<E, String> shortCacheIdSupplier;
+    private final Function<E, String> cacheIdSupplier;
+
+    public DynamoDBUpdater(Class<E> type, Vertx vertx, DynamoDBRepository<E> db,
+                           String HASH_IDENTIFIER, String IDENTIFIER,
+                           CacheManager<E> cacheManager,
+                           ETagManager<E> eTagManager) {
+        TYPE = type;
+        this.vertx = vertx;
         this.db = db;
+        this.executor = db.getWorkerExecutor();
+        this.cacheManager = cacheManager;
+        this.eTagManager = eTagManager;
+        this.HASH_IDENTIFIER = HASH_IDENTIFIER;
+        this.IDENTIFIER = IDENTIFIER;
+        this.VERSION_IDENTIFIER = Arrays.stream(type.getDeclaredMethods())
+                .filter(m -> m.getDeclaredAnnotation(DynamoDBVersionAttribute.class) != null)
+                .map(m -> DynamoDBRepository.stripGet(m.getName()))
+                .findFirst()
+                .orElse(null);
+
+        cacheIdSupplier = e -> {
+            String hash = e.getHash();
+            String range = e.getRange();
+
+            return TYPE.getSimpleName() + "_" + hash + (range == null || range.equals("") ? "" : "/" + range);
+        };
+
+        shortCacheIdSupplier = e -> TYPE.getSimpleName() + "_" + e.getHash();
     }
 
     public boolean incrementField(E record, String fieldName) throws IllegalArgumentException {
@@ -79,6 +134,188 @@ public class DynamoDBUpdater<E extends DynamoDBModel & Model & ETagable & Cachea
         }
     }
 
+    /**
+     * Increments the field on the server with a single UpdateItem ADD expression, without reading the record first.
+     *
+     * @param record the record to increment, only the keys are used
+     * @param fieldName the numeric field to increment
+     * @param resultHandler the handler for the record as stored after the increment
+     */
+    public void atomicIncrementField(E record, String fieldName, Handler<AsyncResult<E>> resultHandler) {
+        doAtomicCrementation(record, fieldName, ADDITION, resultHandler);
+    }
+
+    /**
+     * Decrements the field on the server with a single UpdateItem ADD expression, without reading the record first.
+     * Like decrementField the value is never brought below zero, a decrement of zero returns the record unchanged.
+     *
+     * @param record the record to decrement, only the keys are used
+     * @param fieldName the numeric field to decrement
+     * @param resultHandler the handler for the record as stored after the decrement
+     */
+    public void atomicDecrementField(E record, String fieldName, Handler<AsyncResult<E>> resultHandler) {
+        doAtomicCrementation(record, fieldName, SUBTRACTION, resultHandler);
+    }
+
+    @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
+    private void doAtomicCrementation(E record, String fieldName, Repository.INCREMENTATION direction,
+                                      Handler<AsyncResult<E>> resultHandler) {
+        try {
+            db.checkAndGetField(fieldName);
+        } catch (IllegalArgumentException e) {
+            resultHandler.handle(ServiceException.fail(400, e.getMessage()));
+
+            return;
+        }
+
+        if (db.isAsyncExecutionEnabled()) {
+            DynamoDBAsyncExecutor<E> asyncExecutor = db.getAsyncExecutor();
+
+            asyncExecutor.updateItem(buildCrementationRequest(record, fieldName, direction), updateRes -> {
+                if (updateRes.succeeded()) {
+                    refreshCacheAndEtags(asyncExecutor.unconvert(updateRes.result().getAttributes()), resultHandler);
+                } else if (updateRes.cause() instanceof ConditionalCheckFailedException) {
+                    asyncExecutor.load(record.getHash(), record.getRange(), true, loadRes -> {
+                        if (loadRes.failed()) {
+                            failCrementation(loadRes.cause(), resultHandler);
+                        } else if (loadRes.result() == null) {
+                            failCrementation(new NoSuchElementException(), resultHandler);
+                        } else {
+                            resultHandler.handle(Future.succeededFuture(loadRes.result()));
+                        }
+                    });
+                } else {
+                    failCrementation(updateRes.cause(), resultHandler);
+                }
+            });
+
+            return;
+        }
+
+        executor.<E>executeBlocking(future -> {
+            try {
+                future.complete(db.getDynamoDbMapper().getTableModel(TYPE).unconvert(db.getDynamoDbClient()
+                        .updateItem(buildCrementationRequest(record, fieldName, direction))
+                        .getAttributes()));
+            } catch (ConditionalCheckFailedException e) {
+                E current = db.fetchNewestRecord(TYPE, record.getHash(), record.getRange());
+
+                if (current == null) {
+                    future.fail(new NoSuchElementException());
+                } else {
+                    future.complete(current);
+                }
+            } catch (AmazonServiceException ase) {
+                logger.error("Could not complete DynamoDB Operation, " +
+                        "Error Message:  " + ase.getMessage() + ", " +
+                        "HTTP Status:    " + ase.getStatusCode() + ", " +
+                        "AWS Error Code: " + ase.getErrorCode() + ", " +
+                        "Error Type:     " + ase.getErrorType() + ", " +
+                        "Request ID:     " + ase.getRequestId());
+
+                future.fail(ase);
+            } catch (AmazonClientException ace) {
+                logger.error("Internal Dynamodb Error, " + "Error Message:  " + ace.getMessage());
+
+                future.fail(ace);
+            } catch (Exception e) {
+                logger.error(e + " : " + e.getMessage() + " : " + Arrays.toString(e.getStackTrace()));
+
+                future.fail(e);
+            }
+        }, false, result -> {
+            if (result.failed()) {
+                failCrementation(result.cause(), resultHandler);
+            } else {
+                refreshCacheAndEtags(result.result(), resultHandler);
+            }
+        });
+    }
+
+    @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
+    private void failCrementation(Throwable cause, Handler<AsyncResult<E>> resultHandler) {
+        if (cause instanceof NoSuchElementException) {
+            resultHandler.handle(ServiceException.fail(404, "Not found!"));
+        } else {
+            logger.error("Error in atomic crementation!", cause);
+
+            resultHandler.handle(ServiceException.fail(500,
+                    "An error occured when running atomic crementation: " + cause.getMessage(),
+                    new JsonObject(Json.encode(cause))));
+        }
+    }
+
+    private UpdateItemRequest buildCrementationRequest(E record, String fieldName,
+                                                       Repository.INCREMENTATION direction) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put(HASH_IDENTIFIER, new AttributeValue().withS(record.getHash()));
+        if (!IDENTIFIER.equals("")) key.put(IDENTIFIER, new AttributeValue().withS(record.getRange()));
+
+        Map<String, String> names = new HashMap<>();
+        names.put("#hash", HASH_IDENTIFIER);
+        names.put("#field", db.getAttributeName(fieldName));
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":delta", new AttributeValue().withN(direction == ADDITION ? "1" : "-1"));
+
+        String updateExpression = "ADD #field :delta";
+        String conditionExpression = "attribute_exists(#hash)";
+
+        if (direction == SUBTRACTION) {
+            values.put(":zero", new AttributeValue().withN("0"));
+            conditionExpression += " AND #field > :zero";
+        }
+
+        if (VERSION_IDENTIFIER != null) {
+            names.put("#version", VERSION_IDENTIFIER);
+            values.put(":one", new AttributeValue().withN("1"));
+            updateExpression += ", #version :one";
+        }
+
+        return new UpdateItemRequest()
+                .withTableName(db.getCollection())
+                .withKey(key)
+                .withUpdateExpression(updateExpression)
+                .withConditionExpression(conditionExpression)
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values)
+                .withReturnValues(ReturnValue.ALL_NEW);
+    }
+
+    private void refreshCacheAndEtags(E record, Handler<AsyncResult<E>> resultHandler) {
+        if (eTagManager != null) {
+            eTagManager.setSingleRecordEtag(record.generateAndSetEtag(new HashMap<>()), tagResult -> {
+                if (tagResult.failed()) logger.error("Failed etag operation!", tagResult.cause());
+            });
+        }
+
+        Future<Boolean> purgeFuture = Future.future();
+        purgeFuture.setHandler(purgeRes -> {
+            if (eTagManager == null) {
+                resultHandler.handle(Future.succeededFuture(record));
+            } else {
+                final int hashId = new JsonObject().put("hash", record.getHash()).encode().hashCode();
+                Future<Boolean> removeProjections = Future.future();
+                Future<Boolean> removeETags = Future.future();
+
+                eTagManager.removeProjectionsEtags(hashId, removeProjections.completer());
+                eTagManager.destroyEtags(hashId, removeETags.completer());
+
+                CompositeFuture.all(removeProjections, removeETags).setHandler(res -> {
+                    if (res.failed()) {
+                        resultHandler.handle(Future.failedFuture(res.cause()));
+                    } else {
+                        resultHandler.handle(Future.succeededFuture(record));
+                    }
+                });
+            }
+        });
+
+        db.invalidateReadCaches();
+        db.getMaterializedAggregates().written(Collections.singletonList(record));
+        cacheManager.replaceCache(purgeFuture, Collections.singletonList(record), shortCacheIdSupplier, cacheIdSupplier);
+    }
+
     private boolean doCrementation(E record, Field field, Repository.INCREMENTATION direction)
             throws IllegalAccessException {
         if (field.getType() == Long.class) {
@@ -0,0 +1,218 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import io.vertx.core.*;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class defines the worker executor for the DynamoDBRepository. It runs blocking operations on a named worker pool
+ * for the model, or on the default Vert.x pool if no size is given, and rejects work with a 503 when the number of
+ * queued operations is at the configured bound.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBWorkerExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBWorkerExecutor.class.getSimpleName());
+
+    private final Vertx vertx;
+    private final String name;
+    private final int poolSize;
+    private final int maxQueueSize;
+    private final WorkerExecutor workerExecutor;
+    private final String table;
+    private final DynamoDBRateLimiter rateLimiter;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * @param vertx the vertx instance
+     * @param name the name of the worker pool, executors with the same name share the pool
+     * @param poolSize the number of threads in the pool, 0 or less runs on the default worker pool
+     * @param maxQueueSize the number of operations allowed to wait for a thread, 0 or less is unbounded
+     */
+    public DynamoDBWorkerExecutor(Vertx vertx, String name, int poolSize, int maxQueueSize) {
+        this(vertx, name, poolSize, maxQueueSize, null, null);
+    }
+
+    /**
+     * @param vertx the vertx instance
+     * @param name the name of the worker pool, executors with the same name share the pool
+     * @param poolSize the number of threads in the pool, 0 or less runs on the default worker pool
+     * @param maxQueueSize the number of operations allowed to wait for a thread, 0 or less is unbounded
+     * @param table the table the operations run against
+     * @param rateLimiter the rate limiter to pace operations with, null to run them unpaced
+     */
+    public DynamoDBWorkerExecutor(Vertx vertx, String name, int poolSize, int maxQueueSize,
+                                  String table, DynamoDBRateLimiter rateLimiter) {
+        this.vertx = vertx;
+        this.table = table;
+        this.rateLimiter = rateLimiter;
+        this.name = name;
+        this.poolSize = poolSize;
+        this.maxQueueSize = maxQueueSize;
+        this.workerExecutor = poolSize > 0 ? vertx.createSharedWorkerExecutor(name, poolSize) : null;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Worker executor " + name + " running with pool: " + poolSize + ", queue: " + maxQueueSize);
+        }
+    }
+
+    public <T> void executeBlocking(Handler<Future<T>> blockingCodeHandler, boolean ordered,
+                                    Handler<AsyncResult<T>> resultHandler) {
+        executeBlocking(null, blockingCodeHandler, ordered, resultHandler);
+    }
+
+    /**
+     * Runs the blocking code once a permit for the table, or the index if given, is available from the rate limiter.
+     * The outcome of the operation is reported back to the rate limiter, which charges every request sent from the
+     * blocking code.
+     *
+     * @param index the index the operation runs against, null for the table
+     * @param blockingCodeHandler the blocking code
+     * @param ordered if the operations should run in order
+     * @param resultHandler the handler for the result
+     */
+    public <T> void executeBlocking(String index, Handler<Future<T>> blockingCodeHandler, boolean ordered,
+                                    Handler<AsyncResult<T>> resultHandler) {
+        if (rateLimiter == null) {
+            submit(blockingCodeHandler, ordered, resultHandler);
+
+            return;
+        }
+
+        rateLimiter.<T>execute(rateLimitKey(index), operation ->
+                submit(blockingCodeHandler, ordered, operation.completer()), resultHandler);
+    }
+
+    public String rateLimitKey(String index) {
+        return index == null ? table : table + "/" + index;
+    }
+
+    public DynamoDBRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    private <T> void submit(Handler<Future<T>> blockingCodeHandler, boolean ordered,
+                            Handler<AsyncResult<T>> resultHandler) {
+        submitted.increment();
+
+        if (queueDepth.incrementAndGet() > maxQueueSize && maxQueueSize > 0) {
+            queueDepth.decrementAndGet();
+            rejected.increment();
+
+            logger.warn("Worker queue for " + name + " is full, rejecting operation!");
+
+            resultHandler.handle(ServiceException.fail(503, "Too many queued operations for " + name + "!",
+                    getMetrics()));
+
+            return;
+        }
+
+        final long enqueuedAt = System.nanoTime();
+
+        Handler<Future<T>> timedHandler = future -> {
+            long waitTime = System.nanoTime() - enqueuedAt;
+            queueDepth.decrementAndGet();
+            active.incrementAndGet();
+            started.increment();
+            totalWaitTime.add(waitTime);
+            maxWaitTime.accumulateAndGet(waitTime, Math::max);
+
+            Future<T> operation = Future.future();
+            operation.setHandler(result -> {
+                active.decrementAndGet();
+
+                if (result.succeeded()) {
+                    future.tryComplete(result.result());
+                } else {
+                    future.tryFail(result.cause());
+                }
+            });
+
+            try {
+                blockingCodeHandler.handle(operation);
+            } catch (RuntimeException | Error e) {
+                operation.tryFail(e);
+            }
+        };
+
+        if (workerExecutor != null) {
+            workerExecutor.executeBlocking(timedHandler, ordered, resultHandler);
+        } else {
+            vertx.executeBlocking(timedHandler, ordered, resultHandler);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return the current queue depth, active count, totals and wait times in milliseconds
+     */
+    public JsonObject getMetrics() {
+        long startedCount = started.sum();
+
+        return new JsonObject()
+                .put("name", name)
+                .put("poolSize", poolSize)
+                .put("maxQueueSize", maxQueueSize)
+                .put("queueDepth", queueDepth.get())
+                .put("active", active.get())
+                .put("submitted", submitted.sum())
+                .put("rejected", rejected.sum())
+                .put("averageWaitTime", startedCount == 0 ? 0.0 :
+                        TimeUnit.NANOSECONDS.toMicros(totalWaitTime.sum() / startedCount) / 1000.0)
+                .put("maxWaitTime", TimeUnit.NANOSECONDS.toMicros(maxWaitTime.get()) / 1000.0);
+    }
+
+    /**
+     * Closes the worker pool, operations already submitted are allowed to finish.
+     */
+    public void close() {
+        if (workerExecutor != null) workerExecutor.close();
+    }
+}
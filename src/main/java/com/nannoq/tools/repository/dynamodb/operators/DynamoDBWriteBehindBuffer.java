@@ -0,0 +1,227 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.models.Cacheable;
+import com.nannoq.tools.repository.models.DynamoDBModel;
+import com.nannoq.tools.repository.models.ETagable;
+import com.nannoq.tools.repository.models.Model;
+import com.nannoq.tools.repository.repository.results.UpdateResult;
+import io.vertx.core.*;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * This class defines the write-behind buffer for the DynamoDBRepository. Updates to the same hash/range key that arrive
+ * within the window are merged into one update, with the update logic applied in arrival order, and written with a
+ * single conditional write. Every caller receives its own copy of the result of the merged write. Only one write per key is in flight
+ * at a time, so merged writes for a key land in the order they were submitted.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class DynamoDBWriteBehindBuffer<E extends DynamoDBModel & Model & ETagable & Cacheable> {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDBWriteBehindBuffer.class.getSimpleName());
+
+    private final Vertx vertx;
+    private final long window;
+    private final int maxPending;
+    private final BiFunction<E, Function<E, E>, Future<UpdateResult<E>>> writer;
+
+    private final Map<String, PendingWrite> pending = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * @param vertx the vertx instance
+     * @param window the time in milliseconds to collect updates for a key before writing
+     * @param maxPending the number of updates for a key that triggers a write before the window has passed
+     * @param writer performs the merged update and returns its result
+     */
+    public DynamoDBWriteBehindBuffer(Vertx vertx, long window, int maxPending,
+                                     BiFunction<E, Function<E, E>, Future<UpdateResult<E>>> writer) {
+        this.vertx = vertx;
+        this.window = window;
+        this.maxPending = maxPending;
+        this.writer = writer;
+    }
+
+    public void submit(E record, Function<E, E> updateLogic, Handler<AsyncResult<UpdateResult<E>>> resultHandler) {
+        final String key = keyOf(record);
+        boolean flushNow;
+
+        submitted.increment();
+
+        synchronized (this) {
+            PendingWrite write = pending.get(key);
+
+            if (write == null) {
+                write = new PendingWrite(record, updateLogic);
+                pending.put(key, write);
+
+                if (window > 0) write.timerId = vertx.setTimer(window, id -> flush(key));
+            } else {
+                write.merge(record, updateLogic);
+            }
+
+            write.handlers.add(resultHandler);
+
+            flushNow = window <= 0 || write.handlers.size() >= maxPending;
+        }
+
+        if (flushNow) flush(key);
+    }
+
+    /**
+     * Writes all pending updates without waiting for their windows to pass.
+     */
+    public void flush() {
+        List<String> keys;
+
+        synchronized (this) {
+            keys = new ArrayList<>(pending.keySet());
+        }
+
+        keys.forEach(this::flush);
+    }
+
+    private void flush(String key) {
+        PendingWrite write;
+
+        synchronized (this) {
+            write = pending.get(key);
+
+            if (write == null) return;
+
+            if (inFlight.contains(key)) {
+                write.ready = true;
+
+                return;
+            }
+
+            pending.remove(key);
+            inFlight.add(key);
+
+            if (write.timerId != null) vertx.cancelTimer(write.timerId);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Writing " + write.handlers.size() + " merged updates for " + key);
+        }
+
+        written.increment();
+
+        Future<UpdateResult<E>> writeFuture;
+
+        try {
+            writeFuture = writer.apply(write.record, write.updateLogic);
+        } catch (Exception e) {
+            logger.error("Error in merged update for " + key, e);
+
+            writeFuture = Future.failedFuture(e);
+        }
+
+        writeFuture.setHandler(res -> {
+            boolean next;
+
+            synchronized (this) {
+                inFlight.remove(key);
+                PendingWrite queued = pending.get(key);
+                next = queued != null && (queued.ready || queued.handlers.size() >= maxPending);
+            }
+
+            for (int i = 0; i < write.handlers.size(); i++) {
+                write.handlers.get(i).handle(i == 0 || res.failed() ? res : Future.succeededFuture(copyOf(res.result())));
+            }
+
+            if (next) flush(key);
+        });
+    }
+
+    public synchronized int getPendingKeys() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of submitted updates, the number of writes performed and the keys currently pending
+     */
+    public JsonObject getMetrics() {
+        return new JsonObject()
+                .put("window", window)
+                .put("maxPending", maxPending)
+                .put("submitted", submitted.sum())
+                .put("written", written.sum())
+                .put("pendingKeys", getPendingKeys());
+    }
+
+    @SuppressWarnings("unchecked")
+    private UpdateResult<E> copyOf(UpdateResult<E> result) {
+        if (result == null) return null;
+
+        final E item = result.getItem();
+        final UpdateResult<E> copy = new UpdateResult<>(item == null ? null :
+                (E) Json.decodeValue(Json.encode(item), item.getClass()));
+        copy.setPreOperationProcessingTime(result.getPreOperationProcessingTime());
+        copy.setOperationProcessingTime(result.getOperationProcessingTime());
+        copy.setPostOperationProcessingTime(result.getPostOperationProcessingTime());
+
+        return copy;
+    }
+
+    private String keyOf(E record) {
+        String range = record.getRange();
+
+        return record.getHash() + (range == null || range.equals("") ? "" : "/" + range);
+    }
+
+    private class PendingWrite {
+        private E record;
+        private Function<E, E> updateLogic;
+        private final List<Handler<AsyncResult<UpdateResult<E>>>> handlers = new ArrayList<>();
+        private Long timerId;
+        private boolean ready;
+
+        private PendingWrite(E record, Function<E, E> updateLogic) {
+            this.record = record;
+            this.updateLogic = updateLogic == null ? r -> r : updateLogic;
+        }
+
+        private void merge(E newerRecord, Function<E, E> newerLogic) {
+            record = newerRecord;
+
+            if (newerLogic != null) updateLogic = updateLogic.andThen(newerLogic);
+        }
+    }
+}
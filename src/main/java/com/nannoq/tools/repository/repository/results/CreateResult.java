@@ -35,18 +35,39 @@ import com.nannoq.tools.repository.models.Model;
  */
 public class CreateResult<K extends Model> {
     private final K item;
+    private final Throwable cause;
     private long preOperationProcessingTime;
     private long operationProcessingTime;
     private long postOperationProcessingTime;
 
     public CreateResult(K item) {
+        this(item, null);
+    }
+
+    /**
+     * @param item the record that was to be created
+     * @param cause the cause of the failure to create it, or null if it was created
+     */
+    public CreateResult(K item, Throwable cause) {
         this.item = item;
+        this.cause = cause;
     }
 
     public K getItem() {
         return item;
     }
 
+    public boolean isSucceeded() {
+        return cause == null;
+    }
+
+    /**
+     * @return the cause of the failure to create the item, or null if it was created
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
     public long getPreOperationProcessingTime() {
         return preOperationProcessingTime;
     }
@@ -37,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 
+import static com.nannoq.tools.repository.utils.AggregateFunctions.APPROX_PERCENTILE;
 import static com.nannoq.tools.repository.utils.AggregateFunctions.COUNT;
 import static java.util.stream.Collectors.toList;
 
@@ -49,6 +50,7 @@ import static java.util.stream.Collectors.toList;
 public class AggregateFunction {
     private AggregateFunctions function;
     private String field;
+    private Double percentile;
     private List<GroupingConfiguration> groupBy;
 
     @JsonIgnore
@@ -71,6 +73,7 @@ public class AggregateFunction {
 
         private AggregateFunctions function;
         private String field;
+        private Double percentile;
         private List<GroupingConfiguration> groupBy = new LinkedList<>();
 
         private AggregateFunctionBuilder() {
@@ -85,9 +88,14 @@ public class AggregateFunction {
                 throw new IllegalArgumentException("Field cannot be null!");
             }
 
+            if (function == APPROX_PERCENTILE && (percentile == null || percentile < 0.0 || percentile > 100.0)) {
+                throw new IllegalArgumentException("Percentile must be between inclusive 0 and inclusive 100!");
+            }
+
             AggregateFunction func = new AggregateFunction();
             func.function = function;
             func.field = field;
+            func.percentile = function == APPROX_PERCENTILE ? percentile : null;
             func.groupBy = groupBy == null ? new LinkedList<>() : groupBy;
 
             return func;
@@ -107,6 +115,13 @@ public class AggregateFunction {
             return this;
         }
 
+        @Fluent
+        public AggregateFunctionBuilder withPercentile(double percentile) {
+            this.percentile = percentile;
+
+            return this;
+        }
+
         @Fluent
         public AggregateFunctionBuilder withGroupBy(@Nonnull List<GroupingConfiguration> groupBy) {
             if (groupBy.size() > 3) {
@@ -157,6 +172,14 @@ public class AggregateFunction {
         return function == COUNT;
     }
 
+    public boolean isApproxDistinct() {
+        return function == AggregateFunctions.APPROX_DISTINCT;
+    }
+
+    public boolean isApproxPercentile() {
+        return function == APPROX_PERCENTILE;
+    }
+
     public List<GroupingConfiguration> getGroupBy() {
         return groupBy;
     }
@@ -171,8 +194,19 @@ public class AggregateFunction {
         this.field = field;
     }
 
+    /**
+     * @return the percentile of an APPROX_PERCENTILE, between inclusive 0 and inclusive 100
+     */
+    public Double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(Double percentile) {
+        this.percentile = percentile;
+    }
+
     public <E extends ETagable> boolean validateFieldForFunction(Class<E> TYPE) {
-        if (!isMin() && !isMax() && !isAverage()) return true;
+        if (!isMin() && !isMax() && !isAverage() && !isApproxDistinct() && !isApproxPercentile()) return true;
 
         if (field == null) {
             String errorMessage = "Field name cannot be null...";
@@ -189,12 +223,26 @@ public class AggregateFunction {
                 case AVG:
                     validationError.put("avg_error", errorMessage);
 
+                    break;
+                case APPROX_DISTINCT:
+                    validationError.put("approx_distinct_error", errorMessage);
+
+                    break;
+                case APPROX_PERCENTILE:
+                    validationError.put("approx_percentile_error", errorMessage);
+
                     break;
             }
 
             return false;
         }
 
+        if (isApproxPercentile() && (percentile == null || percentile < 0.0 || percentile > 100.0)) {
+            validationError.put("approx_percentile_error", "Percentile must be between 0 and 100...");
+
+            return false;
+        }
+
         if (hasGrouping()) {
             final List<Boolean> collect = groupBy.stream()
                     .map(groupingConfiguration ->
@@ -219,11 +267,12 @@ public class AggregateFunction {
 
         return function == that.function &&
                 Objects.equals(field, that.field) &&
+                Objects.equals(percentile, that.percentile) &&
                 Objects.equals(groupBy, that.groupBy);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(function, field, groupBy);
+        return Objects.hash(function, field, percentile, groupBy);
     }
 }
@@ -34,7 +34,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * This class defines aggregation functions.
+ * This class defines aggregation functions. APPROX_DISTINCT and APPROX_PERCENTILE are approximated with mergeable
+ * sketches, a HyperLogLog and a quantile sketch, instead of holding the values.
  *
  * @author Anders Mikkelsen
  * @version 17.11.2017
@@ -44,9 +45,11 @@ public enum AggregateFunctions {
     MAX,
     AVG,
     SUM,
-    COUNT;
+    COUNT,
+    APPROX_DISTINCT,
+    APPROX_PERCENTILE;
 
-    private static Map<String, AggregateFunctions> namesMap = new HashMap<String, AggregateFunctions>(5);
+    private static Map<String, AggregateFunctions> namesMap = new HashMap<String, AggregateFunctions>(7);
 
     static {
         namesMap.put("MIN", MIN);
@@ -54,6 +57,8 @@ public enum AggregateFunctions {
         namesMap.put("AVG", AVG);
         namesMap.put("SUM", SUM);
         namesMap.put("COUNT", COUNT);
+        namesMap.put("APPROX_DISTINCT", APPROX_DISTINCT);
+        namesMap.put("APPROX_PERCENTILE", APPROX_PERCENTILE);
     }
 
     @JsonCreator
@@ -469,6 +469,28 @@ public class FilterParameter {
         return beginsWith != null && le == null && ge == null && gt == null && lt == null && eq == null && ne == null && contains == null && notContains == null && in == null;
     }
 
+    /**
+     * @return the name of the comparison this parameter performs, without its values
+     */
+    public String getOperator() {
+        if (isEq()) return "eq";
+        if (isNe()) return "ne";
+        if (isIn()) return "in";
+        if (isBetween()) return "between";
+        if (isInclusiveBetween()) return "inclusiveBetween";
+        if (isGeLtVariableBetween()) return "geLtBetween";
+        if (isLeGtVariableBetween()) return "leGtBetween";
+        if (isGt()) return "gt";
+        if (isLt()) return "lt";
+        if (isGe()) return "ge";
+        if (isLe()) return "le";
+        if (isContains()) return "contains";
+        if (isNotContains()) return "notContains";
+        if (isBeginsWith()) return "beginsWith";
+
+        return "invalid";
+    }
+
     public boolean isIllegalRangedKeyParam() {
         return isContains() || isNotContains() || isIn();
     }
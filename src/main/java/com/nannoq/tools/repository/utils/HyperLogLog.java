@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.utils;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Date;
+
+/**
+ * This class defines a HyperLogLog sketch for approximate distinct counts. Values are hashed to 64 bits, and each of
+ * the 2^precision registers keeps the highest rank of leading zeros seen among the values routed to it. Sketches of the
+ * same precision merge by keeping the highest register, so the counts of pages, segments and cached sketches combine
+ * without the values. The standard error is about 1.04 / sqrt(2^precision), 1.6% at the default precision.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision the number of index bits, between 4 and 18, the sketch keeps 2^precision registers
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between inclusive 4 and inclusive 18!");
+        }
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value to the sketch, null values are skipped.
+     *
+     * @param value the value
+     */
+    public void add(Object value) {
+        if (value == null) return;
+
+        addHash(hash(value instanceof Date ? Long.toString(((Date) value).getTime()) : value.toString()));
+    }
+
+    void addHash(long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        final int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+
+        if (rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    /**
+     * Merges another sketch into this sketch.
+     *
+     * @param other the sketch to merge, of the same precision
+     * @return this sketch
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision!");
+        }
+
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+
+        return this;
+    }
+
+    /**
+     * @return the estimated number of distinct values added
+     */
+    public long estimate() {
+        final int m = registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+
+            if (register == 0) zeros++;
+        }
+
+        final double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        final double estimate = alpha * m * m / sum;
+
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return the sketch as json, for caching
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("precision", precision)
+                .put("registers", registers);
+    }
+
+    /**
+     * @param json a sketch from toJson
+     * @return the sketch
+     */
+    public static HyperLogLog fromJson(JsonObject json) {
+        final HyperLogLog sketch = new HyperLogLog(json.getInteger("precision"));
+        final byte[] registers = json.getBinary("registers");
+
+        if (registers.length != sketch.registers.length) {
+            throw new IllegalArgumentException("Register count does not match precision!");
+        }
+
+        System.arraycopy(registers, 0, sketch.registers, 0, registers.length);
+
+        return sketch;
+    }
+
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53a87e5L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.utils;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * This class defines a quantile sketch for approximate percentiles with a relative error guarantee. Values are counted
+ * in logarithmic buckets growing by a factor of (1 + accuracy) / (1 - accuracy), so any quantile is returned within the
+ * relative accuracy of the true value, 1% by default. Sketches of the same accuracy merge by adding the bucket counts,
+ * so the quantiles of pages, segments and cached sketches combine without the values. Values too close to zero share a
+ * zero bucket, and negative values are kept in mirrored buckets.
+ *
+ * @author Anders Mikkelsen
+ * @version 17.11.2017
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_ACCURACY = 0.01;
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private final NavigableMap<Integer, Long> positive = new TreeMap<>();
+    private final NavigableMap<Integer, Long> negative = new TreeMap<>();
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    /**
+     * @param accuracy the relative accuracy of the quantiles, between 0 and 1 exclusive
+     */
+    public QuantileSketch(double accuracy) {
+        if (!(accuracy > 0.0 && accuracy < 1.0)) {
+            throw new IllegalArgumentException("Accuracy must be between exclusive 0 and exclusive 1!");
+        }
+
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Adds a value to the sketch, null and NaN values are skipped.
+     *
+     * @param value the value
+     */
+    public void add(Double value) {
+        if (value == null || value.isNaN()) return;
+
+        if (value > MIN_INDEXABLE) {
+            positive.merge(index(value), 1L, Long::sum);
+        } else if (value < -MIN_INDEXABLE) {
+            negative.merge(index(-value), 1L, Long::sum);
+        } else {
+            zeroCount++;
+        }
+
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Merges another sketch into this sketch.
+     *
+     * @param other the sketch to merge, of the same accuracy
+     * @return this sketch
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy!");
+        }
+
+        other.positive.forEach((index, bucketCount) -> positive.merge(index, bucketCount, Long::sum));
+        other.negative.forEach((index, bucketCount) -> negative.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        return this;
+    }
+
+    /**
+     * @param percentile the percentile, between inclusive 0 and inclusive 100
+     * @return the estimated value at the percentile, or null if the sketch is empty
+     */
+    public Double percentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between inclusive 0 and inclusive 100!");
+        }
+
+        if (count == 0) return null;
+        if (percentile == 0.0) return min;
+        if (percentile == 100.0) return max;
+
+        final double rank = percentile / 100.0 * (count - 1);
+        long seen = 0;
+
+        for (Map.Entry<Integer, Long> bucket : negative.descendingMap().entrySet()) {
+            seen += bucket.getValue();
+
+            if (seen > rank) return clamp(-value(bucket.getKey()));
+        }
+
+        seen += zeroCount;
+
+        if (seen > rank) return clamp(0.0);
+
+        for (Map.Entry<Integer, Long> bucket : positive.entrySet()) {
+            seen += bucket.getValue();
+
+            if (seen > rank) return clamp(value(bucket.getKey()));
+        }
+
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return the sketch as json, for caching
+     */
+    public JsonObject toJson() {
+        final JsonObject positiveBuckets = new JsonObject();
+        final JsonObject negativeBuckets = new JsonObject();
+        positive.forEach((index, bucketCount) -> positiveBuckets.put(index.toString(), bucketCount));
+        negative.forEach((index, bucketCount) -> negativeBuckets.put(index.toString(), bucketCount));
+
+        final JsonObject json = new JsonObject()
+                .put("accuracy", accuracy)
+                .put("zeroCount", zeroCount)
+                .put("positive", positiveBuckets)
+                .put("negative", negativeBuckets);
+
+        if (count > 0) json.put("min", min).put("max", max);
+
+        return json;
+    }
+
+    /**
+     * @param json a sketch from toJson
+     * @return the sketch
+     */
+    public static QuantileSketch fromJson(JsonObject json) {
+        final QuantileSketch sketch = new QuantileSketch(json.getDouble("accuracy"));
+        json.getJsonObject("positive").forEach(bucket ->
+                sketch.positive.put(Integer.valueOf(bucket.getKey()), ((Number) bucket.getValue()).longValue()));
+        json.getJsonObject("negative").forEach(bucket ->
+                sketch.negative.put(Integer.valueOf(bucket.getKey()), ((Number) bucket.getValue()).longValue()));
+        sketch.zeroCount = json.getLong("zeroCount");
+        sketch.count = sketch.zeroCount +
+                sketch.positive.values().stream().mapToLong(Long::longValue).sum() +
+                sketch.negative.values().stream().mapToLong(Long::longValue).sum();
+
+        if (sketch.count > 0) {
+            sketch.min = json.getDouble("min");
+            sketch.max = json.getDouble("max");
+        }
+
+        return sketch;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -31,8 +31,11 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.web.RoutingContext;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * This class defines the querypack. A querypack includes the orderByQueue, the map of filterparameters to be performed,
@@ -53,6 +56,7 @@ public class QueryPack {
     private String[] projections;
     private String indexName;
     private Integer limit;
+    private Boolean prefetch;
 
     private QueryPack() {}
 
@@ -77,6 +81,7 @@ public class QueryPack {
         private String[] projections;
         private String indexName;
         private Integer limit;
+        private Boolean prefetch;
 
         private QueryPackBuilder(Class model) {
             if (model != null) {
@@ -101,6 +106,7 @@ public class QueryPack {
             queryPack.aggregateFunction = aggregateFunction;
             queryPack.indexName = indexName;
             queryPack.limit = limit;
+            queryPack.prefetch = prefetch;
             queryPack.calculateKey();
 
             return queryPack;
@@ -212,6 +218,20 @@ public class QueryPack {
 
             return this;
         }
+
+        /**
+         * Overrides the prefetch policy of the model for this query. When enabled, the next page is read into the
+         * item list cache in the background after a page is served.
+         *
+         * @param prefetch whether to prefetch the next page
+         * @return the builder
+         */
+        @Fluent
+        public QueryPackBuilder withPrefetch(boolean prefetch) {
+            this.prefetch = prefetch;
+
+            return this;
+        }
     }
 
     private void calculateKey() {
@@ -262,6 +282,113 @@ public class QueryPack {
         return limit;
     }
 
+    /**
+     * @return the prefetch policy for this query, or null to use the policy of the model
+     */
+    public Boolean getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Creates the query pack the client will send for the next page, with the page token replaced in both the token
+     * and the query string. The base etag key is calculated from the decoded and sorted query parameters, so the copy
+     * has the same base etag key and cache id as the request the client sends, however it encodes and orders the
+     * query string. The copy never prefetches.
+     *
+     * @param nextPageToken the page token of the next page
+     * @return the query pack for the next page
+     */
+    public QueryPack nextPage(String nextPageToken) {
+        QueryPack queryPack = new QueryPack();
+        queryPack.query = nextPageQuery(nextPageToken);
+        queryPack.route = route;
+        queryPack.pageToken = nextPageToken;
+        queryPack.requestEtag = null;
+        queryPack.orderByQueue = orderByQueue;
+        queryPack.projections = projections;
+        queryPack.params = params;
+        queryPack.aggregateFunction = aggregateFunction;
+        queryPack.indexName = indexName;
+        queryPack.limit = limit;
+        queryPack.prefetch = false;
+        queryPack.calculateKey();
+
+        return queryPack;
+    }
+
+    private String nextPageQuery(String nextPageToken) {
+        if (query == null) return null;
+
+        String rest = Arrays.stream(query.split("&"))
+                .filter(param -> !param.isEmpty() && !param.startsWith("pageToken="))
+                .collect(Collectors.joining("&"));
+
+        return (rest.isEmpty() ? "" : rest + "&") + "pageToken=" + nextPageToken;
+    }
+
+    /**
+     * @param query a raw query string
+     * @return the decoded query parameters without the page token, sorted by name and value
+     */
+    private static String normalizedQuery(String query) {
+        if (query == null) return null;
+
+        return Arrays.stream(query.split("&"))
+                .filter(param -> !param.isEmpty())
+                .map(param -> {
+                    int separator = param.indexOf('=');
+
+                    return separator < 0 ? decode(param) :
+                            decode(param.substring(0, separator)) + "=" + decode(param.substring(separator + 1));
+                })
+                .filter(param -> !param.equals("pageToken") && !param.startsWith("pageToken="))
+                .sorted()
+                .collect(Collectors.joining("&"));
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    /**
+     * Describes the shape of the query, which is the filtered fields with their operators and the ordering, without
+     * any values. Queries that only differ in their values have the same shape.
+     *
+     * @return the shape of the query
+     */
+    public String getShape() {
+        StringBuilder shape = new StringBuilder("filter[");
+
+        if (params != null) {
+            new TreeMap<>(params).forEach((field, fieldParams) -> {
+                shape.append(field).append(":");
+                fieldParams.forEach(param -> shape.append(param.getType()).append("-")
+                        .append(param.getOperator()).append(","));
+                shape.append(";");
+            });
+        }
+
+        shape.append("] orderBy[");
+
+        if (orderByQueue != null) {
+            orderByQueue.forEach(orderBy -> shape.append(orderBy.getField()).append(":")
+                    .append(orderBy.getDirection()).append(";"));
+        }
+
+        shape.append("]");
+
+        if (aggregateFunction != null) {
+            shape.append(" aggregate[").append(aggregateFunction.getFunction())
+                    .append(":").append(aggregateFunction.getField()).append("]");
+        }
+
+        return shape.toString();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -273,7 +400,7 @@ public class QueryPack {
 
     @Override
     public int hashCode() {
-        final int[] hash = {Objects.hash(query, route, pageToken, params, aggregateFunction, indexName, limit)};
+        final int[] hash = {Objects.hash(normalizedQuery(query), route, pageToken, params, aggregateFunction, indexName, limit)};
 
         if (orderByQueue != null) {
             if (orderByQueue.size() > 0) {
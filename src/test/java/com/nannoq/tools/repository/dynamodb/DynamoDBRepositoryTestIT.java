@@ -36,10 +36,12 @@ import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.hazelcast.config.Config;
 import com.nannoq.tools.repository.dynamodb.model.TestModel;
 import com.nannoq.tools.repository.dynamodb.model.TestModelDynamoDBRepository;
+import com.nannoq.tools.repository.dynamodb.operators.DynamoDBSegmentedScan;
 import com.nannoq.tools.repository.dynamodb.service.TestModelInternalService;
 import com.nannoq.tools.repository.repository.results.CreateResult;
 import com.nannoq.tools.repository.repository.results.ItemListResult;
 import com.nannoq.tools.repository.repository.results.ItemResult;
+import com.nannoq.tools.repository.repository.results.UpdateResult;
 import com.nannoq.tools.repository.utils.*;
 import io.vertx.core.*;
 import io.vertx.core.eventbus.MessageConsumer;
@@ -47,10 +49,12 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.serviceproxy.ProxyHelper;
+import io.vertx.serviceproxy.ServiceException;
 import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
 import org.junit.*;
 import org.junit.rules.TestName;
@@ -426,6 +430,119 @@ public class DynamoDBRepositoryTestIT {
         });
     }
 
+    @Test
+    public void updateWithStaleVersion(TestContext testContext) {
+        Async async = testContext.async();
+
+        repo.create(nonNullTestModel.get(), createRes -> {
+            testContext.assertTrue(createRes.succeeded());
+
+            TestModel item = createRes.result().getItem();
+            JsonObject id = new JsonObject().put("hash", item.getHash()).put("range", item.getRange());
+            Date firstDate = new Date(1000L);
+            Date secondDate = new Date(2000L);
+
+            repo.read(id, readRes -> {
+                testContext.assertTrue(readRes.succeeded());
+
+                TestModel stale = readRes.result().getItem();
+
+                repo.update(item, tm -> tm.setSomeDate(firstDate), firstRes -> {
+                    testContext.assertTrue(firstRes.succeeded());
+
+                    repo.update(stale, tm -> tm.setSomeDateTwo(secondDate), secondRes -> {
+                        testContext.assertTrue(secondRes.succeeded());
+                        testContext.assertEquals(firstDate, secondRes.result().getItem().getSomeDate());
+                        testContext.assertEquals(secondDate, secondRes.result().getItem().getSomeDateTwo());
+
+                        async.complete();
+                    });
+                });
+            });
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void updateWithWriteBehind(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository bufferedRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_write_behind", true)
+                .put("dynamo_write_behind_window", 200L));
+
+        bufferedRepo.create(nonNullTestModel.get(), createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                TestModel item = createRes.result().getItem();
+                long start = item.getSomeLong();
+                List<Future> futures = new ArrayList<>();
+
+                IntStream.range(0, 10).forEach(i -> {
+                    Future<UpdateResult<TestModel>> future = Future.future();
+                    bufferedRepo.update(item, tm -> tm.setSomeLong(tm.getSomeLong() + 1), future.completer());
+
+                    futures.add(future);
+                });
+
+                CompositeFuture.all(futures).setHandler(res -> {
+                    if (res.failed()) {
+                        testContext.fail(res.cause());
+                    } else {
+                        futures.forEach(future -> testContext.assertEquals(start + 10,
+                                ((UpdateResult<TestModel>) future.result()).getItem().getSomeLong()));
+
+                        async.complete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void atomicIncrementField(TestContext testContext) {
+        Async async = testContext.async();
+
+        repo.create(nonNullTestModel.get()).setHandler(res -> {
+            TestModel item = res.result().getItem();
+            long count = item.getSomeLong();
+
+            repo.atomicIncrementField(item, "someLong", updateRes -> {
+                if (updateRes.failed()) {
+                    testContext.fail(updateRes.cause());
+                } else {
+                    TestModel updatedItem = updateRes.result().getItem();
+
+                    testContext.assertTrue(updatedItem.getSomeLong() == count + 1);
+                }
+
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void atomicDecrementField(TestContext testContext) {
+        Async async = testContext.async();
+
+        repo.create(nonNullTestModel.get()).setHandler(res -> {
+            TestModel item = res.result().getItem();
+            long count = item.getSomeLong();
+
+            repo.atomicDecrementField(item, "someLong", updateRes -> {
+                if (updateRes.failed()) {
+                    testContext.fail(updateRes.cause());
+                } else {
+                    TestModel updatedItem = updateRes.result().getItem();
+
+                    testContext.assertTrue(updatedItem.getSomeLong() == count - 1);
+                }
+
+                async.complete();
+            });
+        });
+    }
+
     @Test
     public void create(TestContext testContext) {
         Async async = testContext.async();
@@ -439,6 +556,120 @@ public class DynamoDBRepositoryTestIT {
         });
     }
 
+    @Test
+    public void batchCreateWithBatchWrites(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository batchRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_batch_writes", true));
+        List<TestModel> items = IntStream.range(0, 60)
+                .mapToObj(i -> nonNullTestModel.get().setRange(UUID.randomUUID().toString()))
+                .collect(toList());
+
+        batchRepo.batchCreate(items, createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                testContext.assertEquals(items.size(), createRes.result().size());
+                IntStream.range(0, items.size()).forEach(i -> testContext.assertEquals(items.get(i).getRange(),
+                        createRes.result().get(i).getItem().getRange()));
+
+                TestModel last = createRes.result().get(items.size() - 1).getItem();
+
+                batchRepo.read(new JsonObject().put("hash", last.getHash()).put("range", last.getRange()), readRes -> {
+                    testContext.assertTrue(readRes.succeeded());
+                    testContext.assertEquals(last.getRange(), readRes.result().getItem().getRange());
+
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public void batchCreateWithBatchWritesAndDuplicateKeys(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository batchRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_batch_writes", true));
+        String range = UUID.randomUUID().toString();
+        List<TestModel> items = Arrays.asList(
+                nonNullTestModel.get().setRange(range).setSomeLong(1L),
+                nonNullTestModel.get().setRange(UUID.randomUUID().toString()),
+                nonNullTestModel.get().setRange(range).setSomeLong(2L));
+
+        batchRepo.batchCreate(items, createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                testContext.assertEquals(items.size(), createRes.result().size());
+                testContext.assertTrue(createRes.result().get(0).isSucceeded());
+                testContext.assertTrue(createRes.result().get(1).isSucceeded());
+                testContext.assertFalse(createRes.result().get(2).isSucceeded());
+                testContext.assertEquals(409, ((ServiceException) createRes.result().get(2).getCause()).failureCode());
+
+                batchRepo.read(new JsonObject().put("hash", items.get(0).getHash()).put("range", range), readRes -> {
+                    testContext.assertTrue(readRes.succeeded());
+                    testContext.assertEquals(1L, readRes.result().getItem().getSomeLong());
+
+                    async.complete();
+                });
+            }
+        });
+    }
+
+    @Test
+    public void batchCreateWithWriteParallelism(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository parallelRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_write_parallelism", 4));
+        List<TestModel> items = IntStream.range(0, 30)
+                .mapToObj(i -> nonNullTestModel.get().setRange(UUID.randomUUID().toString()))
+                .collect(toList());
+
+        parallelRepo.batchCreate(items, createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                testContext.assertEquals(items.size(), createRes.result().size());
+                IntStream.range(0, items.size()).forEach(i -> testContext.assertEquals(items.get(i).getRange(),
+                        createRes.result().get(i).getItem().getRange()));
+
+                async.complete();
+            }
+        });
+    }
+
+    @Test
+    public void batchDeleteWithBatchWrites(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository batchRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_batch_writes", true));
+
+        createXItems(60, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            List<JsonObject> ids = res.result().stream()
+                    .map(CreateResult::getItem)
+                    .map(item -> new JsonObject().put("hash", item.getHash()).put("range", item.getRange()))
+                    .collect(toList());
+
+            batchRepo.batchDelete(ids, deleteRes -> {
+                if (deleteRes.failed()) {
+                    testContext.fail(deleteRes.cause());
+                } else {
+                    testContext.assertEquals(ids.size(), deleteRes.result().size());
+                    IntStream.range(0, ids.size()).forEach(i -> testContext.assertEquals(
+                            ids.get(i).getString("range"), deleteRes.result().get(i).getItem().getRange()));
+
+                    batchRepo.read(ids.get(0), readRes -> {
+                        testContext.assertTrue(readRes.failed());
+
+                        async.complete();
+                    });
+                }
+            });
+        });
+    }
+
     @Test
     public void update(TestContext testContext) {
         Async async = testContext.async();
@@ -540,6 +771,194 @@ public class DynamoDBRepositoryTestIT {
         });
     }
 
+    @Test
+    public void readWithAsyncExecution(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository asyncRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_async_execution", true));
+
+        asyncRepo.create(nonNullTestModel.get(), createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                TestModel item = createRes.result().getItem();
+                JsonObject id = new JsonObject().put("hash", item.getHash()).put("range", item.getRange());
+
+                asyncRepo.read(id, false, new String[]{}, readRes -> {
+                    testContext.assertTrue(readRes.succeeded());
+                    testContext.assertEquals(item.getRange(), readRes.result().getItem().getRange());
+
+                    asyncRepo.readAllWithoutPagination(item.getHash(), allRes -> {
+                        testContext.assertTrue(allRes.succeeded());
+                        testContext.assertEquals(1, allRes.result().size());
+
+                        async.complete();
+                    });
+                });
+            }
+        });
+    }
+
+    @Test
+    public void capacityAccounting(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository accountedRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_capacity_accounting", true));
+
+        accountedRepo.create(nonNullTestModel.get(), createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                JsonArray puts = accountedRepo.getCapacityRegistry().query("PutItem", null, null, 10);
+
+                testContext.assertFalse(puts.isEmpty());
+                testContext.assertTrue(puts.getJsonObject(0).getDouble("capacityUnits") > 0.0);
+                testContext.assertEquals(1L, puts.getJsonObject(0).getLong("requests"));
+
+                async.complete();
+            }
+        });
+    }
+
+    @Test
+    public void capacityAccountingKeepsShapeAcrossSegments(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository accountedRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_capacity_accounting", true)
+                .put("dynamo_scan_segments", 4));
+        final QueryPack queryPack = QueryPack.builder(TestModel.class).build();
+
+        createXItems(20, allRes -> accountedRepo.count(null, queryPack, null, countRes -> {
+            testContext.assertTrue(countRes.succeeded());
+            testContext.assertEquals(20L, countRes.result());
+
+            JsonArray scans = accountedRepo.getCapacityRegistry().query("Scan", null, null, 10);
+
+            testContext.assertFalse(scans.isEmpty());
+            testContext.assertEquals(queryPack.getShape(), scans.getJsonObject(0).getString("shape"));
+            testContext.assertTrue(scans.getJsonObject(0).getLong("requests") >= 4L);
+
+            accountedRepo.close();
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void readWithHedgedReads(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository hedgedRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_hedged_reads", true));
+
+        hedgedRepo.create(nonNullTestModel.get(), createRes -> {
+            testContext.assertTrue(createRes.succeeded());
+
+            hedgedRepo.read(new JsonObject()
+                    .put("hash", createRes.result().getItem().getHash())
+                    .put("range", createRes.result().getItem().getRange()), true, null, readRes -> {
+                testContext.assertTrue(readRes.succeeded());
+                testContext.assertEquals(createRes.result().getItem().getRange(), readRes.result().getItem().getRange());
+                testContext.assertEquals(1L, hedgedRepo.getHedgeMetrics().getLong("reads"));
+
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void readWithProjectionsReadsOnlyProjectedAttributes(TestContext testContext) {
+        Async async = testContext.async();
+
+        repo.create(nonNullTestModel.get(), createRes -> {
+            testContext.assertTrue(createRes.succeeded());
+
+            TestModel item = createRes.result().getItem();
+            JsonObject id = new JsonObject().put("hash", item.getHash()).put("range", item.getRange());
+
+            repo.read(id, false, new String[]{"someLong"}, readRes -> {
+                testContext.assertTrue(readRes.succeeded());
+
+                TestModel projected = readRes.result().getItem();
+
+                testContext.assertEquals(item.getHash(), projected.getHash());
+                testContext.assertEquals(item.getRange(), projected.getRange());
+                testContext.assertEquals(1L, projected.getSomeLong());
+                testContext.assertNull(projected.getSomeStringThree());
+                testContext.assertNull(projected.getSomeDate());
+
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void concurrentReads(TestContext testContext) {
+        Async async = testContext.async();
+
+        repo.create(nonNullTestModel.get(), createRes -> {
+            testContext.assertTrue(createRes.succeeded());
+
+            TestModel item = createRes.result().getItem();
+            JsonObject id = new JsonObject().put("hash", item.getHash()).put("range", item.getRange());
+            List<Future> reads = new ArrayList<>();
+
+            IntStream.range(0, 20).forEach(i -> {
+                Future<ItemResult<TestModel>> readFuture = Future.future();
+                repo.read(id, false, new String[]{"someLong"}, readFuture.completer());
+
+                reads.add(readFuture);
+            });
+
+            CompositeFuture.all(reads).setHandler(res -> {
+                if (res.failed()) {
+                    testContext.fail(res.cause());
+                } else {
+                    Set<TestModel> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+
+                    reads.forEach(read -> {
+                        @SuppressWarnings("unchecked")
+                        TestModel readItem = ((ItemResult<TestModel>) read.result()).getItem();
+
+                        testContext.assertEquals(item.getRange(), readItem.getRange());
+                        instances.add(readItem);
+                    });
+
+                    testContext.assertEquals(reads.size(), instances.size());
+
+                    async.complete();
+                }
+            });
+        });
+    }
+
+    @Test
+    public void readWithDedicatedWorkerPool(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository pooledRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_worker_pool_size", 2)
+                .put("dynamo_worker_queue_size", 100));
+
+        pooledRepo.create(nonNullTestModel.get(), createRes -> {
+            if (createRes.failed()) {
+                testContext.fail(createRes.cause());
+            } else {
+                TestModel item = createRes.result().getItem();
+                JsonObject id = new JsonObject().put("hash", item.getHash()).put("range", item.getRange());
+
+                pooledRepo.read(id, readRes -> {
+                    testContext.assertTrue(readRes.succeeded());
+
+                    JsonObject metrics = pooledRepo.getWorkerMetrics();
+                    testContext.assertEquals(2, metrics.getInteger("poolSize"));
+                    testContext.assertEquals(0L, metrics.getLong("rejected"));
+                    testContext.assertTrue(metrics.getLong("submitted") >= 1L);
+                    testContext.assertEquals(0, metrics.getInteger("queueDepth"));
+
+                    async.complete();
+                });
+            }
+        });
+    }
+
     @Test
     public void batchRead(TestContext testContext) {
         Async async = testContext.async();
@@ -570,6 +989,181 @@ public class DynamoDBRepositoryTestIT {
         });
     }
 
+    @Test
+    public void multiGet(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository otherRepo = new TestModelDynamoDBRepository(vertx, config);
+
+        createXItems(20, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            final List<JsonObject> ids = res.result().stream()
+                    .map(CreateResult::getItem)
+                    .map(testModel -> new JsonObject()
+                            .put("hash", testModel.getHash())
+                            .put("range", testModel.getRange()))
+                    .collect(toList());
+            final List<JsonObject> firstIds = ids.subList(0, 10);
+            final List<JsonObject> otherIds = ids.subList(10, 20);
+
+            DynamoDBRepository.multiGet()
+                    .add(repo, firstIds)
+                    .add(otherRepo, otherIds, new String[]{"someStringOne"})
+                    .execute(multiGet -> {
+                        testContext.assertTrue(multiGet.succeeded());
+
+                        List<ItemResult<TestModel>> first = multiGet.result().get(repo);
+                        List<ItemResult<TestModel>> other = multiGet.result().get(otherRepo);
+
+                        testContext.assertEquals(10, first.size());
+                        testContext.assertEquals(10, other.size());
+
+                        for (int i = 0; i < 10; i++) {
+                            testContext.assertEquals(firstIds.get(i).getString("range"),
+                                    first.get(i).getItem().getRange());
+                            testContext.assertEquals(otherIds.get(i).getString("range"),
+                                    other.get(i).getItem().getRange());
+                            testContext.assertNotNull(first.get(i).getItem().getSomeStringThree());
+                            testContext.assertNull(other.get(i).getItem().getSomeStringThree());
+                        }
+
+                        async.complete();
+                    });
+        });
+    }
+
+    @Test
+    public void multiGetReportsMissingPerKey(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository otherRepo = new TestModelDynamoDBRepository(vertx, config);
+
+        createXItems(5, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            final List<JsonObject> ids = res.result().stream()
+                    .map(CreateResult::getItem)
+                    .map(testModel -> new JsonObject()
+                            .put("hash", testModel.getHash())
+                            .put("range", testModel.getRange()))
+                    .collect(toList());
+            final JsonObject missingId = new JsonObject()
+                    .put("hash", "testString")
+                    .put("range", UUID.randomUUID().toString());
+            final List<JsonObject> otherIds = new ArrayList<>(ids);
+            otherIds.add(1, missingId);
+
+            DynamoDBRepository.multiGet()
+                    .add(repo, ids)
+                    .add(otherRepo, otherIds)
+                    .execute(multiGet -> {
+                        testContext.assertTrue(multiGet.succeeded());
+
+                        List<ItemResult<TestModel>> other = multiGet.result().get(otherRepo);
+
+                        testContext.assertEquals(ids.size(), multiGet.result().get(repo).size());
+                        testContext.assertEquals(otherIds.size(), other.size());
+                        testContext.assertNull(other.get(1).getItem());
+                        testContext.assertEquals(Collections.singletonList(missingId),
+                                multiGet.result().getMissing(otherRepo));
+                        testContext.assertTrue(multiGet.result().getMissing(repo).isEmpty());
+                        testContext.assertTrue(multiGet.result().getFailed(otherRepo).isEmpty());
+
+                        async.complete();
+                    });
+        });
+    }
+
+    @Test
+    public void batchReadWithProjectionsKeepsOrder(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(20, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            final List<JsonObject> ids = res.result().stream()
+                    .map(CreateResult::getItem)
+                    .map(testModel -> new JsonObject()
+                            .put("hash", testModel.getHash())
+                            .put("range", testModel.getRange()))
+                    .collect(toList());
+            Collections.reverse(ids);
+            ids.add(ids.get(0));
+
+            repo.batchRead(ids, new String[]{"someLong"}, batchRead -> {
+                if (batchRead.failed()) {
+                    testContext.fail(batchRead.cause());
+                } else {
+                    testContext.assertEquals(ids.size(), batchRead.result().size());
+                    IntStream.range(0, ids.size()).forEach(i -> testContext.assertEquals(
+                            ids.get(i).getString("range"), batchRead.result().get(i).getItem().getRange()));
+
+                    async.complete();
+                }
+            });
+        });
+    }
+
+    @Test
+    public void batchReadWithMissingIdentifier(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(5, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            final List<JsonObject> ids = res.result().stream()
+                    .map(CreateResult::getItem)
+                    .map(testModel -> new JsonObject()
+                            .put("hash", testModel.getHash())
+                            .put("range", testModel.getRange()))
+                    .collect(toList());
+            ids.add(2, new JsonObject().put("hash", "testString").put("range", UUID.randomUUID().toString()));
+
+            repo.batchRead(ids, new String[]{"someLong"}, batchRead -> {
+                if (batchRead.failed()) {
+                    testContext.fail(batchRead.cause());
+                } else {
+                    testContext.assertEquals(ids.size(), batchRead.result().size());
+                    testContext.assertNull(batchRead.result().get(2).getItem());
+                    testContext.assertEquals(ids.get(3).getString("range"),
+                            batchRead.result().get(3).getItem().getRange());
+                    testContext.assertNull(batchRead.result().get(3).getItem().getSomeStringOne());
+
+                    async.complete();
+                }
+            });
+        });
+    }
+
+    @Test
+    public void batchReadWithMissingHashOnly(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(5, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            final List<JsonObject> ids = res.result().stream()
+                    .map(CreateResult::getItem)
+                    .map(testModel -> new JsonObject()
+                            .put("hash", testModel.getHash())
+                            .put("range", testModel.getRange()))
+                    .collect(toList());
+            ids.add(2, new JsonObject().put("hash", UUID.randomUUID().toString()));
+
+            repo.batchRead(ids, batchRead -> {
+                if (batchRead.failed()) {
+                    testContext.fail(batchRead.cause());
+                } else {
+                    testContext.assertEquals(ids.size(), batchRead.result().size());
+                    testContext.assertNull(batchRead.result().get(2).getItem());
+                    testContext.assertEquals(ids.get(3).getString("range"),
+                            batchRead.result().get(3).getItem().getRange());
+
+                    async.complete();
+                }
+            });
+        });
+    }
+
     @Test
     public void readWithConsistencyAndProjections(TestContext testContext) {
         Async async = testContext.async();
@@ -630,6 +1224,77 @@ public class DynamoDBRepositoryTestIT {
         });
     }
 
+    @Test
+    public void readAllAsStream(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(100, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            AtomicInteger count = new AtomicInteger();
+            ReadStream<TestModel> stream = repo.readAllAsStream();
+
+            stream.exceptionHandler(testContext::fail);
+            stream.endHandler(v -> {
+                testContext.assertEquals(100, count.get());
+
+                async.complete();
+            });
+            stream.handler(item -> {
+                if (count.incrementAndGet() == 50) {
+                    stream.pause();
+
+                    vertx.setTimer(100L, id -> stream.resume());
+                }
+            });
+        });
+    }
+
+    @Test
+    public void segmentedScan(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(100, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            repo.segmentedScan(4, 10, 0.0).readAll(scanRes -> {
+                testContext.assertTrue(scanRes.succeeded());
+                testContext.assertEquals(100, scanRes.result().size());
+
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void segmentedScanResumesFromCheckpoint(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(100, res -> {
+            testContext.assertTrue(res.succeeded());
+
+            AtomicInteger count = new AtomicInteger();
+            DynamoDBSegmentedScan<TestModel> scan = repo.segmentedScan(4, 10, 1000.0);
+
+            scan.scan(page -> {
+                count.addAndGet(page.size());
+                scan.stop();
+            }, stopRes -> {
+                testContext.assertTrue(stopRes.succeeded());
+                testContext.assertFalse(scan.isComplete());
+
+                repo.segmentedScan(4, 10, 1000.0)
+                        .fromCheckpoint(scan.checkpoint())
+                        .scan(page -> count.addAndGet(page.size()), resumeRes -> {
+                            testContext.assertTrue(resumeRes.succeeded());
+                            testContext.assertEquals(100, count.get());
+
+                            async.complete();
+                        });
+            });
+        });
+    }
+
     @Test
     public void readAllWithIdentifiersAndFilterParameters(TestContext testContext) {
         Async async = testContext.async();
@@ -728,6 +1393,36 @@ public class DynamoDBRepositoryTestIT {
         }
     }
 
+    @Test
+    public void readAllWithPrefetch(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(100, res -> {
+            testContext.assertTrue(res.succeeded());
+            final JsonObject idObject = new JsonObject()
+                    .put("hash", "testString");
+            final QueryPack queryPack = QueryPack.builder(TestModel.class)
+                    .withPrefetch(true)
+                    .build();
+
+            repo.readAll(idObject, null, queryPack, new String[]{}, pageOne -> {
+                testContext.assertTrue(pageOne.succeeded());
+
+                final String pageToken = pageOne.result().getItemList().getPageToken();
+                final QueryPack nextPack = QueryPack.builder(TestModel.class)
+                        .withPageToken(pageToken)
+                        .build();
+
+                vertx.setTimer(1000L, id -> repo.readAll(idObject, pageToken, nextPack, new String[]{}, pageTwo -> {
+                    testContext.assertTrue(pageTwo.succeeded());
+                    testContext.assertTrue(pageTwo.result().isCacheHit());
+
+                    async.complete();
+                }));
+            });
+        });
+    }
+
     @Test
     public void aggregation(TestContext testContext) {
         Async async = testContext.async();
@@ -752,6 +1447,83 @@ public class DynamoDBRepositoryTestIT {
         });
     }
 
+    @Test
+    public void aggregationCountWithoutIdentifier(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(100, allRes -> {
+            final QueryPack queryPack = QueryPack.builder(TestModel.class)
+                    .withAggregateFunction(AggregateFunction.builder()
+                            .withAggregateFunction(AggregateFunctions.COUNT)
+                            .withField("someStringOne")
+                            .build())
+                    .build();
+
+            repo.aggregation(new JsonObject(), queryPack, new String[]{}, res -> {
+                testContext.assertTrue(res.succeeded());
+
+                final Integer count = new JsonObject(res.result()).getInteger("count");
+
+                testContext.assertEquals(100, count, "Count is: " + count);
+
+                repo.count(null, null, null, countRes -> {
+                    testContext.assertTrue(countRes.succeeded());
+                    testContext.assertEquals(100L, countRes.result());
+
+                    async.complete();
+                });
+            });
+        });
+    }
+
+    @Test
+    public void aggregationMaterializedCountFollowsWrites(TestContext testContext) {
+        Async async = testContext.async();
+        final AggregateFunction count = AggregateFunction.builder()
+                .withAggregateFunction(AggregateFunctions.COUNT)
+                .withField("someStringOne")
+                .build();
+
+        repo.registerMaterializedAggregate(count);
+
+        createXItems(100, allRes -> {
+            final JsonObject idObject = new JsonObject()
+                    .put("hash", "testString");
+            final QueryPack queryPack = QueryPack.builder(TestModel.class)
+                    .withAggregateFunction(count)
+                    .build();
+
+            repo.aggregation(idObject, queryPack, new String[]{}, res -> {
+                testContext.assertTrue(res.succeeded());
+                testContext.assertEquals(100, new JsonObject(res.result()).getInteger("count"));
+
+                repo.create(nonNullTestModel.get().setRange(UUID.randomUUID().toString()), createRes -> {
+                    testContext.assertTrue(createRes.succeeded());
+
+                    repo.aggregation(idObject, queryPack, new String[]{}, secondRes -> {
+                        testContext.assertEquals(101, new JsonObject(secondRes.result()).getInteger("count"));
+
+                        final TestModel created = createRes.result().getItem();
+                        final JsonObject id = new JsonObject()
+                                .put("hash", created.getHash())
+                                .put("range", created.getRange());
+
+                        repo.delete(id, deleteRes -> {
+                            testContext.assertTrue(deleteRes.succeeded());
+
+                            repo.aggregation(idObject, queryPack, new String[]{}, thirdRes -> {
+                                testContext.assertEquals(100,
+                                        new JsonObject(thirdRes.result()).getInteger("count"));
+
+                                async.complete();
+                            });
+                        });
+                    });
+                });
+            });
+        });
+    }
+
     @Test
     public void aggregationGroupedRanged(TestContext testContext) {
         Async async = testContext.async();
@@ -829,6 +1601,53 @@ public class DynamoDBRepositoryTestIT {
         }));
     }
 
+    @Test
+    public void readAllWithoutPaginationIsCachedAndInvalidatedOnWrite(TestContext testContext) {
+        Async async = testContext.async();
+        TestModelDynamoDBRepository cachedRepo = new TestModelDynamoDBRepository(vertx, config.copy()
+                .put("dynamo_cache_unpaginated", true));
+
+        createXItems(10, allItemsRes -> cachedRepo.readAllWithoutPagination("testString", firstRes -> {
+            testContext.assertTrue(firstRes.succeeded());
+            testContext.assertEquals(10, firstRes.result().size());
+
+            cachedRepo.readAllWithoutPagination("testString", cachedRes -> {
+                testContext.assertTrue(cachedRes.succeeded());
+                testContext.assertEquals(10, cachedRes.result().size());
+
+                cachedRepo.create(nonNullTestModel.get().setRange(UUID.randomUUID().toString()), createRes -> {
+                    testContext.assertTrue(createRes.succeeded());
+
+                    cachedRepo.readAllWithoutPagination("testString", freshRes -> {
+                        testContext.assertTrue(freshRes.succeeded());
+                        testContext.assertEquals(11, freshRes.result().size(),
+                                "Size incorrect: " + freshRes.result().size());
+
+                        async.complete();
+                    });
+                });
+            });
+        }));
+    }
+
+    @Test
+    public void readAllWithoutPaginationAsStream(TestContext testContext) {
+        Async async = testContext.async();
+
+        createXItems(100, allItemsRes -> {
+            List<TestModel> items = new ArrayList<>();
+            ReadStream<TestModel> stream = repo.readAllWithoutPaginationAsStream("testString");
+
+            stream.exceptionHandler(testContext::fail);
+            stream.endHandler(v -> {
+                testContext.assertEquals(100, items.size(), "Size incorrect: " + items.size());
+
+                async.complete();
+            });
+            stream.handler(items::add);
+        });
+    }
+
     @Test
     public void readAllWithoutPaginationWithIdentifierAndQueryPack(TestContext testContext) {
         Async async = testContext.async();
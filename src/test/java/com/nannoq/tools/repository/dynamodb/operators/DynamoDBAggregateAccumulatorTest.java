@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.dynamodb.model.TestModel;
+import com.nannoq.tools.repository.utils.AggregateFunctions;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class DynamoDBAggregateAccumulatorTest {
+    private static final Function<TestModel, Double> SOME_LONG = item ->
+            item.getSomeLong() == null ? null : item.getSomeLong().doubleValue();
+
+    private TestModel item(String group, String subGroup, Long value) {
+        return new TestModel()
+                .setSomeStringOne(group)
+                .setSomeStringTwo(subGroup)
+                .setSomeLong(value);
+    }
+
+    private DynamoDBAggregateAccumulator<TestModel> accumulate(AggregateFunctions function,
+                                                             List<Function<TestModel, String>> groupingKeys,
+                                                             TestModel... items) {
+        DynamoDBAggregateAccumulator<TestModel> accumulator = new DynamoDBAggregateAccumulator<>(function,
+                SOME_LONG, groupingKeys, function == AggregateFunctions.MAX);
+        Arrays.stream(items).forEach(accumulator::accept);
+
+        return accumulator;
+    }
+
+    @Test
+    public void sumAndAvgSkipNullValues() throws Exception {
+        TestModel[] items = {item("a", "x", 1L), item("a", "x", 2L), item("b", "x", 6L), item("b", "x", null)};
+
+        assertEquals(9.0, accumulate(AggregateFunctions.SUM, Collections.emptyList(), items).getSum(), 0.0001);
+        assertEquals(3.0, accumulate(AggregateFunctions.AVG, Collections.emptyList(), items).getAvg(), 0.0001);
+        assertEquals(3L, accumulate(AggregateFunctions.AVG, Collections.emptyList(), items).getItemCount());
+    }
+
+    @Test
+    public void itemsWithoutValuesAreNotCounted() throws Exception {
+        assertEquals(0L, accumulate(AggregateFunctions.SUM, Collections.emptyList(),
+                item("a", "x", null), item("b", "x", null)).getItemCount());
+    }
+
+    @Test
+    public void avgWithoutValuesIsZero() throws Exception {
+        assertEquals(0.0, accumulate(AggregateFunctions.AVG, Collections.emptyList(),
+                item("a", "x", null)).getAvg(), 0.0);
+    }
+
+    @Test
+    public void minAndMaxKeepTies() throws Exception {
+        TestModel[] items = {item("a", "x", 3L), item("b", "x", 1L), item("c", "x", 3L), item("d", "x", 1L)};
+
+        List<TestModel> max = accumulate(AggregateFunctions.MAX, Collections.emptyList(), items).getTies();
+        List<TestModel> min = accumulate(AggregateFunctions.MIN, Collections.emptyList(), items).getTies();
+
+        assertEquals(Arrays.asList(items[0], items[2]), max);
+        assertEquals(Arrays.asList(items[1], items[3]), min);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void groupedValuesAreNestedPerLevel() throws Exception {
+        DynamoDBAggregateAccumulator<TestModel> accumulator = accumulate(AggregateFunctions.AVG,
+                Arrays.asList(TestModel::getSomeStringOne, TestModel::getSomeStringTwo),
+                item("a", "x", 1L), item("a", "x", 3L), item("a", "y", 10L), item("b", "x", 4L));
+
+        Map<String, Object> grouped = accumulator.getGroupedValues();
+        Map<String, Object> groupA = (Map<String, Object>) grouped.get("a");
+
+        assertEquals(2, grouped.size());
+        assertEquals(2.0, (Double) groupA.get("x"), 0.0001);
+        assertEquals(10.0, (Double) groupA.get("y"), 0.0001);
+        assertEquals(4.0, (Double) ((Map<String, Object>) grouped.get("b")).get("x"), 0.0001);
+    }
+
+    @Test
+    public void approxDistinctCountsDistinctValuesPerGroup() throws Exception {
+        DynamoDBAggregateAccumulator<TestModel> accumulator = new DynamoDBAggregateAccumulator<>(
+                AggregateFunctions.APPROX_DISTINCT, TestModel::getSomeStringTwo,
+                Collections.singletonList(TestModel::getSomeStringOne), false);
+        accumulator.accept(item("a", "x", 1L));
+        accumulator.accept(item("a", "x", 2L));
+        accumulator.accept(item("a", "y", 3L));
+        accumulator.accept(item("b", "x", 4L));
+        accumulator.accept(item("b", null, 5L));
+
+        assertEquals(2L, accumulator.getDistinct());
+        assertEquals(2L, accumulator.getGroupedValues().get("a"));
+        assertEquals(1L, accumulator.getGroupedValues().get("b"));
+    }
+
+    @Test
+    public void approxPercentileIsWithinRelativeAccuracy() throws Exception {
+        DynamoDBAggregateAccumulator<TestModel> accumulator = new DynamoDBAggregateAccumulator<>(
+                AggregateFunctions.APPROX_PERCENTILE, SOME_LONG, Collections.emptyList(), false, 90.0);
+
+        for (long i = 1; i <= 1000; i++) accumulator.accept(item("a", "x", i));
+
+        assertEquals(900.0, accumulator.getPercentile(), 900.0 * 0.02);
+    }
+
+    @Test
+    public void mergeCombinesSegments() throws Exception {
+        DynamoDBAggregateAccumulator<TestModel> one = accumulate(AggregateFunctions.SUM,
+                Collections.singletonList(TestModel::getSomeStringOne), item("a", "x", 1L), item("b", "x", 2L));
+        DynamoDBAggregateAccumulator<TestModel> two = accumulate(AggregateFunctions.SUM,
+                Collections.singletonList(TestModel::getSomeStringOne), item("a", "x", 3L), item("c", "x", 4L));
+
+        one.merge(two);
+
+        assertEquals(4L, one.getItemCount());
+        assertEquals(10.0, one.getSum(), 0.0001);
+        assertEquals(4.0, (Double) one.getGroupedValues().get("a"), 0.0001);
+        assertEquals(4.0, (Double) one.getGroupedValues().get("c"), 0.0001);
+    }
+
+    @Test
+    public void mergeKeepsTiesOfTheExtreme() throws Exception {
+        DynamoDBAggregateAccumulator<TestModel> one = accumulate(AggregateFunctions.MAX, Collections.emptyList(),
+                item("a", "x", 3L), item("b", "x", 1L));
+        DynamoDBAggregateAccumulator<TestModel> two = accumulate(AggregateFunctions.MAX, Collections.emptyList(),
+                item("c", "x", 3L), item("d", "x", 2L));
+
+        assertEquals(2, one.merge(two).getTies().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void moreThanThreeGroupingLevelsIsRejected() throws Exception {
+        Function<TestModel, String> key = TestModel::getSomeStringOne;
+
+        new DynamoDBAggregateAccumulator<>(AggregateFunctions.SUM, SOME_LONG,
+                Arrays.asList(key, key, key, key), false);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DynamoDBGroupingKeysTest {
+    @Test
+    public void bucketKeyMatchesRangedGroupingFormat() throws Exception {
+        JsonObject key = new JsonObject(DynamoDBGroupingKeys.bucketKey(3L, 10000L));
+
+        assertEquals(30000L, (long) key.getLong("floor"));
+        assertEquals(10000L, (long) key.getLong("base"));
+        assertEquals(3.0, key.getDouble("ratio"), 0.0);
+        assertEquals(40000L, (long) key.getLong("ceil"));
+        assertEquals(new JsonObject()
+                .put("floor", 30000L)
+                .put("base", 10000L)
+                .put("ratio", 3.0)
+                .put("ceil", 40000L)
+                .encode(), DynamoDBGroupingKeys.bucketKey(3L, 10000L));
+    }
+
+    @Test
+    public void timeRangeFromDateUnit() throws Exception {
+        assertEquals(3600000L, DynamoDBGroupingKeys.getTimeRangeFromDateUnit("hour"));
+        assertEquals(86400000L, DynamoDBGroupingKeys.getTimeRangeFromDateUnit("DAY"));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class DynamoDBHedgedReadsTest {
+    private Vertx vertx;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext testContext) throws Exception {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    @Test
+    public void bucketsCoverTheirLatencies() throws Exception {
+        for (long micros : new long[]{1L, 10L, 999L, 12345L, 2000000L}) {
+            assertTrue(DynamoDBHedgedReads.upperBoundMicros(DynamoDBHedgedReads.bucketOf(micros)) >= micros);
+        }
+
+        assertTrue(DynamoDBHedgedReads.bucketOf(1000L) < DynamoDBHedgedReads.bucketOf(10000L));
+    }
+
+    @Test
+    public void hedgeDelayFollowsPercentile() throws Exception {
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.9, 0.05, 1L, 60000L);
+
+        assertEquals(-1L, hedgedReads.hedgeDelay());
+
+        for (int i = 0; i < 90; i++) hedgedReads.record(2000L);
+        for (int i = 0; i < 10; i++) hedgedReads.record(200000L);
+
+        long delay = hedgedReads.hedgeDelay();
+
+        assertTrue("Delay was " + delay, delay >= 2L && delay < 10L);
+    }
+
+    @Test
+    public void slowReadIsHedgedAndHedgeWins(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.5, 1.0, 1L, 60000L);
+        AtomicInteger sent = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) hedgedReads.record(1000L);
+
+        Consumer<Handler<AsyncResult<String>>> request = handler -> {
+            if (sent.incrementAndGet() == 1) {
+                vertx.setTimer(1000L, timer -> handler.handle(Future.succeededFuture("primary")));
+            } else {
+                handler.handle(Future.succeededFuture("hedge"));
+            }
+        };
+
+        hedgedReads.read(request, () -> true, result -> {
+            testContext.assertTrue(result.succeeded());
+            testContext.assertEquals("hedge", result.result());
+            testContext.assertEquals(2, sent.get());
+            testContext.assertEquals(1L, hedgedReads.getMetrics().getLong("hedgeWins"));
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void budgetCapsHedges(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.5, 0.0, 1L, 60000L);
+        AtomicInteger sent = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) hedgedReads.record(1000L);
+
+        hedgedReads.<String>read(handler -> {
+            sent.incrementAndGet();
+            vertx.setTimer(50L, timer -> handler.handle(Future.succeededFuture("primary")));
+        }, () -> true, result -> {
+            testContext.assertEquals("primary", result.result());
+            testContext.assertEquals(1, sent.get());
+            testContext.assertEquals(0L, hedgedReads.getMetrics().getLong("hedges"));
+            testContext.assertEquals(1L, hedgedReads.getMetrics().getLong("budgetExhausted"));
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void failureIsReturnedWhenAllReadsFail(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.5, 1.0, 1L, 60000L);
+
+        hedgedReads.<String>read(handler -> handler.handle(Future.failedFuture(new IllegalStateException())),
+                () -> true, result -> {
+                    testContext.assertTrue(result.failed());
+
+                    async.complete();
+                });
+    }
+
+    @Test
+    public void saturatedCallerIsNotHedged(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.5, 1.0, 1L, 60000L);
+        AtomicInteger sent = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) hedgedReads.record(1000L);
+
+        hedgedReads.<String>read(handler -> {
+            sent.incrementAndGet();
+            vertx.setTimer(50L, timer -> handler.handle(Future.succeededFuture("primary")));
+        }, () -> false, result -> {
+            testContext.assertEquals("primary", result.result());
+            testContext.assertEquals(1, sent.get());
+            testContext.assertEquals(0L, hedgedReads.getMetrics().getLong("hedges"));
+            testContext.assertEquals(1L, hedgedReads.getMetrics().getLong("saturated"));
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void hedgeAfterFailedPrimaryIsNotAWin(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.5, 1.0, 1L, 60000L);
+        AtomicInteger sent = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) hedgedReads.record(1000L);
+
+        hedgedReads.<String>read(handler -> {
+            if (sent.incrementAndGet() == 1) {
+                vertx.setTimer(50L, timer -> handler.handle(Future.failedFuture(new IllegalStateException())));
+            } else {
+                vertx.setTimer(200L, timer -> handler.handle(Future.succeededFuture("hedge")));
+            }
+        }, () -> true, result -> {
+            testContext.assertTrue(result.succeeded());
+            testContext.assertEquals("hedge", result.result());
+            testContext.assertEquals(1L, hedgedReads.getMetrics().getLong("hedges"));
+            testContext.assertEquals(0L, hedgedReads.getMetrics().getLong("hedgeWins"));
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void missesAreNotRecorded(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBHedgedReads hedgedReads = new DynamoDBHedgedReads(vertx, 0.5, 1.0, 1L, 60000L);
+
+        for (int i = 0; i < 99; i++) hedgedReads.record(1000L);
+
+        hedgedReads.<String>read(handler -> handler.handle(Future.succeededFuture(null)), () -> true, result -> {
+            testContext.assertTrue(result.succeeded());
+            testContext.assertNull(result.result());
+            testContext.assertEquals(-1L, hedgedReads.hedgeDelay());
+
+            async.complete();
+        });
+    }
+}
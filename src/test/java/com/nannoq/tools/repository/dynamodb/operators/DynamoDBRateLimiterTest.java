@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.serviceproxy.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+@RunWith(VertxUnitRunner.class)
+public class DynamoDBRateLimiterTest {
+    private static final String TABLE = "testModels";
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext testContext) throws Exception {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    @Test
+    public void isThrottle() throws Exception {
+        AmazonServiceException throttling = new AmazonServiceException("Rate exceeded");
+        throttling.setErrorCode("ThrottlingException");
+        AmazonServiceException validation = new AmazonServiceException("Invalid");
+        validation.setErrorCode("ValidationException");
+
+        assertTrue(DynamoDBRateLimiter.isThrottle(new ProvisionedThroughputExceededException("Exceeded")));
+        assertTrue(DynamoDBRateLimiter.isThrottle(throttling));
+        assertTrue(DynamoDBRateLimiter.isThrottle(new RuntimeException(throttling)));
+        assertFalse(DynamoDBRateLimiter.isThrottle(validation));
+        assertFalse(DynamoDBRateLimiter.isThrottle(new IllegalStateException()));
+    }
+
+    @Test
+    public void onThrottleHalvesRateAndOnSuccessRecovers() throws Exception {
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 100.0, 10.0, 200.0, 1000L);
+
+        limiter.onThrottle(TABLE);
+        assertEquals(50.0, limiter.getRate(TABLE), 0.0001);
+
+        limiter.onThrottle(TABLE);
+        limiter.onThrottle(TABLE);
+        limiter.onThrottle(TABLE);
+        assertEquals(10.0, limiter.getRate(TABLE), 0.0001);
+
+        limiter.onSuccess(TABLE);
+        assertTrue(limiter.getRate(TABLE) > 10.0);
+        assertEquals(4L, (long) limiter.getMetrics().getJsonObject(TABLE).getLong("throttles"));
+    }
+
+    @Test
+    public void onSuccessIncreasesByFivePercentOrOne() throws Exception {
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 100.0, 10.0, 1000.0, 1000L);
+
+        limiter.onSuccess(TABLE);
+        assertEquals(105.0, limiter.getRate(TABLE), 0.0001);
+
+        DynamoDBRateLimiter slowLimiter = new DynamoDBRateLimiter(vertx, 10.0, 1.0, 1000.0, 1000L);
+
+        slowLimiter.onSuccess(TABLE);
+        assertEquals(11.0, slowLimiter.getRate(TABLE), 0.0001);
+    }
+
+    @Test
+    public void chargedRequestsDelayAcquire(TestContext testContext) {
+        Async async = testContext.async();
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 10.0, 1.0, 10.0, 5000L);
+        long start = System.currentTimeMillis();
+
+        limiter.charge(TABLE, 5.0);
+
+        limiter.acquire(TABLE, res -> {
+            testContext.assertTrue(res.succeeded());
+            testContext.assertTrue(System.currentTimeMillis() - start >= 400L);
+
+            async.complete();
+        });
+    }
+
+    @Test
+    public void releaseReturnsReservedPermit(TestContext testContext) {
+        Async async = testContext.async();
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 1.0, 1.0, 1.0, 100L);
+
+        limiter.acquire(TABLE, first -> {
+            testContext.assertTrue(first.succeeded());
+
+            limiter.release(TABLE);
+
+            limiter.acquire(TABLE, second -> {
+                testContext.assertTrue(second.succeeded());
+
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void acquirePacesOperations(TestContext testContext) {
+        Async async = testContext.async();
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 20.0, 1.0, 20.0, 5000L);
+        AtomicInteger completed = new AtomicInteger();
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(TABLE, res -> {
+                testContext.assertTrue(res.succeeded());
+
+                if (completed.incrementAndGet() == 10) {
+                    testContext.assertTrue(System.currentTimeMillis() - start >= 400L);
+
+                    async.complete();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void acquireRejectsBeyondMaxWait(TestContext testContext) {
+        Async async = testContext.async();
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 1.0, 1.0, 1.0, 100L);
+
+        limiter.acquire(TABLE, first -> {
+            testContext.assertTrue(first.succeeded());
+
+            limiter.acquire(TABLE, second -> {
+                testContext.assertTrue(second.failed());
+                testContext.assertEquals(503, ((ServiceException) second.cause()).failureCode());
+                testContext.assertEquals(1L, limiter.getMetrics().getJsonObject(TABLE).getLong("rejected"));
+
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void executorAdaptsToInjectedThrottles(TestContext testContext) {
+        Async async = testContext.async();
+        DynamoDBRateLimiter limiter = new DynamoDBRateLimiter(vertx, 200.0, 5.0, 200.0, 5000L);
+        DynamoDBWorkerExecutor executor = new DynamoDBWorkerExecutor(vertx, "rate-limit-test", 2, 0,
+                TABLE, limiter);
+        AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+        AtomicInteger windowCount = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger throttled = new AtomicInteger();
+        int operations = 60;
+
+        for (int i = 0; i < operations; i++) {
+            executor.<Void>executeBlocking(future -> {
+                synchronized (windowStart) {
+                    long now = System.currentTimeMillis();
+
+                    if (now - windowStart.get() >= 100L) {
+                        windowStart.set(now);
+                        windowCount.set(0);
+                    }
+
+                    if (windowCount.incrementAndGet() > 2) {
+                        future.fail(new ProvisionedThroughputExceededException("Injected throttle"));
+
+                        return;
+                    }
+                }
+
+                future.complete();
+            }, false, res -> {
+                if (res.failed()) throttled.incrementAndGet();
+
+                if (completed.incrementAndGet() == operations) {
+                    testContext.assertTrue(throttled.get() > 0);
+                    testContext.assertTrue(limiter.getRate(TABLE) < 200.0);
+                    testContext.assertEquals((long) throttled.get(),
+                            limiter.getMetrics().getJsonObject(TABLE).getLong("throttles"));
+
+                    executor.close();
+                    async.complete();
+                }
+            });
+        }
+    }
+}
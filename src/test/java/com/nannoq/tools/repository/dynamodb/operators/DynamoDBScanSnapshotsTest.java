@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import com.nannoq.tools.repository.dynamodb.model.TestModel;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public class DynamoDBScanSnapshotsTest {
+    private static final String SHAPE = "PAGINATION_INDEX|null|null|null|null|someStringOne|asc";
+
+    private List<TestModel> items(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new TestModel()
+                        .setHash("testString")
+                        .setRange(String.format("range%03d", count - 1 - i)))
+                .collect(toList());
+    }
+
+    @Test
+    public void create() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(60000L, 10, 100);
+        DynamoDBScanSnapshots.Snapshot<TestModel> snapshot =
+                snapshots.create(SHAPE, items(10), TestModel::getRange, true);
+
+        assertEquals("range000", snapshot.getItems().get(0).getRange());
+        assertEquals("range009", snapshot.getItems().get(9).getRange());
+        assertSame(snapshot, snapshots.get(SHAPE));
+
+        DynamoDBScanSnapshots.Snapshot<TestModel> descending =
+                snapshots.create(SHAPE, items(10), TestModel::getRange, false);
+
+        assertEquals("range009", descending.getItems().get(0).getRange());
+    }
+
+    @Test
+    public void cursorPagesThroughSnapshot() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(60000L, 10, 100);
+        DynamoDBScanSnapshots.Snapshot<TestModel> snapshot =
+                snapshots.create(SHAPE, items(25), TestModel::getRange, true);
+        List<TestModel> paged = new ArrayList<>();
+        int offset = 0;
+
+        while (true) {
+            paged.addAll(snapshot.page(offset, 10));
+
+            if (offset + 10 >= snapshot.getItems().size()) break;
+
+            JsonObject cursor = DynamoDBScanSnapshots.decodeCursor(snapshots.cursor(snapshot, offset + 10));
+            assertNotNull(cursor);
+
+            offset = snapshot.offsetOf(cursor);
+        }
+
+        assertEquals(snapshot.getItems(), paged);
+    }
+
+    @Test
+    public void cursorIsRelocatedInRebuiltSnapshot() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(60000L, 10, 100);
+        DynamoDBScanSnapshots.Snapshot<TestModel> snapshot =
+                snapshots.create(SHAPE, items(25), TestModel::getRange, true);
+        JsonObject cursor = DynamoDBScanSnapshots.decodeCursor(snapshots.cursor(snapshot, 10));
+        DynamoDBScanSnapshots.Snapshot<TestModel> rebuilt =
+                snapshots.create(SHAPE, items(25), TestModel::getRange, true);
+
+        assertNotEquals(snapshot.getId(), rebuilt.getId());
+        assertEquals(10, rebuilt.offsetOf(cursor));
+    }
+
+    @Test
+    public void cursorIsRelocatedBySortKeyWhenItemIsGone() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(60000L, 10, 100);
+        DynamoDBScanSnapshots.Snapshot<TestModel> snapshot =
+                snapshots.create(SHAPE, items(25), TestModel::getRange, true);
+        JsonObject cursor = DynamoDBScanSnapshots.decodeCursor(snapshots.cursor(snapshot, 10));
+        List<TestModel> remaining = items(25).stream()
+                .filter(item -> !item.getRange().equals("range009"))
+                .collect(toList());
+        DynamoDBScanSnapshots.Snapshot<TestModel> rebuilt =
+                snapshots.create(SHAPE, remaining, TestModel::getRange, true);
+
+        assertEquals(9, rebuilt.offsetOf(cursor));
+        assertEquals("range010", rebuilt.getItems().get(rebuilt.offsetOf(cursor)).getRange());
+
+        DynamoDBScanSnapshots.Snapshot<TestModel> descending =
+                snapshots.create(SHAPE, items(25), TestModel::getRange, false);
+        JsonObject descendingCursor = DynamoDBScanSnapshots.decodeCursor(snapshots.cursor(descending, 10));
+        DynamoDBScanSnapshots.Snapshot<TestModel> rebuiltDescending = snapshots.create(SHAPE, items(25).stream()
+                .filter(item -> !item.getRange().equals("range015"))
+                .collect(toList()), TestModel::getRange, false);
+
+        assertEquals("range014", rebuiltDescending.getItems().get(rebuiltDescending.offsetOf(descendingCursor))
+                .getRange());
+    }
+
+    @Test
+    public void decodeCursorIgnoresPageTokens() throws Exception {
+        assertNull(DynamoDBScanSnapshots.decodeCursor(null));
+        assertNull(DynamoDBScanSnapshots.decodeCursor("END_OF_LIST"));
+        assertNull(DynamoDBScanSnapshots.decodeCursor(Base64.getUrlEncoder()
+                .encodeToString(new JsonObject().put("hash", "testString").encode().getBytes())));
+    }
+
+    @Test
+    public void snapshotsAreBounded() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(60000L, 2, 10);
+
+        snapshots.create("one", items(5), TestModel::getRange, true);
+        snapshots.create("two", items(5), TestModel::getRange, true);
+        snapshots.create("three", items(5), TestModel::getRange, true);
+
+        assertEquals(2, snapshots.size());
+        assertNull(snapshots.get("one"));
+
+        DynamoDBScanSnapshots.Snapshot<TestModel> tooLarge =
+                snapshots.create("four", items(11), TestModel::getRange, true);
+
+        assertEquals(11, tooLarge.getItems().size());
+        assertNull(snapshots.get("four"));
+    }
+
+    @Test
+    public void snapshotsExpire() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(-1L, 10, 100);
+        snapshots.create(SHAPE, items(5), TestModel::getRange, true);
+
+        assertNull(snapshots.get(SHAPE));
+        assertEquals(0, snapshots.size());
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        DynamoDBScanSnapshots<TestModel> snapshots = new DynamoDBScanSnapshots<>(60000L, 10, 100);
+        snapshots.create(SHAPE, items(5), TestModel::getRange, true);
+        snapshots.invalidate();
+
+        assertNull(snapshots.get(SHAPE));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.nannoq.tools.repository.dynamodb.operators;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class DynamoDBWorkerExecutorTest {
+    private Vertx vertx;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext testContext) throws Exception {
+        vertx.close(testContext.asyncAssertSuccess());
+    }
+
+    @Test
+    public void activeUntilFutureCompletes(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBWorkerExecutor executor = new DynamoDBWorkerExecutor(vertx, "worker-test", 2, 10);
+
+        executor.<String>executeBlocking(future -> vertx.setTimer(50L, id -> {
+            testContext.assertEquals(1, executor.getActive());
+
+            future.complete("done");
+        }), false, res -> {
+            testContext.assertTrue(res.succeeded());
+            testContext.assertEquals("done", res.result());
+            testContext.assertEquals(0, executor.getActive());
+
+            executor.close();
+            async.complete();
+        });
+    }
+
+    @Test
+    public void failsWhenBlockingCodeThrows(TestContext testContext) throws Exception {
+        Async async = testContext.async();
+        DynamoDBWorkerExecutor executor = new DynamoDBWorkerExecutor(vertx, "worker-test-throw", 2, 10);
+
+        executor.<String>executeBlocking(future -> {
+            throw new IllegalStateException("Broken!");
+        }, false, res -> {
+            testContext.assertTrue(res.failed());
+            testContext.assertEquals(0, executor.getActive());
+
+            executor.close();
+            async.complete();
+        });
+    }
+}
@@ -120,4 +120,26 @@ public class AggregateFunctionTest {
                 .withGroupBy(Collections.singletonList(GroupingConfiguration.builder().withGroupBy("viewCount").build()))
                 .build().hasGrouping());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getPercentile() throws Exception {
+        assertNull(validAggregateFunction.getPercentile());
+        assertEquals(95.0, AggregateFunction.builder()
+                .withAggregateFunction(APPROX_PERCENTILE)
+                .withField("viewCount")
+                .withPercentile(95.0)
+                .build().getPercentile(), 0.0);
+        assertTrue(AggregateFunction.builder()
+                .withAggregateFunction(APPROX_DISTINCT)
+                .withField("viewCount")
+                .build().isApproxDistinct());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void approxPercentileWithoutPercentileIsRejected() throws Exception {
+        AggregateFunction.builder()
+                .withAggregateFunction(APPROX_PERCENTILE)
+                .withField("viewCount")
+                .build();
+    }
+}
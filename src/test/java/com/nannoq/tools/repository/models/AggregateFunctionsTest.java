@@ -44,6 +44,10 @@ public class AggregateFunctionsTest {
         assertEquals(AggregateFunctions.SUM, AggregateFunctions.forValue("SUM"));
         assertEquals(AggregateFunctions.COUNT, AggregateFunctions.forValue("count"));
         assertEquals(AggregateFunctions.COUNT, AggregateFunctions.forValue("COUNT"));
+        assertEquals(AggregateFunctions.APPROX_DISTINCT, AggregateFunctions.forValue("approx_distinct"));
+        assertEquals(AggregateFunctions.APPROX_DISTINCT, AggregateFunctions.forValue("APPROX_DISTINCT"));
+        assertEquals(AggregateFunctions.APPROX_PERCENTILE, AggregateFunctions.forValue("approx_percentile"));
+        assertEquals(AggregateFunctions.APPROX_PERCENTILE, AggregateFunctions.forValue("APPROX_PERCENTILE"));
         assertNull(AggregateFunctions.forValue("bogus"));
     }
 
@@ -54,5 +58,7 @@ public class AggregateFunctionsTest {
         assertEquals("AVG", AggregateFunctions.AVG.toValue());
         assertEquals("SUM", AggregateFunctions.SUM.toValue());
         assertEquals("COUNT", AggregateFunctions.COUNT.toValue());
+        assertEquals("APPROX_DISTINCT", AggregateFunctions.APPROX_DISTINCT.toValue());
+        assertEquals("APPROX_PERCENTILE", AggregateFunctions.APPROX_PERCENTILE.toValue());
     }
 }
\ No newline at end of file
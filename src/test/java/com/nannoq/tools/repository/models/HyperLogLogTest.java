@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.models;
+
+import com.nannoq.tools.repository.utils.HyperLogLog;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HyperLogLogTest {
+    @Test
+    public void estimateIsExactForFewValues() throws Exception {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add("a");
+        sketch.add("b");
+        sketch.add("a");
+        sketch.add(null);
+
+        assertEquals(2L, sketch.estimate());
+    }
+
+    @Test
+    public void estimateIsWithinStandardError() throws Exception {
+        HyperLogLog sketch = new HyperLogLog();
+
+        for (int i = 0; i < 100000; i++) sketch.add("user" + i);
+
+        assertEquals(100000.0, sketch.estimate(), 100000.0 * 0.05);
+    }
+
+    @Test
+    public void mergeMatchesSingleSketch() throws Exception {
+        HyperLogLog one = new HyperLogLog();
+        HyperLogLog two = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+
+        for (int i = 0; i < 20000; i++) {
+            (i % 2 == 0 ? one : two).add(i);
+            all.add(i);
+        }
+
+        assertEquals(all.estimate(), one.merge(two).estimate());
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        HyperLogLog sketch = new HyperLogLog(10);
+
+        for (int i = 0; i < 5000; i++) sketch.add(i);
+
+        HyperLogLog copy = HyperLogLog.fromJson(sketch.toJson());
+
+        assertEquals(10, copy.getPrecision());
+        assertEquals(sketch.estimate(), copy.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeOfDifferentPrecisionIsRejected() throws Exception {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+}
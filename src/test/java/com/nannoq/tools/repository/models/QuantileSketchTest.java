@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Anders Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.nannoq.tools.repository.models;
+
+import com.nannoq.tools.repository.utils.QuantileSketch;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QuantileSketchTest {
+    @Test
+    public void percentilesAreWithinRelativeAccuracy() throws Exception {
+        QuantileSketch sketch = new QuantileSketch();
+
+        for (int i = 1; i <= 10000; i++) sketch.add((double) i);
+
+        assertEquals(10000L, sketch.getCount());
+        assertEquals(5000.0, sketch.percentile(50.0), 5000.0 * 0.01);
+        assertEquals(9900.0, sketch.percentile(99.0), 9900.0 * 0.01);
+        assertEquals(1.0, sketch.percentile(0.0), 0.0);
+        assertEquals(10000.0, sketch.percentile(100.0), 0.0);
+    }
+
+    @Test
+    public void zeroAndNegativeValuesAreOrdered() throws Exception {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(-100.0);
+        sketch.add(0.0);
+        sketch.add(100.0);
+        sketch.add(null);
+
+        assertEquals(-100.0, sketch.percentile(0.0), 1.0);
+        assertEquals(0.0, sketch.percentile(50.0), 0.0);
+        assertEquals(100.0, sketch.percentile(100.0), 1.0);
+    }
+
+    @Test
+    public void emptySketchHasNoPercentile() throws Exception {
+        assertNull(new QuantileSketch().percentile(50.0));
+    }
+
+    @Test
+    public void mergeMatchesSingleSketch() throws Exception {
+        QuantileSketch one = new QuantileSketch();
+        QuantileSketch two = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+
+        for (int i = 1; i <= 5000; i++) {
+            (i % 3 == 0 ? one : two).add((double) i);
+            all.add((double) i);
+        }
+
+        one.merge(two);
+
+        assertEquals(all.getCount(), one.getCount());
+        assertEquals(all.percentile(95.0), one.percentile(95.0));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        QuantileSketch sketch = new QuantileSketch(0.02);
+
+        for (int i = -50; i <= 500; i++) sketch.add((double) i);
+
+        QuantileSketch copy = QuantileSketch.fromJson(sketch.toJson());
+
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertEquals(sketch.percentile(10.0), copy.percentile(10.0));
+        assertEquals(sketch.percentile(90.0), copy.percentile(90.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRangeIsRejected() throws Exception {
+        new QuantileSketch().percentile(101.0);
+    }
+}
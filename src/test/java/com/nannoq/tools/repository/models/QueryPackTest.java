@@ -35,8 +35,7 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 
 import static com.nannoq.tools.repository.dynamodb.DynamoDBRepository.PAGINATION_INDEX;
 import static com.nannoq.tools.repository.utils.AggregateFunctions.MAX;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.*;
 
 public class QueryPackTest {
     @Test
@@ -54,6 +53,65 @@ public class QueryPackTest {
         assertEquals(queryPack.getBaseEtagKey(), queryPackTwo.getBaseEtagKey());
     }
 
+    @Test
+    public void getShape() throws Exception {
+        QueryPack trueFilter = makeFilterPack(FilterParameter.builder("someBoolean").withEq("true").build());
+        QueryPack falseFilter = makeFilterPack(FilterParameter.builder("someBoolean").withEq("false").build());
+        QueryPack neFilter = makeFilterPack(FilterParameter.builder("someBoolean").withNe("true").build());
+
+        assertEquals(trueFilter.getShape(), falseFilter.getShape());
+        assertNotEquals(trueFilter.getShape(), neFilter.getShape());
+        assertFalse(trueFilter.getShape().contains("true"));
+        assertEquals(makePack("NoTag", null).getShape(), makePack("NoTag", "somePageToken").getShape());
+    }
+
+    @Test
+    public void nextPage() throws Exception {
+        QueryPack pageOne = makePack("NoTag", null);
+        QueryPack nextPage = pageOne.nextPage("somePageToken");
+
+        assertEquals(makePack("NoTag", "somePageToken").getBaseEtagKey(), nextPage.getBaseEtagKey());
+        assertEquals("somePageToken", nextPage.getPageToken());
+        assertFalse(nextPage.getPrefetch());
+
+        QueryPack withQuery = QueryPack.builder(TestModel.class)
+                .withCustomQuery("limit=10&pageToken=firstToken")
+                .withPageToken("firstToken")
+                .withPrefetch(true)
+                .build();
+        QueryPack expected = QueryPack.builder(TestModel.class)
+                .withCustomQuery("limit=10&pageToken=secondToken")
+                .withPageToken("secondToken")
+                .build();
+
+        assertEquals(expected.getBaseEtagKey(), withQuery.nextPage("secondToken").getBaseEtagKey());
+    }
+
+    @Test
+    public void nextPageMatchesEncodedRequest() throws Exception {
+        QueryPack pageOne = QueryPack.builder(TestModel.class)
+                .withCustomRoute("/parent/testString/testModels")
+                .withCustomQuery("orderBy=%5B%7B%22field%22%3A%22someLong%22%7D%5D&limit=10")
+                .build();
+        QueryPack request = QueryPack.builder(TestModel.class)
+                .withCustomRoute("/parent/testString/testModels")
+                .withCustomQuery("limit=10&pageToken=eyJoYXNoIjoidGVzdCJ9%3D%3D" +
+                        "&orderBy=%5B%7B%22field%22:%22someLong%22%7D%5D")
+                .withPageToken("eyJoYXNoIjoidGVzdCJ9==")
+                .build();
+
+        assertEquals(request.getBaseEtagKey(), pageOne.nextPage("eyJoYXNoIjoidGVzdCJ9==").getBaseEtagKey());
+        assertNotEquals(request.getBaseEtagKey(), pageOne.nextPage("otherToken").getBaseEtagKey());
+    }
+
+    private QueryPack makeFilterPack(FilterParameter filterParameter) {
+        return QueryPack.builder(TestModel.class)
+                .withCustomRoute("/parent/testString/testModels")
+                .withFilterParameters(Collections.singletonMap("someBoolean",
+                        Collections.singletonList(filterParameter)))
+                .build();
+    }
+
     private QueryPack makePack(String etag, String pageToken) {
         Queue<OrderByParameter> queue = new ConcurrentLinkedDeque<>();
         queue.add(OrderByParameter.builder()